@@ -1,5 +1,22 @@
 package hudson.plugins.dry;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.lang.StringUtils;
+
 import hudson.Launcher;
 import hudson.matrix.MatrixRun;
 import hudson.matrix.MatrixBuild;
@@ -8,15 +25,32 @@ import hudson.model.BuildListener;
 import hudson.plugins.analysis.core.AnnotationsAggregator;
 import hudson.plugins.analysis.core.HealthDescriptor;
 import hudson.plugins.analysis.core.ParserResult;
+import hudson.plugins.analysis.util.model.FileAnnotation;
+import hudson.plugins.analysis.util.model.JavaProject;
+import hudson.plugins.analysis.util.model.MavenModule;
+import hudson.plugins.dry.parser.DuplicateCode;
+import hudson.plugins.dry.parser.DuplicationGroup;
+import hudson.plugins.dry.parser.DuplicationNumbering;
 
 /**
  * Aggregates {@link DryResultAction}s of {@link MatrixRun}s into
- * {@link MatrixBuild}.
+ * {@link MatrixBuild}. By default the results of the runs are aggregated
+ * sequentially while the runs finish. If more than one thread is used, then the
+ * runs are collected while they finish and their results are loaded concurrently
+ * when the matrix build finishes. In both cases duplications that are reported
+ * by several runs are added only once.
  *
  * @author Ulli Hafner
  */
 
 public class DryAnnotationsAggregator extends AnnotationsAggregator {
+    private final HealthDescriptor descriptor;
+    private final String encoding;
+    private final int numberOfThreads;
+    private final List<MatrixRun> runs = new ArrayList<MatrixRun>();
+    private final ParserResult totals = new ParserResult();
+    private final Map<Integer, List<DuplicationGroup>> merged = new HashMap<Integer, List<DuplicationGroup>>();
+
     /**
      * Creates a new instance of {@link DryAnnotationsAggregator}.
      *
@@ -40,8 +74,171 @@ public class DryAnnotationsAggregator extends AnnotationsAggregator {
     public DryAnnotationsAggregator(final MatrixBuild build, final Launcher launcher,
             final BuildListener listener, final HealthDescriptor healthDescriptor, final String defaultEncoding,
             final boolean usePreviousBuildAsReference, final boolean useStableBuildAsReference) {
+        this(build, launcher, listener, healthDescriptor, defaultEncoding,
+                usePreviousBuildAsReference, useStableBuildAsReference, 1);
+    }
+
+    /**
+     * Creates a new instance of {@link DryAnnotationsAggregator}.
+     *
+     * @param build
+     *            the matrix build
+     * @param launcher
+     *            the launcher
+     * @param listener
+     *            the build listener
+     * @param healthDescriptor
+     *            health descriptor
+     * @param defaultEncoding
+     *            the default encoding to be used when reading and parsing files
+     * @param usePreviousBuildAsReference
+     *            determines whether the previous build should be used as the
+     *            reference build
+     * @param useStableBuildAsReference
+     *            determines whether only stable builds should be used as
+     *            reference builds or not
+     * @param numberOfThreads
+     *            the maximum number of results that are loaded concurrently
+     *            when the matrix build finishes, 0 or 1 means that the results
+     *            are aggregated sequentially while the runs finish
+     */
+    public DryAnnotationsAggregator(final MatrixBuild build, final Launcher launcher,
+            final BuildListener listener, final HealthDescriptor healthDescriptor, final String defaultEncoding,
+            final boolean usePreviousBuildAsReference, final boolean useStableBuildAsReference,
+            final int numberOfThreads) {
         super(build, launcher, listener, healthDescriptor, defaultEncoding,
                 usePreviousBuildAsReference, useStableBuildAsReference);
+
+        descriptor = healthDescriptor;
+        encoding = defaultEncoding;
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    private boolean isParallel() {
+        return numberOfThreads > 1;
+    }
+
+    @Override
+    public boolean endRun(final MatrixRun run) throws InterruptedException, IOException {
+        if (hasResult(run)) {
+            if (isParallel()) {
+                runs.add(run);
+            }
+            else {
+                merge(getContainer(run));
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endBuild() throws InterruptedException, IOException {
+        if (isParallel()) {
+            aggregate();
+        }
+        build.addAction(createAction(descriptor, encoding, totals));
+        return true;
+    }
+
+    /**
+     * Returns the aggregated result of the runs that have been merged so far.
+     *
+     * @return the aggregated result
+     */
+    ParserResult getTotals() {
+        return totals;
+    }
+
+    private void aggregate() throws InterruptedException {
+        if (runs.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numberOfThreads, runs.size()),
+                new AggregatorThreadFactory());
+        try {
+            List<Future<JavaProject>> results = new ArrayList<Future<JavaProject>>();
+            for (final MatrixRun run : runs) {
+                results.add(executor.submit(new Callable<JavaProject>() {
+                    @Override
+                    public JavaProject call() {
+                        return getContainer(run);
+                    }
+                }));
+            }
+            for (Future<JavaProject> result : results) {
+                merge(getContainer(result));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the annotations of the specified run.
+     *
+     * @param run
+     *            the run with a result
+     * @return the annotations of the run
+     */
+    JavaProject getContainer(final MatrixRun run) {
+        return getResult(run).getContainer();
+    }
+
+    private JavaProject getContainer(final Future<JavaProject> result) throws InterruptedException {
+        try {
+            return result.get();
+        }
+        catch (ExecutionException exception) {
+            throw new IllegalStateException("Unexpected exception while loading a DRY result", exception.getCause());
+        }
+    }
+
+    private void merge(final JavaProject project) {
+        List<FileAnnotation> annotations = new ArrayList<FileAnnotation>();
+        for (FileAnnotation annotation : project.getAnnotations()) {
+            if (!(annotation instanceof DuplicateCode) || isNew(((DuplicateCode)annotation).getGroup())) {
+                annotations.add(annotation);
+            }
+        }
+        totals.addAnnotations(annotations);
+        for (MavenModule module : project.getModules()) {
+            totals.addModule(module.getName());
+        }
+    }
+
+    /**
+     * Returns whether the specified duplication has not been merged yet. Duplications of different runs are the
+     * same if their code blocks have the same locations relative to the workspaces of the runs and if they have the
+     * same source code fragment.
+     */
+    private boolean isNew(@CheckForNull final DuplicationGroup group) {
+        if (group == null) {
+            return true;
+        }
+        int signature = DuplicationNumbering.computeNumber(group.getMembers());
+        List<DuplicationGroup> candidates = merged.get(signature);
+        if (candidates == null) {
+            candidates = new ArrayList<DuplicationGroup>();
+            merged.put(signature, candidates);
+        }
+        for (DuplicationGroup candidate : candidates) {
+            if (candidate == group) {
+                return true;
+            }
+            if (isSame(candidate, group)) {
+                return false;
+            }
+        }
+        candidates.add(group);
+        return true;
+    }
+
+    private boolean isSame(final DuplicationGroup first, final DuplicationGroup second) {
+        return first.size() == second.size() && StringUtils.equals(first.getSourceCode(), second.getSourceCode())
+                && DuplicationNumbering.getLocations(first.getMembers()).equals(
+                        DuplicationNumbering.getLocations(second.getMembers()));
     }
 
     @Override
@@ -65,5 +262,18 @@ public class DryAnnotationsAggregator extends AnnotationsAggregator {
     private DryResultAction getAction(final MatrixRun run) {
         return run.getAction(DryResultAction.class);
     }
-}
 
+    /**
+     * Creates daemon threads for loading the results of the runs.
+     */
+    private static class AggregatorThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable, "DRY aggregator " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package hudson.plugins.dry;
 
 import java.util.Collection;
+import java.util.NoSuchElementException;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -55,7 +56,12 @@ public class DryDetailBuilder extends DetailFactory {
 
         FileAnnotation fromAnnotation = container.getAnnotation(from);
         if (fromAnnotation instanceof DuplicateCode) {
-            return new SourceDetail(owner, ((DuplicateCode)fromAnnotation).getLink(to), defaultEncoding);
+            try {
+                return new SourceDetail(owner, ((DuplicateCode)fromAnnotation).getLink(to), defaultEncoding);
+            }
+            catch (NoSuchElementException exception) {
+                return null;
+            }
         }
         return null;
     }
@@ -3,6 +3,7 @@ package hudson.plugins.dry;
 import java.util.List;
 import java.util.Map;
 
+import hudson.Extension;
 import hudson.maven.MavenAggregatedReport;
 import hudson.maven.MavenBuild;
 import hudson.maven.MavenModule;
@@ -10,6 +11,8 @@ import hudson.maven.MavenModuleSet;
 import hudson.maven.MavenModuleSetBuild;
 import hudson.model.AbstractBuild;
 import hudson.model.Action;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
 import hudson.plugins.analysis.core.HealthDescriptor;
 import hudson.plugins.analysis.core.MavenResultAction;
 import hudson.plugins.analysis.core.ParserResult;
@@ -17,11 +20,16 @@ import hudson.plugins.analysis.core.ParserResult;
 /**
  * A {@link DryResultAction} for native Maven jobs. This action
  * additionally provides result aggregation for sub-modules and for the main
- * project.
+ * project. The annotations of the modules are collected while the modules are
+ * built, the aggregated result is created and serialized only once when the
+ * whole build has been completed.
  *
  * @author Ulli Hafner
  */
 public class DryMavenResultAction extends MavenResultAction<DryResult> {
+    /** The annotations and modules of all module builds that have been aggregated so far. */
+    private transient MavenModuleAggregation aggregation;
+
     /**
      * Creates a new instance of {@link DryMavenResultAction}.
      *
@@ -42,7 +50,7 @@ public class DryMavenResultAction extends MavenResultAction<DryResult> {
     @Override
     public MavenAggregatedReport createAggregatedAction(final MavenModuleSetBuild build, final Map<MavenModule, List<MavenBuild>> moduleBuilds) {
         return new DryMavenResultAction(build, getHealthDescriptor(), getDefaultEncoding(),
-                new DryResult(build, getDefaultEncoding(), new ParserResult(),
+                new DryReporterResult(build, getDefaultEncoding(),
                         usePreviousBuildAsStable(), useOnlyStableBuildsAsReference()));
     }
 
@@ -56,12 +64,64 @@ public class DryMavenResultAction extends MavenResultAction<DryResult> {
         return DryMavenResultAction.class;
     }
 
+    /**
+     * Adds the annotations of the additional module to the aggregation. The
+     * existing result is kept until the whole build has been completed, see
+     * {@link #completeAggregation()}.
+     *
+     * @param existingResult
+     *            the result of the modules aggregated so far
+     * @param additionalResult
+     *            the result of the additional module
+     * @return the existing result
+     */
     @Override
     protected DryResult createResult(final DryResult existingResult, final DryResult additionalResult) {
-        return new DryReporterResult(getOwner(), additionalResult.getDefaultEncoding(),
-                aggregate(existingResult, additionalResult),
-                existingResult.usePreviousBuildAsStable(),
-                existingResult.useOnlyStableBuildsAsReference());
+        getAggregation().add(additionalResult);
+        return existingResult;
     }
-}
 
+    private synchronized MavenModuleAggregation getAggregation() {
+        if (aggregation == null) {
+            aggregation = new MavenModuleAggregation();
+        }
+        return aggregation;
+    }
+
+    /**
+     * Creates and serializes the result of all modules that have been
+     * aggregated. The build result has been evaluated already: the result of
+     * the module set build is the worst result of its module builds, which
+     * evaluate their thresholds on their own.
+     */
+    void completeAggregation() {
+        ParserResult modules = getAggregation().complete();
+        if (modules != null) {
+            DryResult existingResult = getResult();
+            setResult(new DryReporterResult(getOwner(), getDefaultEncoding(), modules,
+                    existingResult.usePreviousBuildAsStable(),
+                    existingResult.useOnlyStableBuildsAsReference()));
+        }
+    }
+
+    /**
+     * Creates the aggregated result when a Maven build has been completed.
+     */
+    @Extension(optional = true)
+    public static class AggregationListener extends RunListener<MavenModuleSetBuild> {
+        /**
+         * Creates a new instance of {@link AggregationListener}.
+         */
+        public AggregationListener() {
+            super(MavenModuleSetBuild.class);
+        }
+
+        @Override
+        public void onCompleted(final MavenModuleSetBuild build, final TaskListener listener) {
+            DryMavenResultAction action = build.getAction(DryMavenResultAction.class);
+            if (action != null) {
+                action.completeAggregation();
+            }
+        }
+    }
+}
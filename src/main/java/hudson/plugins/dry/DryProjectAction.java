@@ -1,11 +1,20 @@
 package hudson.plugins.dry;
 
 import java.util.List;
+import java.util.ListIterator;
+
+import javax.annotation.CheckForNull;
+
+import org.jfree.chart.JFreeChart;
 
 import hudson.model.Job;
 import hudson.plugins.analysis.core.AbstractProjectAction;
 import hudson.plugins.analysis.core.ResultAction;
 import hudson.plugins.analysis.graph.BuildResultGraph;
+import hudson.plugins.analysis.graph.GraphConfiguration;
+import hudson.plugins.analysis.graph.NewVersusFixedGraph;
+import hudson.plugins.analysis.graph.PriorityGraph;
+import hudson.util.Graph;
 
 /**
  * Entry point to visualize the DRY trend graph in the project screen. Drawing
@@ -37,11 +46,60 @@ public class DryProjectAction extends AbstractProjectAction<ResultAction<DryResu
                 DryDescriptor.PLUGIN_ID, DryDescriptor.ICON_URL, DryDescriptor.RESULT_URL);
     }
 
+    /**
+     * Returns the available graphs. The duplicated lines, priority, and new versus fixed graphs cache their images in
+     * the {@link TrendGraphCache}.
+     *
+     * @return the available graphs
+     */
     @Override
     protected List<BuildResultGraph> getAvailableGraphs() {
         List<BuildResultGraph> availableGraphs = super.getAvailableGraphs();
+        for (ListIterator<BuildResultGraph> iterator = availableGraphs.listIterator(); iterator.hasNext();) {
+            BuildResultGraph graph = iterator.next();
+            if (graph instanceof PriorityGraph) {
+                iterator.set(new CachedPriorityGraph());
+            }
+            else if (graph instanceof NewVersusFixedGraph) {
+                iterator.set(new CachedNewVersusFixedGraph());
+            }
+        }
         availableGraphs.add(0, new DuplicatedLinesGraph());
         return availableGraphs;
     }
+
+    /**
+     * Priority graph that caches its images in the {@link TrendGraphCache}.
+     */
+    static class CachedPriorityGraph extends PriorityGraph {
+        @Override
+        public Graph getGraph(final long timestamp, final GraphConfiguration configuration,
+                @CheckForNull final String pluginName, final ResultAction<?> lastAction) {
+            return TrendGraphCache.createGraph(timestamp, configuration, getId(), lastAction.getOwner(),
+                    new TrendGraphCache.ChartFactory() {
+                        @Override
+                        public JFreeChart create() {
+                            return CachedPriorityGraph.this.create(configuration, lastAction, pluginName);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * New versus fixed graph that caches its images in the {@link TrendGraphCache}.
+     */
+    static class CachedNewVersusFixedGraph extends NewVersusFixedGraph {
+        @Override
+        public Graph getGraph(final long timestamp, final GraphConfiguration configuration,
+                @CheckForNull final String pluginName, final ResultAction<?> lastAction) {
+            return TrendGraphCache.createGraph(timestamp, configuration, getId(), lastAction.getOwner(),
+                    new TrendGraphCache.ChartFactory() {
+                        @Override
+                        public JFreeChart create() {
+                            return CachedNewVersusFixedGraph.this.create(configuration, lastAction, pluginName);
+                        }
+                    });
+        }
+    }
 }
 
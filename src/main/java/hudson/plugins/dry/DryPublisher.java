@@ -15,11 +15,15 @@ import hudson.model.BuildListener;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.plugins.analysis.core.BuildResult;
-import hudson.plugins.analysis.core.FilesParser;
 import hudson.plugins.analysis.core.HealthAwarePublisher;
 import hudson.plugins.analysis.core.ParserResult;
 import hudson.plugins.analysis.util.PluginLogger;
+import hudson.plugins.dry.parser.DuplicationFilesParser;
 import hudson.plugins.dry.parser.DuplicationParserRegistry;
+import hudson.plugins.dry.parser.FragmentFormatter;
+import hudson.plugins.dry.parser.detector.SourceCodeDetector;
+import hudson.plugins.dry.parser.detector.SourceFilesDetector;
+import hudson.plugins.dry.parser.dupfinder.DupFinderParser;
 
 /**
  * Publishes the results of the duplicate code analysis (freestyle project type).
@@ -43,6 +47,24 @@ public class DryPublisher extends HealthAwarePublisher {
     private int highThreshold = 50;
     /** Minimum number of duplicate lines for normal priority warnings. @since 2.5 */
     private int normalThreshold = 25;
+    /** Determines whether the source code text of DupFinder reports should be skipped. @since 3.0.1 */
+    private boolean skipDupFinderText;
+    /** Maximum number of characters of the source code text of DupFinder fragments, 0 means no limit. @since 3.0.1 */
+    private int maximumDupFinderTextLength;
+    /** Maximum number of files that are parsed concurrently, 0 means one thread per processor. @since 3.0.1 */
+    private int numberOfThreads;
+    /** Maximum number of matrix run results that are loaded concurrently, 0 or 1 means sequentially. @since 3.0.1 */
+    private int numberOfAggregationThreads;
+    /** Determines whether the source code fragments should be formatted when the results are published. @since 3.0.1 */
+    private boolean preformatSourceCode;
+    /** Ant file-set pattern of the source files that should be scanned by the built-in detector. @since 3.0.1 */
+    private String sourcePattern;
+    /** Minimum number of tokens of a duplication found by the built-in detector. @since 3.0.1 */
+    private int minimumTokens = SourceCodeDetector.DEFAULT_MINIMUM_TOKENS;
+    /** Determines whether the built-in detector should find maximal duplications using a suffix array. @since 3.0.1 */
+    private boolean findMaximalDuplicates;
+    /** Minimum similarity in percent of similar blocks found by the built-in detector, 0 disables. @since 3.0.1 */
+    private int similarityThreshold;
 
     @DataBoundConstructor
     public DryPublisher() {
@@ -107,21 +129,243 @@ public class DryPublisher extends HealthAwarePublisher {
         this.normalThreshold = normalThreshold;
     }
 
+    /**
+     * Returns whether the source code text of DupFinder reports should be skipped.
+     *
+     * @return {@code true} if the text should be skipped, {@code false} otherwise
+     */
+    public boolean getSkipDupFinderText() {
+        return skipDupFinderText;
+    }
+
+    /**
+     * Sets whether the source code text of DupFinder reports should be skipped.
+     *
+     * @param skipDupFinderText {@code true} if the text should be skipped
+     */
+    @DataBoundSetter
+    public void setSkipDupFinderText(final boolean skipDupFinderText) {
+        this.skipDupFinderText = skipDupFinderText;
+    }
+
+    /**
+     * Returns the maximum number of characters of the source code text of DupFinder fragments.
+     *
+     * @return the maximum number of characters, 0 if the text should not be truncated
+     */
+    public int getMaximumDupFinderTextLength() {
+        return maximumDupFinderTextLength;
+    }
+
+    /**
+     * Sets the maximum number of characters of the source code text of DupFinder fragments.
+     *
+     * @param maximumDupFinderTextLength the maximum number of characters, 0 if the text should not be truncated
+     */
+    @DataBoundSetter
+    public void setMaximumDupFinderTextLength(final int maximumDupFinderTextLength) {
+        this.maximumDupFinderTextLength = maximumDupFinderTextLength;
+    }
+
+    /**
+     * Returns the maximum number of files that are parsed concurrently.
+     *
+     * @return the maximum number of files, 0 if one thread per available processor should be used
+     */
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    /**
+     * Sets the maximum number of files that are parsed concurrently.
+     *
+     * @param numberOfThreads the maximum number of files, 0 if one thread per available processor should be used
+     */
+    @DataBoundSetter
+    public void setNumberOfThreads(final int numberOfThreads) {
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * Returns the maximum number of results of matrix runs that are loaded concurrently when the matrix build
+     * finishes.
+     *
+     * @return the maximum number of results, 0 or 1 if the results should be aggregated sequentially
+     */
+    public int getNumberOfAggregationThreads() {
+        return numberOfAggregationThreads;
+    }
+
+    /**
+     * Sets the maximum number of results of matrix runs that are loaded concurrently when the matrix build finishes.
+     *
+     * @param numberOfAggregationThreads the maximum number of results, 0 or 1 if the results should be aggregated
+     *            sequentially
+     */
+    @DataBoundSetter
+    public void setNumberOfAggregationThreads(final int numberOfAggregationThreads) {
+        this.numberOfAggregationThreads = numberOfAggregationThreads;
+    }
+
+    /**
+     * Returns whether the source code fragments of the duplications should be formatted when the results are
+     * published, so that the first rendering of the warnings is fast.
+     *
+     * @return {@code true} if the fragments should be formatted in advance, {@code false} if they should be formatted
+     *         on demand
+     */
+    public boolean getPreformatSourceCode() {
+        return preformatSourceCode;
+    }
+
+    /**
+     * Determines whether the source code fragments of the duplications should be formatted when the results are
+     * published.
+     *
+     * @param preformatSourceCode {@code true} if the fragments should be formatted in advance, {@code false} if they
+     *            should be formatted on demand
+     */
+    @DataBoundSetter
+    public void setPreformatSourceCode(final boolean preformatSourceCode) {
+        this.preformatSourceCode = preformatSourceCode;
+    }
+
+    /**
+     * Returns the Ant file-set pattern of the source files that should be scanned by the built-in detector.
+     *
+     * @return the pattern of the source files, or {@code null} if the built-in detector is not used
+     */
+    @CheckForNull
+    public String getSourcePattern() {
+        return sourcePattern;
+    }
+
+    /**
+     * Sets the Ant file-set pattern of the source files that should be scanned by the built-in detector.
+     *
+     * @param sourcePattern the pattern of the source files, an empty pattern disables the built-in detector
+     */
+    @DataBoundSetter
+    public void setSourcePattern(final String sourcePattern) {
+        this.sourcePattern = sourcePattern;
+    }
+
+    /**
+     * Returns the minimum number of tokens of a duplication found by the built-in detector.
+     *
+     * @return the minimum number of tokens
+     */
+    public int getMinimumTokens() {
+        return minimumTokens > 0 ? minimumTokens : SourceCodeDetector.DEFAULT_MINIMUM_TOKENS;
+    }
+
+    /**
+     * Sets the minimum number of tokens of a duplication found by the built-in detector.
+     *
+     * @param minimumTokens the minimum number of tokens
+     */
+    @DataBoundSetter
+    public void setMinimumTokens(final int minimumTokens) {
+        this.minimumTokens = minimumTokens;
+    }
+
+    /**
+     * Returns whether the built-in detector should find maximal duplications using a suffix array.
+     *
+     * @return {@code true} if the maximal duplications should be found, {@code false} if the faster rolling hash
+     *         detection should be used
+     */
+    public boolean getFindMaximalDuplicates() {
+        return findMaximalDuplicates;
+    }
+
+    /**
+     * Sets whether the built-in detector should find maximal duplications using a suffix array.
+     *
+     * @param findMaximalDuplicates {@code true} if the maximal duplications should be found, {@code false} if the
+     *            faster rolling hash detection should be used
+     */
+    @DataBoundSetter
+    public void setFindMaximalDuplicates(final boolean findMaximalDuplicates) {
+        this.findMaximalDuplicates = findMaximalDuplicates;
+    }
+
+    /**
+     * Returns the minimum similarity in percent of similar blocks that are found by the built-in detector.
+     *
+     * @return the minimum similarity in percent, 0 if similar blocks should not be detected
+     */
+    public int getSimilarityThreshold() {
+        return similarityThreshold;
+    }
+
+    /**
+     * Sets the minimum similarity in percent of similar blocks that are found by the built-in detector.
+     *
+     * @param similarityThreshold the minimum similarity in percent, 0 if similar blocks should not be detected
+     */
+    @DataBoundSetter
+    public void setSimilarityThreshold(final int similarityThreshold) {
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    private double getSimilarity() {
+        return Math.max(0, Math.min(100, similarityThreshold)) / 100.0;
+    }
+
+    private boolean isSourceDetectionEnabled() {
+        return StringUtils.isNotBlank(sourcePattern);
+    }
+
+    private int getDupFinderTextLimit() {
+        if (skipDupFinderText) {
+            return DupFinderParser.NO_TEXT;
+        }
+        if (maximumDupFinderTextLength > 0) {
+            return maximumDupFinderTextLength;
+        }
+        return DupFinderParser.ALL_TEXT;
+    }
+
     @Override
     public BuildResult perform(final Run<?, ?> build, final FilePath workspace, final PluginLogger logger) throws
             InterruptedException, IOException {
-        logger.log("Collecting duplicate code analysis files...");
+        ParserResult project;
+        if (isSourceDetectionEnabled() && StringUtils.isBlank(getPattern())) {
+            project = new ParserResult(workspace);
+        }
+        else {
+            logger.log("Collecting duplicate code analysis files...");
 
-        FilesParser dryCollector = new FilesParser(PLUGIN_NAME,
-                StringUtils.defaultIfEmpty(expandFilePattern(getPattern(), build.getEnvironment(TaskListener.NULL)), DEFAULT_DRY_PATTERN),
+            DuplicationFilesParser dryCollector = new DuplicationFilesParser(
+                    StringUtils.defaultIfEmpty(expandFilePattern(getPattern(),
+                            build.getEnvironment(TaskListener.NULL)), DEFAULT_DRY_PATTERN),
                     new DuplicationParserRegistry(getNormalThreshold(), getHighThreshold(), workspace.getRemote(),
-                            getDefaultEncoding()),
-                    shouldDetectModules(), isMavenBuild(build));
+                            getDefaultEncoding(), getDupFinderTextLimit()),
+                    shouldDetectModules(), isMavenBuild(build), getNumberOfThreads());
+
+            project = workspace.act(dryCollector);
+            logger.logLines(project.getLogMessages());
+        }
 
-        ParserResult project = workspace.act(dryCollector);
-        logger.logLines(project.getLogMessages());
+        if (isSourceDetectionEnabled()) {
+            logger.log("Detecting duplicate code in source files...");
+
+            SourceFilesDetector detector = new SourceFilesDetector(
+                    expandFilePattern(getSourcePattern(), build.getEnvironment(TaskListener.NULL)),
+                    new SourceCodeDetector(getHighThreshold(), getNormalThreshold(), getMinimumTokens(),
+                            getDefaultEncoding(), getFindMaximalDuplicates(), getSimilarity()),
+                    shouldDetectModules(), getNumberOfThreads());
+
+            ParserResult detected = workspace.act(detector);
+            logger.logLines(detected.getLogMessages());
+            project.addProject(detected);
+        }
 
         blame(project.getAnnotations(), build, workspace);
+        if (preformatSourceCode) {
+            FragmentFormatter.preload(project.getAnnotations());
+        }
 
         DryResult result = new DryResult(build, getDefaultEncoding(), project,
                 usePreviousBuildAsReference(), useOnlyStableBuildsAsReference());
@@ -139,6 +383,6 @@ public class DryPublisher extends HealthAwarePublisher {
     public MatrixAggregator createAggregator(final MatrixBuild build, final Launcher launcher,
             final BuildListener listener) {
         return new DryAnnotationsAggregator(build, launcher, listener, this, getDefaultEncoding(),
-                usePreviousBuildAsReference(), useOnlyStableBuildsAsReference());
+                usePreviousBuildAsReference(), useOnlyStableBuildsAsReference(), getNumberOfAggregationThreads());
     }
 }
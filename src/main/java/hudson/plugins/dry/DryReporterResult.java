@@ -1,6 +1,7 @@
 package hudson.plugins.dry;
 
 import hudson.model.Run;
+import hudson.plugins.analysis.core.BuildHistory;
 import hudson.plugins.analysis.core.ParserResult;
 import hudson.plugins.analysis.core.ResultAction;
 import hudson.plugins.analysis.core.BuildResult;
@@ -35,6 +36,27 @@ public class DryReporterResult extends DryResult {
                 DryMavenResultAction.class);
     }
 
+    /**
+     * Creates a new instance of {@link DryReporterResult} without annotations. This result is neither serialized
+     * nor added to the trend of the job: it is shown only until the aggregated result of all modules replaces it.
+     *
+     * @param build
+     *            the current build as owner of this action
+     * @param defaultEncoding
+     *            the default encoding to be used when reading and parsing files
+     * @param usePreviousBuildAsReference
+     *            determines whether to use the previous build as the reference
+     *            build
+     * @param useStableBuildAsReference
+     *            determines whether only stable builds should be used as
+     *            reference builds or not
+     */
+    DryReporterResult(final Run<?, ?> build, final String defaultEncoding,
+            final boolean usePreviousBuildAsReference, final boolean useStableBuildAsReference) {
+        super(build, new BuildHistory(build, DryMavenResultAction.class, usePreviousBuildAsReference,
+                useStableBuildAsReference), new ParserResult(), defaultEncoding, false);
+    }
+
     @Override
     protected Class<? extends ResultAction<? extends BuildResult>> getResultActionType() {
         return DryMavenResultAction.class;
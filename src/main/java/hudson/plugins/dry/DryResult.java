@@ -1,5 +1,25 @@
 package hudson.plugins.dry;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Exported;
+
 import com.thoughtworks.xstream.XStream;
 
 import hudson.model.Run;
@@ -8,7 +28,13 @@ import hudson.plugins.analysis.core.BuildResult;
 import hudson.plugins.analysis.core.ParserResult;
 import hudson.plugins.analysis.core.ResultAction;
 import hudson.plugins.analysis.util.model.FileAnnotation;
+import hudson.plugins.analysis.util.model.JavaProject;
 import hudson.plugins.dry.parser.DuplicateCode;
+import hudson.plugins.dry.parser.DuplicationGroup;
+import hudson.plugins.dry.parser.DuplicatedLines;
+import hudson.plugins.dry.parser.DuplicationGroupDifferencer;
+import hudson.plugins.dry.parser.DuplicationGroupIndex;
+import hudson.plugins.dry.parser.DuplicationStorage;
 
 /**
  * Represents the results of the DRY analysis. One instance of this class is persisted for
@@ -18,8 +44,36 @@ import hudson.plugins.dry.parser.DuplicateCode;
  */
 public class DryResult extends BuildResult {
     private static final long serialVersionUID = 2768250056765266658L;
+    private static final Logger LOGGER = Logger.getLogger(DryResult.class.getName());
+
+    /**
+     * Determines whether the annotations of new builds are stored in the compact binary format rather than in XML.
+     * Can be enabled with the system property {@code hudson.plugins.dry.DryResult.binaryStorage}.
+     */
+    static final boolean USE_BINARY_STORAGE = Boolean.getBoolean(DryResult.class.getName() + ".binaryStorage");
+    /** Default number of duplications of a page of the warnings table. */
+    static final int PAGE_SIZE = 100;
+    private static final int MAXIMUM_PAGE_SIZE = 1000;
 
     private int totalNumberOfDuplicatedLines;
+    /** The number of duplicated lines of each file. @since 3.0.1 */
+    private Map<String, Integer> duplicatedLinesPerFile;
+    /** The number of duplicated lines of each module. @since 3.0.1 */
+    private Map<String, Integer> duplicatedLinesPerModule;
+    /** The number of new duplications with respect to the reference build. @since 3.0.1 */
+    private int numberOfNewDuplications;
+    /** The number of fixed duplications with respect to the reference build. @since 3.0.1 */
+    private int numberOfFixedDuplications;
+    /** The number of duplications with more code blocks than in the reference build. @since 3.0.1 */
+    private int numberOfGrownDuplications;
+    /** The number of duplications with fewer code blocks than in the reference build. @since 3.0.1 */
+    private int numberOfShrunkDuplications;
+    /** The index of the duplications, computed on demand. */
+    private transient SoftReference<DuplicationGroupIndex> duplicationIndex;
+    /** The annotations the index of the duplications has been computed for. */
+    private transient WeakReference<JavaProject> indexedProject;
+    /** The annotations read from the binary storage, loaded on demand. */
+    private transient WeakReference<JavaProject> binaryProject;
 
     /**
      * Creates a new instance of {@link DryResult}.
@@ -72,18 +126,72 @@ public class DryResult extends BuildResult {
             final String defaultEncoding, final boolean canSerialize) {
         super(build, history, result, defaultEncoding);
 
-        for (FileAnnotation annotation : result.getAnnotations()) {
-            if (annotation instanceof DuplicateCode) {
-                DuplicateCode dry = (DuplicateCode) annotation;
-                totalNumberOfDuplicatedLines += dry.getNumberOfLines();
-            }
-        }
+        DuplicatedLines duplicatedLines = new DuplicatedLines(result.getAnnotations());
+        totalNumberOfDuplicatedLines = duplicatedLines.getTotal();
+        duplicatedLinesPerFile = duplicatedLines.getFiles();
+        duplicatedLinesPerModule = duplicatedLines.getModules();
+
+        DuplicationGroupDifferencer.Difference difference = new DuplicationGroupDifferencer(
+                history.getReferenceAnnotations().getAnnotations()).compare(result.getAnnotations());
+        numberOfNewDuplications = difference.getNewGroups().size();
+        numberOfFixedDuplications = difference.getFixedGroups().size();
+        numberOfGrownDuplications = difference.getGrownGroups().size();
+        numberOfShrunkDuplications = difference.getShrunkGroups().size();
 
         if (canSerialize) {
             serializeAnnotations(result.getAnnotations());
+            DryTrendStore.append(this);
         }
     }
 
+    @Override
+    protected void serializeAnnotations(final Collection<FileAnnotation> annotations) {
+        if (USE_BINARY_STORAGE) {
+            DuplicationStorage storage = getStorage();
+            try {
+                storage.write(annotations);
+                return;
+            }
+            catch (IOException exception) {
+                LOGGER.log(Level.WARNING, "Failed to write binary DRY results, using XML instead", exception);
+                storage.delete();
+            }
+        }
+        super.serializeAnnotations(annotations);
+    }
+
+    /**
+     * Returns the annotations of this result. If the annotations have been stored in the compact binary format,
+     * then they are read from the binary storage, otherwise from the XML file.
+     *
+     * @return the annotations of this result
+     */
+    @Override
+    public JavaProject getContainer() {
+        DuplicationStorage storage = getStorage();
+        if (!storage.exists()) {
+            return super.getContainer();
+        }
+        synchronized (this) {
+            JavaProject project = binaryProject == null ? null : binaryProject.get();
+            if (project == null) {
+                project = new JavaProject();
+                try {
+                    project.addAnnotations(storage.read());
+                }
+                catch (IOException exception) {
+                    LOGGER.log(Level.WARNING, "Failed to read binary DRY results of " + getOwner(), exception);
+                }
+                binaryProject = new WeakReference<JavaProject>(project);
+            }
+            return project;
+        }
+    }
+
+    private DuplicationStorage getStorage() {
+        return new DuplicationStorage(new File(getOwner().getRootDir(), DuplicationStorage.FILE_NAME));
+    }
+
     @Override
     public String getHeader() {
         return Messages.DRY_ResultAction_Header();
@@ -92,6 +200,7 @@ public class DryResult extends BuildResult {
     @Override
     protected void configure(final XStream xstream) {
         xstream.alias("dry", DuplicateCode.class);
+        xstream.alias("dry-group", DuplicationGroup.class);
     }
 
     @Override
@@ -102,7 +211,14 @@ public class DryResult extends BuildResult {
 
     @Override
     protected String createDeltaMessage() {
-        return createDefaultDeltaMessage(DryDescriptor.RESULT_URL, getNumberOfNewWarnings(), getNumberOfFixedWarnings());
+        String message = createDefaultDeltaMessage(DryDescriptor.RESULT_URL, getNumberOfNewWarnings(),
+                getNumberOfFixedWarnings());
+        if (numberOfNewDuplications + numberOfFixedDuplications + numberOfGrownDuplications
+                + numberOfShrunkDuplications > 0) {
+            message += "<li>" + Messages.DRY_ResultAction_DuplicationDelta(numberOfNewDuplications,
+                    numberOfFixedDuplications, numberOfGrownDuplications, numberOfShrunkDuplications) + "</li>";
+        }
+        return message;
     }
 
     @Override
@@ -121,11 +237,172 @@ public class DryResult extends BuildResult {
     }
 
     /**
-     * Returns the total number of duplicated lines. Each duplication in each file is counted once.
+     * Returns the total number of duplicated lines. Lines of a file that are part of several duplications are
+     * counted once. Note that results of previous releases count these lines for each duplication.
      *
      * @return total number of duplicated lines
      */
     public int getTotalNumberOfDuplicatedLines() {
         return totalNumberOfDuplicatedLines;
     }
+
+    /**
+     * Returns the number of duplicated lines of the specified file.
+     *
+     * @param fileName
+     *            the absolute name of the file
+     * @return the number of duplicated lines, or 0 if the file contains no duplications or the number has not been
+     *         recorded by previous releases
+     */
+    public int getNumberOfDuplicatedLines(final String fileName) {
+        return getValue(duplicatedLinesPerFile, fileName);
+    }
+
+    /**
+     * Returns the number of duplicated lines of the specified module.
+     *
+     * @param moduleName
+     *            the name of the module
+     * @return the number of duplicated lines, or 0 if the module contains no duplications or the number has not
+     *         been recorded by previous releases
+     */
+    public int getNumberOfDuplicatedLinesOfModule(final String moduleName) {
+        return getValue(duplicatedLinesPerModule, moduleName);
+    }
+
+    /**
+     * Returns the number of duplications that have no counterpart in the reference build. In contrast to
+     * {@link #getNumberOfNewWarnings()} a duplication is counted once, no matter how many code blocks it has.
+     *
+     * @return the number of new duplications
+     */
+    @Exported
+    public int getNumberOfNewDuplications() {
+        return numberOfNewDuplications;
+    }
+
+    /**
+     * Returns the number of duplications of the reference build that have no counterpart in this build.
+     *
+     * @return the number of fixed duplications
+     */
+    @Exported
+    public int getNumberOfFixedDuplications() {
+        return numberOfFixedDuplications;
+    }
+
+    /**
+     * Returns the number of duplications that have more code blocks than in the reference build.
+     *
+     * @return the number of grown duplications
+     */
+    @Exported
+    public int getNumberOfGrownDuplications() {
+        return numberOfGrownDuplications;
+    }
+
+    /**
+     * Returns the number of duplications that have fewer code blocks than in the reference build.
+     *
+     * @return the number of shrunk duplications
+     */
+    @Exported
+    public int getNumberOfShrunkDuplications() {
+        return numberOfShrunkDuplications;
+    }
+
+    private int getValue(@CheckForNull final Map<String, Integer> values, final String key) {
+        if (values == null) {
+            return 0;
+        }
+        Integer value = values.get(key);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * Returns the sorted index of the duplications of this result. The index is computed on the first call and
+     * cached until the annotations of this result are reloaded or the memory is required elsewhere. The index
+     * belongs to the loaded instance of the annotations, so the annotations are neither sorted nor compared as long
+     * as they are not reloaded.
+     *
+     * @return the index of the duplications
+     */
+    public synchronized DuplicationGroupIndex getDuplicationIndex() {
+        JavaProject project = getContainer();
+        DuplicationGroupIndex index = duplicationIndex == null ? null : duplicationIndex.get();
+        if (index == null || indexedProject == null || indexedProject.get() != project) {
+            index = new DuplicationGroupIndex(project.getSortedAnnotations());
+            duplicationIndex = new SoftReference<DuplicationGroupIndex>(index);
+            indexedProject = new WeakReference<JavaProject>(project);
+        }
+        return index;
+    }
+
+    /**
+     * Writes a page of the duplications of this result as JSON. The page is selected with the request parameters
+     * {@code start} (index of the first duplication), {@code length} (number of duplications), {@code sort} (one of
+     * {@code file}, {@code lines}, or {@code links}), and {@code order} ({@code asc} or {@code desc}).
+     *
+     * @param request
+     *            Stapler request
+     * @param response
+     *            Stapler response
+     * @throws IOException
+     *             if the page could not be written
+     */
+    public void doDuplications(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        int start = NumberUtils.toInt(request.getParameter("start"), 0);
+        int length = Math.min(NumberUtils.toInt(request.getParameter("length"), PAGE_SIZE), MAXIMUM_PAGE_SIZE);
+        boolean ascending = !"desc".equals(request.getParameter("order"));
+
+        DuplicationGroupIndex index = getDuplicationIndex();
+        response.setContentType("application/json;charset=UTF-8");
+        new DuplicationJsonWriter(response.getWriter(), getOwner()).writePage(index.size(), start,
+                index.getPage(start, length, request.getParameter("sort"), ascending));
+    }
+
+    /**
+     * Exports all duplications of this result as JSON. Each duplication is written with its ID and the file, lines,
+     * module, package, and priority of its code blocks. If the request parameter {@code format} is {@code ndjson},
+     * then each duplication is written on a separate line. The duplications are written one after another: if the
+     * duplications are stored in the binary format, they are even read one after another.
+     *
+     * @param request
+     *            Stapler request
+     * @param response
+     *            Stapler response
+     * @throws IOException
+     *             if the duplications could not be written
+     */
+    public void doExport(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        boolean isNdjson = "ndjson".equals(request.getParameter("format"));
+        response.setContentType(isNdjson ? "application/x-ndjson;charset=UTF-8" : "application/json;charset=UTF-8");
+
+        final DuplicationJsonWriter writer = new DuplicationJsonWriter(response.getWriter(), getOwner());
+        writer.startExport(isNdjson);
+        DuplicationStorage storage = getStorage();
+        if (storage.exists()) {
+            storage.accept(new DuplicationStorage.Visitor() {
+                @Override
+                public void visit(final List<DuplicateCode> blocks) throws IOException {
+                    writer.writeDuplication(blocks.get(0).getNumber(), blocks);
+                }
+            });
+        }
+        else {
+            Set<DuplicationGroup> exported = Collections.newSetFromMap(
+                    new IdentityHashMap<DuplicationGroup, Boolean>());
+            for (FileAnnotation annotation : getContainer().getAnnotations()) {
+                DuplicateCode duplication = (DuplicateCode)annotation;
+                DuplicationGroup group = duplication.getGroup();
+                if (group == null) {
+                    writer.writeDuplication(duplication.getNumber(), Collections.singleton(duplication));
+                }
+                else if (exported.add(group)) {
+                    writer.writeDuplication(duplication.getNumber(), group.getMembers());
+                }
+            }
+        }
+        writer.endExport();
+    }
 }
@@ -1,11 +1,18 @@
 package hudson.plugins.dry;
 
 import java.util.Collection;
+import java.util.SortedSet;
+
+import javax.annotation.CheckForNull;
 
 import hudson.model.Run;
+import hudson.plugins.analysis.core.ResultAction;
+import hudson.plugins.analysis.util.model.AnnotationContainer;
 import hudson.plugins.analysis.util.model.FileAnnotation;
 import hudson.plugins.analysis.views.DetailFactory;
 import hudson.plugins.analysis.views.TabDetail;
+import hudson.plugins.dry.parser.DuplicateCode;
+import hudson.plugins.dry.parser.DuplicationGroupIndex;
 
 /**
  * Detail view for the DRY plug-in: uses different table visualization.
@@ -43,5 +50,79 @@ public class DryTabDetail extends TabDetail {
     public String getDetails() {
         return "dry-details.jelly";
     }
-}
 
+    /**
+     * Returns one warning for each duplication of the specified annotations, sorted by the natural order of the
+     * warnings. If the annotations are all annotations of the build, then the cached index of the build result is
+     * used.
+     *
+     * @param container
+     *            the annotations to show
+     * @return the representatives of the duplications
+     */
+    public SortedSet<FileAnnotation> getDuplications(final AnnotationContainer container) {
+        DuplicationGroupIndex index = getIndex(container);
+        if (index != null) {
+            return index.getRepresentatives();
+        }
+        return DuplicateCode.filter(container.getSortedAnnotations());
+    }
+
+    /**
+     * Returns whether the duplications of the specified annotations are too many to be rendered at once. In this
+     * case the warnings table loads the duplications page by page from the result. Only the view of all
+     * annotations of the build is paged.
+     *
+     * @param container
+     *            the annotations to show
+     * @return {@code true} if the duplications are loaded page by page, {@code false} if they are rendered at once
+     */
+    public boolean isPaged(final AnnotationContainer container) {
+        DuplicationGroupIndex index = getIndex(container);
+        return index != null && index.size() > DryResult.PAGE_SIZE;
+    }
+
+    /**
+     * Returns the cached index of the build result if the specified annotations are all annotations of the build.
+     * The annotations of a tab are always a subset of the annotations of the build, so they are all annotations
+     * if their number is the same.
+     *
+     * @return the index, or {@code null} if the annotations are a part of the annotations of the build
+     */
+    @CheckForNull
+    private DuplicationGroupIndex getIndex(final AnnotationContainer container) {
+        DryResult result = getResult();
+        if (result != null && result.getNumberOfAnnotations() == container.getNumberOfAnnotations()) {
+            return result.getDuplicationIndex();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the URL of the pages of the duplications, relative to the root URL.
+     *
+     * @return the URL of the pages
+     * @see DryResult#doDuplications(org.kohsuke.stapler.StaplerRequest, org.kohsuke.stapler.StaplerResponse)
+     */
+    public String getDuplicationsUrl() {
+        return getOwner().getUrl() + DryDescriptor.RESULT_URL + "/duplications";
+    }
+
+    /**
+     * Returns the number of duplications of a page of the warnings table.
+     *
+     * @return the number of duplications of a page
+     */
+    public int getPageSize() {
+        return DryResult.PAGE_SIZE;
+    }
+
+    private DryResult getResult() {
+        for (ResultAction<?> action : getOwner().getActions(ResultAction.class)) {
+            if (action.getResult() instanceof DryResult) {
+                return (DryResult)action.getResult();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,357 @@
+package hudson.plugins.dry;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+import hudson.plugins.analysis.core.ResultAction;
+
+/**
+ * Stores a summary of the DRY results of all builds of a job in a single file in the root directory of the job. The
+ * duplicated lines trend graph reads this summary rather than the results of the individual builds. The result of
+ * each build appends a line with the build number and the number of duplicated lines. If a build is deleted, its
+ * line is removed.
+ * <p>
+ * If the summary does not exist yet, then it is created from the existing results of the job, either when the
+ * next result is appended or when the summary is read for the first time. The results are loaded without holding
+ * the lock of the job, afterwards they are merged with the lines that have been written in the meantime. Each job
+ * has its own lock, so the summaries of different jobs are read and written independently.
+ * </p>
+ *
+ * @author Ulli Hafner
+ */
+public final class DryTrendStore {
+    /** File name of the summary, relative to the root directory of the job. */
+    static final String FILE_NAME = "dry-trend.csv";
+    private static final String HEADER = "build,duplicatedLines";
+    private static final String ENCODING = "UTF-8";
+    private static final int NUMBER_OF_COLUMNS = 2;
+    private static final Logger LOGGER = Logger.getLogger(DryTrendStore.class.getName());
+
+    /** The locks of the summaries, by the absolute path of the summary file. */
+    private static final ConcurrentMap<String, Object> LOCKS = new ConcurrentHashMap<String, Object>();
+
+    /**
+     * Appends the summary of the specified result. If the summary of the job does not exist yet, then it is created
+     * from the results of all previous builds.
+     *
+     * @param result
+     *            the result to append
+     */
+    public static void append(final DryResult result) {
+        Run<?, ?> owner = result.getOwner();
+        try {
+            append(getFile(owner.getParent()), new Entry(owner.getNumber(), result),
+                    createHistory(owner.getPreviousBuild()));
+        }
+        catch (IOException exception) {
+            LOGGER.log(Level.WARNING, "Failed to append DRY trend of " + owner, exception);
+        }
+    }
+
+    /**
+     * Appends the specified entry to the summary. If the summary does not exist yet, then it is created from the
+     * specified history and the entry.
+     *
+     * @param file
+     *            the summary file
+     * @param entry
+     *            the entry to append
+     * @param history
+     *            provides the entries of the previous builds
+     * @throws IOException
+     *             if the summary could not be written
+     */
+    static void append(final File file, final Entry entry, final History history) throws IOException {
+        synchronized (getLock(file)) {
+            if (file.isFile()) {
+                write(file, true, Collections.singletonList(entry));
+                return;
+            }
+        }
+        Map<Integer, Entry> entries = history.collect();
+        entries.put(entry.getBuild(), entry);
+        merge(file, entries);
+    }
+
+    /**
+     * Returns the summaries of the builds of the job of the specified build, up to and including the specified
+     * build. If the summary of the job does not exist yet, then it is created by reading the results of all builds.
+     *
+     * @param lastBuild
+     *            the last build to return the summary for
+     * @return the summaries, sorted by build number
+     */
+    public static List<Entry> read(final Run<?, ?> lastBuild) {
+        Job<?, ?> job = lastBuild.getParent();
+        List<Entry> summary = new ArrayList<Entry>();
+        try {
+            for (Entry entry : read(getFile(job), createHistory(job.getLastBuild()))) {
+                if (entry.getBuild() <= lastBuild.getNumber()) {
+                    summary.add(entry);
+                }
+            }
+        }
+        catch (IOException exception) {
+            LOGGER.log(Level.WARNING, "Failed to read DRY trend of " + job, exception);
+        }
+        return summary;
+    }
+
+    /**
+     * Returns all entries of the summary. If the summary does not exist yet, then it is created from the specified
+     * history.
+     *
+     * @param file
+     *            the summary file
+     * @param history
+     *            provides the entries of all builds
+     * @return the entries, sorted by build number
+     * @throws IOException
+     *             if the summary could not be read or written
+     */
+    static Collection<Entry> read(final File file, final History history) throws IOException {
+        synchronized (getLock(file)) {
+            if (file.isFile()) {
+                Map<Integer, Entry> entries = new TreeMap<Integer, Entry>();
+                read(file, entries);
+                return entries.values();
+            }
+        }
+        return merge(file, history.collect());
+    }
+
+    /**
+     * Removes the summary of the specified build.
+     *
+     * @param build
+     *            the build to remove
+     */
+    public static void remove(final Run<?, ?> build) {
+        try {
+            remove(getFile(build.getParent()), build.getNumber());
+        }
+        catch (IOException exception) {
+            LOGGER.log(Level.WARNING, "Failed to remove " + build + " from DRY trend", exception);
+        }
+    }
+
+    /**
+     * Removes the entry of the specified build from the summary.
+     *
+     * @param file
+     *            the summary file
+     * @param build
+     *            the number of the build to remove
+     * @throws IOException
+     *             if the summary could not be read or written
+     */
+    static void remove(final File file, final int build) throws IOException {
+        synchronized (getLock(file)) {
+            if (file.isFile()) {
+                Map<Integer, Entry> entries = new TreeMap<Integer, Entry>();
+                read(file, entries);
+                if (entries.remove(build) != null) {
+                    replace(file, entries.values());
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the specified entries with the entries that have been written to the summary since the summary has been
+     * found missing.
+     *
+     * @return all entries of the summary
+     */
+    private static Collection<Entry> merge(final File file, final Map<Integer, Entry> entries) throws IOException {
+        Map<Integer, Entry> merged = new TreeMap<Integer, Entry>(entries);
+        synchronized (getLock(file)) {
+            if (file.isFile()) {
+                read(file, merged);
+            }
+            replace(file, merged.values());
+            return merged.values();
+        }
+    }
+
+    private static Object getLock(final File file) {
+        String key = file.getAbsolutePath();
+        Object lock = LOCKS.get(key);
+        if (lock == null) {
+            Object created = new Object();
+            lock = LOCKS.putIfAbsent(key, created);
+            if (lock == null) {
+                lock = created;
+            }
+        }
+        return lock;
+    }
+
+    private static File getFile(final Job<?, ?> job) {
+        return new File(job.getRootDir(), FILE_NAME);
+    }
+
+    private static History createHistory(@CheckForNull final Run<?, ?> lastBuild) {
+        return new History() {
+            @Override
+            public Map<Integer, Entry> collect() {
+                Map<Integer, Entry> entries = new TreeMap<Integer, Entry>();
+                for (Run<?, ?> build = lastBuild; build != null; build = build.getPreviousBuild()) {
+                    DryResult result = getResult(build);
+                    if (result != null) {
+                        entries.put(build.getNumber(), new Entry(build.getNumber(), result));
+                    }
+                }
+                return entries;
+            }
+        };
+    }
+
+    @CheckForNull
+    private static DryResult getResult(final Run<?, ?> build) {
+        for (ResultAction<?> action : build.getActions(ResultAction.class)) {
+            if (action.getResult() instanceof DryResult) {
+                return (DryResult)action.getResult();
+            }
+        }
+        return null;
+    }
+
+    private static void read(final File file, final Map<Integer, Entry> entries) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] values = StringUtils.split(line, ',');
+                if (values.length == NUMBER_OF_COLUMNS && StringUtils.isNumeric(values[0])) {
+                    Entry entry = new Entry(values);
+                    entries.put(entry.getBuild(), entry);
+                }
+            }
+        }
+        catch (NumberFormatException exception) {
+            throw new IOException("Invalid DRY trend " + file, exception);
+        }
+        finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    private static void replace(final File file, final Collection<Entry> entries) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        write(temporary, false, entries);
+        if (file.exists() && !file.delete() || !temporary.renameTo(file)) {
+            throw new IOException("Can't replace " + file);
+        }
+    }
+
+    private static void write(final File file, final boolean append, final Collection<Entry> entries)
+            throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, append), ENCODING);
+        try {
+            if (!append) {
+                writer.write(HEADER);
+                writer.write('\n');
+            }
+            for (Entry entry : entries) {
+                writer.write(entry.toString());
+                writer.write('\n');
+            }
+        }
+        finally {
+            IOUtils.closeQuietly(writer);
+        }
+    }
+
+    /**
+     * Provides the entries of the builds of a job.
+     */
+    interface History {
+        /**
+         * Creates the entries of the builds from their results.
+         *
+         * @return the entries, by build number
+         */
+        Map<Integer, Entry> collect();
+    }
+
+    /**
+     * Summary of the result of a single build.
+     */
+    public static final class Entry {
+        private final int build;
+        private final int duplicatedLines;
+
+        Entry(final int build, final DryResult result) {
+            this.build = build;
+            duplicatedLines = result.getTotalNumberOfDuplicatedLines();
+        }
+
+        Entry(final String[] values) {
+            build = Integer.parseInt(values[0]);
+            duplicatedLines = Integer.parseInt(values[1]);
+        }
+
+        /**
+         * Returns the build number.
+         *
+         * @return the build number
+         */
+        public int getBuild() {
+            return build;
+        }
+
+        /**
+         * Returns the total number of duplicated lines.
+         *
+         * @return the number of duplicated lines
+         */
+        public int getDuplicatedLines() {
+            return duplicatedLines;
+        }
+
+        @Override
+        public String toString() {
+            return build + "," + duplicatedLines;
+        }
+    }
+
+    /**
+     * Removes the summary of deleted builds.
+     */
+    @Extension
+    public static class DeletedBuildListener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onDeleted(final Run<?, ?> build) {
+            remove(build);
+        }
+    }
+
+    private DryTrendStore() {
+        // prevents instantiation
+    }
+}
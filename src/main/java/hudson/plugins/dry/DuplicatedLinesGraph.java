@@ -4,18 +4,26 @@ import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.CheckForNull;
+
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.renderer.category.CategoryItemRenderer;
 import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.category.DefaultCategoryDataset;
 
 import hudson.plugins.analysis.core.BuildResult;
+import hudson.plugins.analysis.core.ResultAction;
 import hudson.plugins.analysis.graph.CategoryBuildResultGraph;
 import hudson.plugins.analysis.graph.ColorPalette;
 import hudson.plugins.analysis.graph.GraphConfiguration;
 import hudson.plugins.analysis.util.ToolTipProvider;
+import hudson.util.Graph;
 
 /**
- * Builds a graph showing the total number of duplicated lines in a line graph.
+ * Builds a graph showing the total number of duplicated lines in a line graph. If the builds are used as domain then
+ * the values are read from the {@link DryTrendStore} of the job so that the results of the individual builds need
+ * not be loaded. The rendered images are cached in the {@link TrendGraphCache} until the next build of the job has
+ * been completed.
  *
  * @author Ulli Hafner
  */
@@ -30,6 +38,45 @@ public class DuplicatedLinesGraph extends CategoryBuildResultGraph {
         return Messages.Trend_Type_duplicated_lines();
     }
 
+    @Override
+    public Graph getGraph(final long timestamp, final GraphConfiguration configuration,
+            @CheckForNull final String pluginName, final ResultAction<?> lastAction) {
+        return TrendGraphCache.createGraph(timestamp, configuration, getId(), lastAction.getOwner(),
+                new TrendGraphCache.ChartFactory() {
+                    @Override
+                    public JFreeChart create() {
+                        return DuplicatedLinesGraph.this.create(configuration, lastAction, pluginName);
+                    }
+                });
+    }
+
+    @Override
+    public JFreeChart create(final GraphConfiguration configuration,
+            final ResultAction<? extends BuildResult> resultAction, @CheckForNull final String pluginName) {
+        if (configuration.useBuildDateAsDomain() || configuration.isDayCountDefined()) {
+            return super.create(configuration, resultAction, pluginName);
+        }
+        List<DryTrendStore.Entry> entries = DryTrendStore.read(resultAction.getOwner());
+        if (entries.isEmpty()) {
+            return super.create(configuration, resultAction, pluginName);
+        }
+
+        int first = 0;
+        if (configuration.isBuildCountDefined()) {
+            first = Math.max(0, entries.size() - configuration.getBuildCount());
+        }
+        DefaultCategoryDataset dataSet = new DefaultCategoryDataset();
+        for (DryTrendStore.Entry entry : entries.subList(first, entries.size())) {
+            dataSet.addValue(entry.getDuplicatedLines(), Messages.Trend_Type_duplicated_lines(), "#" + entry.getBuild());
+        }
+
+        JFreeChart chart = createChart(dataSet);
+        CategoryItemRenderer renderer = createLineRenderer();
+        renderer.setSeriesPaint(0, getColors()[0]);
+        chart.getCategoryPlot().setRenderer(renderer);
+        return chart;
+    }
+
     // FIXME: analysis-core 2.0: use real type
     @Override
     protected List<Integer> computeSeries(final BuildResult current) {
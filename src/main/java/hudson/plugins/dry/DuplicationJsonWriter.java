@@ -0,0 +1,219 @@
+package hudson.plugins.dry;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+
+import hudson.model.Run;
+import hudson.plugins.analysis.util.model.FileAnnotation;
+import hudson.plugins.dry.parser.DuplicateCode;
+import hudson.plugins.dry.parser.FragmentFormatter;
+
+/**
+ * Writes duplications as JSON. The values are written directly to the underlying writer, no intermediate JSON
+ * objects are created.
+ *
+ * @author Ulli Hafner
+ */
+public class DuplicationJsonWriter {
+    private final Writer writer;
+    private final Run<?, ?> owner;
+    private boolean isNdjson;
+    private String separator = "";
+
+    /**
+     * Creates a new instance of {@link DuplicationJsonWriter}.
+     *
+     * @param writer
+     *            the writer to write the JSON text to
+     * @param owner
+     *            the build the duplications belong to
+     */
+    public DuplicationJsonWriter(final Writer writer, final Run<?, ?> owner) {
+        this.writer = writer;
+        this.owner = owner;
+    }
+
+    /**
+     * Writes a page of the duplications of the warnings table. For each duplication the representative block and
+     * all linked blocks are written. The source code fragment is written as formatted HTML if the duplication is
+     * small enough to be shown as tooltip.
+     *
+     * @param total
+     *            the total number of duplications
+     * @param start
+     *            the index of the first duplication of the page
+     * @param page
+     *            the duplications of the page
+     * @throws IOException
+     *             if the JSON text could not be written
+     */
+    public void writePage(final int total, final int start, final List<FileAnnotation> page) throws IOException {
+        writer.write("{\"total\":");
+        writer.write(String.valueOf(total));
+        writer.write(",\"start\":");
+        writer.write(String.valueOf(start));
+        writer.write(",\"rows\":[");
+        String rowSeparator = "";
+        for (FileAnnotation annotation : page) {
+            DuplicateCode duplication = (DuplicateCode)annotation;
+            writer.write(rowSeparator);
+            writer.write('{');
+            writeBlock(duplication);
+            writer.write(",\"lines\":");
+            writer.write(String.valueOf(duplication.getNumberOfLines()));
+            writer.write(",\"tooltip\":");
+            if (duplication.size() < FragmentFormatter.MAXIMUM_TOOLTIP_LINES) {
+                writeString(duplication.getFormattedSourceCode());
+            }
+            else {
+                writer.write("null");
+            }
+            writer.write(",\"links\":[");
+            String linkSeparator = "";
+            for (DuplicateCode link : duplication.getLinks()) {
+                writer.write(linkSeparator);
+                writer.write('{');
+                writeBlock(link);
+                writer.write('}');
+                linkSeparator = ",";
+            }
+            writer.write("]}");
+            rowSeparator = ",";
+        }
+        writer.write("]}");
+        writer.flush();
+    }
+
+    /**
+     * Starts the export of duplications. Each duplication is then written with
+     * {@link #writeDuplication(int, Collection)}, the export is completed with {@link #endExport()}.
+     *
+     * @param ndjson
+     *            if {@code true} then each duplication is written as a JSON object on a separate line (NDJSON),
+     *            otherwise all duplications are written as an array of a single JSON object
+     * @throws IOException
+     *             if the JSON text could not be written
+     */
+    public void startExport(final boolean ndjson) throws IOException {
+        isNdjson = ndjson;
+        separator = "";
+        if (!isNdjson) {
+            writer.write("{\"duplications\":[");
+        }
+    }
+
+    /**
+     * Writes a duplication of the export.
+     *
+     * @param id
+     *            the ID of the duplication
+     * @param blocks
+     *            the code blocks of the duplication
+     * @throws IOException
+     *             if the JSON text could not be written
+     */
+    public void writeDuplication(final int id, final Collection<DuplicateCode> blocks) throws IOException {
+        writer.write(separator);
+        writer.write("{\"id\":");
+        writer.write(String.valueOf(id));
+        writer.write(",\"blocks\":[");
+        String blockSeparator = "";
+        for (DuplicateCode block : blocks) {
+            writer.write(blockSeparator);
+            writer.write("{\"file\":");
+            writeString(block.getFileName());
+            writer.write(",\"line\":");
+            writer.write(String.valueOf(block.getPrimaryLineNumber()));
+            writer.write(",\"lines\":");
+            writer.write(String.valueOf(block.getNumberOfLines()));
+            writer.write(",\"module\":");
+            writeString(block.getModuleName());
+            writer.write(",\"package\":");
+            writeString(block.getPackageName());
+            writer.write(",\"priority\":");
+            writeString(block.getPriority().name());
+            writer.write('}');
+            blockSeparator = ",";
+        }
+        writer.write("]}");
+        separator = isNdjson ? "\n" : ",";
+    }
+
+    /**
+     * Completes the export of duplications.
+     *
+     * @throws IOException
+     *             if the JSON text could not be written
+     */
+    public void endExport() throws IOException {
+        if (isNdjson) {
+            writer.write(separator);
+        }
+        else {
+            writer.write("]}");
+        }
+        writer.flush();
+    }
+
+    private void writeBlock(final DuplicateCode block) throws IOException {
+        writer.write("\"key\":");
+        writer.write(String.valueOf(block.getKey()));
+        writer.write(",\"file\":");
+        writeString(block.getShortFileName());
+        writer.write(",\"line\":");
+        writer.write(String.valueOf(block.getPrimaryLineNumber()));
+        writer.write(",\"source\":");
+        writer.write(String.valueOf(block.canDisplayFile(owner)));
+    }
+
+    /**
+     * Writes the specified string as JSON string literal.
+     *
+     * @param value
+     *            the value to write, might be {@code null}
+     * @throws IOException
+     *             if the value could not be written
+     */
+    void writeString(@CheckForNull final String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                case '<':
+                    writer.write("\\u003c");
+                    break;
+                default:
+                    if (c < ' ') {
+                        writer.write(String.format("\\u%04x", (int)c));
+                    }
+                    else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,47 @@
+package hudson.plugins.dry;
+
+import javax.annotation.CheckForNull;
+
+import hudson.plugins.analysis.core.ParserResult;
+import hudson.plugins.analysis.util.model.MavenModule;
+
+/**
+ * Collects the annotations and modules of the module builds of a Maven build. The annotations of each module are
+ * appended once, the aggregated result is handed out only once, when the whole build has been completed.
+ *
+ * @author Ulli Hafner
+ */
+class MavenModuleAggregation {
+    /** The annotations and modules of all modules, {@code null} if the aggregation has been completed. */
+    @CheckForNull
+    private ParserResult aggregation = new ParserResult();
+
+    /**
+     * Adds the annotations and modules of the additional module to the aggregation. Modules that are added after
+     * the aggregation has been completed are ignored.
+     *
+     * @param additionalResult
+     *            the result of the additional module
+     */
+    public synchronized void add(final DryResult additionalResult) {
+        if (aggregation != null) {
+            aggregation.addAnnotations(additionalResult.getAnnotations());
+            for (MavenModule module : additionalResult.getContainer().getModules()) {
+                aggregation.addModule(module.getName());
+            }
+        }
+    }
+
+    /**
+     * Completes the aggregation.
+     *
+     * @return the annotations and modules of all modules, or {@code null} if the aggregation has been completed
+     *         already
+     */
+    @CheckForNull
+    public synchronized ParserResult complete() {
+        ParserResult result = aggregation;
+        aggregation = null;
+        return result;
+    }
+}
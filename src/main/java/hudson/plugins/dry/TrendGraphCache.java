@@ -0,0 +1,194 @@
+package hudson.plugins.dry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.jfree.chart.ChartUtilities;
+import org.jfree.chart.JFreeChart;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.plugins.analysis.graph.GraphConfiguration;
+import hudson.util.Graph;
+
+/**
+ * Caches the rendered PNG images of the trend graphs. An image is identified by the job, the ID of the graph, the
+ * number of the latest build, the graph configuration of the user (number of builds and days, domain, and build
+ * parameter), and the size of the image. All images of a job are removed as soon as a new build of
+ * the job has been completed or a build has been deleted. The cache is limited in size, the least recently used
+ * images are evicted first. The size can be changed with the system property
+ * {@code hudson.plugins.dry.TrendGraphCache.cacheSize}.
+ * <p>
+ * The duplicated lines, priority, and new versus fixed graphs of the project action use this cache. The health and
+ * difference graphs of analysis-core and the graphs of the dashboard portlets, which aggregate several jobs, are
+ * still rendered on every request.
+ * </p>
+ *
+ * @author Ulli Hafner
+ */
+public final class TrendGraphCache {
+    /** Maximum number of cached images. */
+    static final int CACHE_SIZE = Integer.getInteger(TrendGraphCache.class.getName() + ".cacheSize", 500);
+    private static final int MAXIMUM_SIZE = 2000;
+    private static final String SEPARATOR = "\n";
+
+    private static final Map<String, byte[]> CACHE = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 6271940651294389812L;
+
+        @Override
+        protected boolean removeEldestEntry(final Entry<String, byte[]> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Returns a graph that renders the specified chart only if there is no cached image of the same size for the
+     * latest build of the job and the same graph configuration.
+     *
+     * @param timestamp
+     *            timestamp of the latest build, used to answer conditional requests
+     * @param configuration
+     *            the graph configuration of the user, provides the default size of the image
+     * @param graphId
+     *            the ID of the graph
+     * @param lastBuild
+     *            the latest build that is shown in the graph
+     * @param chart
+     *            creates the chart if there is no cached image
+     * @return the graph
+     */
+    public static Graph createGraph(final long timestamp, final GraphConfiguration configuration,
+            final String graphId, final Run<?, ?> lastBuild, final ChartFactory chart) {
+        final int defaultWidth = configuration.getWidth();
+        final int defaultHeight = configuration.getHeight();
+        return new Graph(timestamp, defaultWidth, defaultHeight) {
+            @Override
+            protected JFreeChart createGraph() {
+                return chart.create();
+            }
+
+            @Override
+            public void doPng(final StaplerRequest request, final StaplerResponse response) throws IOException {
+                if (timestamp != -1 && request.checkIfModified(timestamp, response)) {
+                    return;
+                }
+                int width = getSize(request.getParameter("width"), defaultWidth);
+                int height = getSize(request.getParameter("height"), defaultHeight);
+
+                String key = createKey(lastBuild.getParent(), graphId, lastBuild.getNumber(), configuration, width,
+                        height);
+                byte[] image = get(key);
+                if (image == null) {
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    ChartUtilities.writeChartAsPNG(output, createGraph(), width, height);
+                    image = output.toByteArray();
+                    put(key, image);
+                }
+                response.setContentType("image/png");
+                response.setContentLength(image.length);
+                response.getOutputStream().write(image);
+            }
+        };
+    }
+
+    private static int getSize(@CheckForNull final String value, final int defaultValue) {
+        int size = NumberUtils.toInt(value, defaultValue);
+        if (size <= 0 || size > MAXIMUM_SIZE) {
+            return defaultValue;
+        }
+        return size;
+    }
+
+    static String createKey(final Job<?, ?> job, final String graphId, final int build,
+            final GraphConfiguration configuration, final int width, final int height) {
+        return job.getFullName() + SEPARATOR + graphId + SEPARATOR + build + SEPARATOR
+                + configuration.getBuildCount() + SEPARATOR + configuration.getDayCount() + SEPARATOR
+                + configuration.useBuildDateAsDomain() + SEPARATOR + configuration.getParameterName() + "="
+                + configuration.getParameterValue() + SEPARATOR + width + "x" + height;
+    }
+
+    @CheckForNull
+    private static byte[] get(final String key) {
+        synchronized (CACHE) {
+            return CACHE.get(key);
+        }
+    }
+
+    private static void put(final String key, final byte[] image) {
+        synchronized (CACHE) {
+            CACHE.put(key, image);
+        }
+    }
+
+    /**
+     * Removes all cached images of the specified job.
+     *
+     * @param job
+     *            the job to remove the images for
+     */
+    public static void invalidate(final Job<?, ?> job) {
+        String prefix = job.getFullName() + SEPARATOR;
+        synchronized (CACHE) {
+            for (Iterator<String> keys = CACHE.keySet().iterator(); keys.hasNext();) {
+                if (keys.next().startsWith(prefix)) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached images.
+     *
+     * @return the number of cached images
+     */
+    static int size() {
+        synchronized (CACHE) {
+            return CACHE.size();
+        }
+    }
+
+    /**
+     * Creates the chart of a graph.
+     */
+    public interface ChartFactory {
+        /**
+         * Creates the chart.
+         *
+         * @return the chart
+         */
+        JFreeChart create();
+    }
+
+    /**
+     * Removes the cached images of a job if a build of the job has been completed or deleted.
+     */
+    @Extension
+    public static class BuildListener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onCompleted(final Run<?, ?> build, final TaskListener listener) {
+            invalidate(build.getParent());
+        }
+
+        @Override
+        public void onDeleted(final Run<?, ?> build) {
+            invalidate(build.getParent());
+        }
+    }
+
+    private TrendGraphCache() {
+        // prevents instantiation
+    }
+}
@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import org.apache.commons.lang.StringUtils;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
@@ -49,6 +50,11 @@ public abstract class AbstractDigesterParser<T> extends AbstractDryParser {
 
     }
 
+    @Override
+    protected boolean acceptsRootElement(final String rootElement) {
+        return StringUtils.substringAfterLast(getMatchingPattern(), "/").equals(rootElement);
+    }
+
     /**
      * Creates the input source that is used by the SAX parser. Default encoding is set to UTF8.
      *
@@ -1,5 +1,6 @@
 package hudson.plugins.dry.parser;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -27,10 +28,8 @@ public abstract class AbstractDryParser implements AnnotationParser {
     /** Unique ID of this class. */
     private static final long serialVersionUID = 6328121785037117886L;
 
-    /** Minimum number of duplicate lines for high priority warnings. @since 2.5 */
-    private final int highThreshold;
-    /** Minimum number of duplicate lines for normal priority warnings. @since 2.5 */
-    private final int normalThreshold;
+    /** Minimum number of duplicate lines for the priorities of the warnings. @since 3.0.1 */
+    private final PriorityThresholds thresholds;
 
     /**
      * Creates a new instance of {@link AbstractDryParser}.
@@ -39,26 +38,26 @@ public abstract class AbstractDryParser implements AnnotationParser {
      * @param normalThreshold minimum number of duplicate lines for normal priority warnings
      */
     public AbstractDryParser(final int highThreshold, final int normalThreshold) {
-        this.highThreshold = highThreshold;
-        this.normalThreshold = normalThreshold;
+        thresholds = new PriorityThresholds(highThreshold, normalThreshold);
     }
 
     @Override
     public Collection<FileAnnotation> parse(final File file, final String moduleName) throws InvocationTargetException {
-        FileInputStream inputStream = null;
+        InputStream inputStream = null;
         try {
-            inputStream = new FileInputStream(file);
-            if (accepts(inputStream)) {
-                IOUtils.closeQuietly(inputStream);
-                inputStream = new FileInputStream(file);
-
-                Set<FileAnnotation> warnings = Sets.newHashSet();
-                warnings.addAll(parse(inputStream, moduleName));
-                return warnings;
-            }
-            else {
-                throw new IOException("Can't parse CPD file " + file.getAbsolutePath());
+            inputStream = openReport(file);
+            if (!acceptsRootElement(ReportFormatSniffer.sniffRootElement(inputStream))) {
+                if (accepts(inputStream)) {
+                    IOUtils.closeQuietly(inputStream);
+                    inputStream = openReport(file);
+                }
+                else {
+                    throw new IOException("Can't parse CPD file " + file.getAbsolutePath());
+                }
             }
+            Set<FileAnnotation> warnings = Sets.newHashSet();
+            warnings.addAll(parse(inputStream, moduleName));
+            return warnings;
         }
         catch (IOException exception) {
             throw new InvocationTargetException(exception);
@@ -68,6 +67,20 @@ public abstract class AbstractDryParser implements AnnotationParser {
         }
     }
 
+    /**
+     * Opens the specified report. The returned stream is buffered and supports mark and reset so that the
+     * format of the report can be detected using the {@link ReportFormatSniffer}.
+     *
+     * @param file
+     *            the report to open
+     * @return the opened report
+     * @throws IOException
+     *             if the file could not be opened
+     */
+    static InputStream openReport(final File file) throws IOException {
+        return new BufferedInputStream(new FileInputStream(file), ReportFormatSniffer.PROLOG_SIZE);
+    }
+
     /**
      * Returns the duplication annotations found in the specified file.
      *
@@ -92,6 +105,21 @@ public abstract class AbstractDryParser implements AnnotationParser {
      */
     protected abstract boolean accepts(InputStream inputStream);
 
+    /**
+     * Returns whether this parser accepts reports with the specified root element. This method is used to select
+     * a parser without reading the whole report. Parsers that can't decide on the root element alone should
+     * return <code>false</code>, then {@link #accepts(InputStream)} is used to check the report.
+     *
+     * @param rootElement
+     *            the name of the root element of the report, might be <code>null</code> if the report has no
+     *            well-formed root element
+     * @return <code>true</code> if this parser accepts reports with the specified root element,
+     *         <code>false</code> otherwise
+     */
+    protected boolean acceptsRootElement(final String rootElement) {
+        return false;
+    }
+
     /**
      * Returns the priority of the warning.
      *
@@ -100,15 +128,7 @@ public abstract class AbstractDryParser implements AnnotationParser {
      * @return the priority of the warning
      */
     protected Priority getPriority(final int lines) {
-        if (lines >= highThreshold) {
-            return Priority.HIGH;
-        }
-        else if (lines >= normalThreshold) {
-            return Priority.NORMAL;
-        }
-        else {
-            return Priority.LOW;
-        }
+        return thresholds.getPriority(lines);
     }
 }
 
@@ -0,0 +1,231 @@
+package hudson.plugins.dry.parser;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang.StringUtils;
+
+import hudson.plugins.analysis.util.PackageDetectors;
+
+/**
+ * A duplication parser template for StAX based parsers. The report is read as a stream: each duplication is
+ * converted as soon as its element has been read completely. So only a single duplication of the report is
+ * kept in memory at a time.
+ *
+ * @author Ulli Hafner
+ */
+public abstract class AbstractStaxParser extends AbstractDryParser {
+    /** Unique ID of this class. */
+    private static final long serialVersionUID = -2458815946270436543L;
+
+    /**
+     * Creates a new instance of {@link AbstractStaxParser}.
+     *
+     * @param highThreshold   minimum number of duplicate lines for high priority warnings
+     * @param normalThreshold minimum number of duplicate lines for normal priority warnings
+     */
+    protected AbstractStaxParser(final int highThreshold, final int normalThreshold) {
+        super(highThreshold, normalThreshold);
+    }
+
+    @Override
+    public final boolean accepts(final InputStream file) {
+        if (file == null) {
+            return false;
+        }
+        try {
+            InputStream stream = file;
+            if (!stream.markSupported()) {
+                stream = new BufferedInputStream(file);
+            }
+            return acceptsRootElement(ReportFormatSniffer.sniffRootElement(stream));
+        }
+        catch (IOException exception) {
+            return false;
+        }
+    }
+
+    @Override
+    protected boolean acceptsRootElement(final String rootElement) {
+        return getRootElement().equals(rootElement);
+    }
+
+    /**
+     * Returns the name of the root element of the reports of this parser.
+     *
+     * @return the name of the root element
+     */
+    protected abstract String getRootElement();
+
+    /**
+     * Returns the name of the element that contains a single duplication.
+     *
+     * @return the name of the duplication element
+     */
+    protected abstract String getDuplicationElement();
+
+    @Override
+    public final Collection<DuplicateCode> parse(final InputStream file, final String moduleName)
+            throws InvocationTargetException {
+        final List<DuplicateCode> annotations = new ArrayList<DuplicateCode>();
+        parse(file, moduleName, new DuplicationHandler() {
+            @Override
+            public void handle(final List<DuplicateCode> codeBlocks) {
+                annotations.addAll(codeBlocks);
+            }
+        });
+        return annotations;
+    }
+
+    /**
+     * Reads the duplications of the specified report. Each duplication is passed to the specified handler as soon
+     * as the duplication has been read completely.
+     *
+     * @param file
+     *            the report to read
+     * @param moduleName
+     *            the module these warnings belong to
+     * @param handler
+     *            the handler that receives the duplications
+     * @throws InvocationTargetException
+     *             if the file could not be parsed (wraps the actual exception)
+     */
+    public void parse(final InputStream file, final String moduleName, final DuplicationHandler handler)
+            throws InvocationTargetException {
+        XMLStreamReader reader = null;
+        try {
+            reader = createReader(ReportFormatSniffer.createInputFactory(), file);
+            if (!nextChildElement(reader) || !getRootElement().equals(reader.getLocalName())) {
+                throw new XMLStreamException("Input stream is not a valid duplications file.");
+            }
+
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT
+                        && getDuplicationElement().equals(reader.getLocalName())) {
+                    List<DuplicateCode> codeBlocks = readDuplication(reader, moduleName);
+                    DuplicationGroup.link(codeBlocks);
+                    DuplicationNumbering.assign(codeBlocks);
+                    for (DuplicateCode block : codeBlocks) {
+                        block.setPackageName(PackageDetectors.detectPackageName(block.getFileName()));
+                    }
+                    handler.handle(codeBlocks);
+                }
+            }
+        }
+        catch (XMLStreamException exception) {
+            throw new InvocationTargetException(exception);
+        }
+        finally {
+            ReportFormatSniffer.close(reader);
+        }
+    }
+
+    /**
+     * Creates the StAX reader for the specified report. Default encoding is set to UTF8.
+     *
+     * @param factory
+     *            the factory to create the reader with
+     * @param file
+     *            the report to read
+     * @return the reader
+     * @throws XMLStreamException
+     *             if the reader could not be created
+     */
+    protected XMLStreamReader createReader(final XMLInputFactory factory, final InputStream file)
+            throws XMLStreamException {
+        return factory.createXMLStreamReader(file, "UTF-8");
+    }
+
+    /**
+     * Reads the duplication element the specified reader is positioned at. When this method returns, the reader
+     * must be positioned at the end of the duplication element.
+     *
+     * @param reader
+     *            the reader, positioned at the start of a duplication element
+     * @param moduleName
+     *            the module these warnings belong to
+     * @return the code blocks of the duplication, the blocks will be linked by the caller
+     * @throws XMLStreamException
+     *             if the duplication could not be read
+     */
+    protected abstract List<DuplicateCode> readDuplication(XMLStreamReader reader, String moduleName)
+            throws XMLStreamException;
+
+    /**
+     * Moves the reader to the start of the next child element of the current element.
+     *
+     * @param reader
+     *            the reader
+     * @return <code>true</code> if the reader is positioned at the start of the next child element,
+     *         <code>false</code> if the reader is positioned at the end of the current element
+     * @throws XMLStreamException
+     *             if the report could not be read
+     */
+    protected static boolean nextChildElement(final XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skips the current element including all of its children.
+     *
+     * @param reader
+     *            the reader, positioned at the start of the element to skip
+     * @throws XMLStreamException
+     *             if the report could not be read
+     */
+    protected static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the specified integer attribute of the current element.
+     *
+     * @param reader
+     *            the reader, positioned at the start of an element
+     * @param name
+     *            the name of the attribute
+     * @return the value of the attribute or 0 if the element has no such attribute
+     * @throws XMLStreamException
+     *             if the value of the attribute is not an integer
+     */
+    protected static int getIntAttribute(final XMLStreamReader reader, final String name) throws XMLStreamException {
+        String value = reader.getAttributeValue(null, name);
+        if (StringUtils.isBlank(value)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException exception) {
+            throw new XMLStreamException("Attribute " + name + " is not a number: " + value, reader.getLocation());
+        }
+    }
+}
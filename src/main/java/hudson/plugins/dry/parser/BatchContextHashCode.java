@@ -0,0 +1,143 @@
+package hudson.plugins.dry.parser;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+import hudson.plugins.analysis.util.ContextHashCode;
+
+/**
+ * Computes the context hash codes of several warnings in the same file. The file is read only once, up to the last
+ * line that is part of a context. The hash codes are the same as the ones computed by {@link ContextHashCode}: the
+ * context of a warning consists of the lines that surround the line of the warning.
+ *
+ * @author Ulli Hafner
+ */
+public class BatchContextHashCode {
+    /** Number of lines before and after the current line that are part of the context. */
+    private static final int LINES_LOOK_AHEAD = 3;
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Computes the context hash codes for the specified lines of a file.
+     *
+     * @param fileName
+     *            the absolute name of the file
+     * @param lines
+     *            the lines of the warnings in this file
+     * @param encoding
+     *            the encoding of the file, the default encoding of the platform is used if the encoding is not
+     *            valid
+     * @return the hash codes, one for each line in the same order as the specified lines
+     * @throws IOException
+     *             if the file could not be read
+     */
+    public long[] compute(final String fileName, final int[] lines, final String encoding) throws IOException {
+        return compute(fileName, lines, encoding, null);
+    }
+
+    /**
+     * Computes the context hash codes for the specified lines of a file. If a digest is given, then the whole file is
+     * read and its content is added to the digest, so the digest of the file is computed in the same pass.
+     *
+     * @param fileName
+     *            the absolute name of the file
+     * @param lines
+     *            the lines of the warnings in this file
+     * @param encoding
+     *            the encoding of the file, the default encoding of the platform is used if the encoding is not
+     *            valid
+     * @param digest
+     *            the digest that should be updated with the content of the file, may be {@code null}
+     * @return the hash codes, one for each line in the same order as the specified lines
+     * @throws IOException
+     *             if the file could not be read
+     */
+    public long[] compute(final String fileName, final int[] lines, final String encoding,
+            @CheckForNull final MessageDigest digest) throws IOException {
+        return compute(readLines(fileName, getLastContextLine(lines), encoding, digest), lines);
+    }
+
+    /**
+     * Computes the context hash codes for the specified lines of a file whose content has been read already.
+     *
+     * @param content
+     *            the lines of the file, at least up to the last line of the contexts
+     * @param lines
+     *            the lines of the warnings in this file
+     * @return the hash codes, one for each line in the same order as the specified lines
+     */
+    public long[] compute(final List<String> content, final int[] lines) {
+        long[] hashCodes = new long[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            hashCodes[i] = createContext(content, lines[i]).hashCode();
+        }
+        return hashCodes;
+    }
+
+    private int getLastContextLine(final int[] lines) {
+        int last = 0;
+        for (int line : lines) {
+            last = Math.max(last, line + LINES_LOOK_AHEAD + 1);
+        }
+        return last;
+    }
+
+    private String createContext(final List<String> content, final int line) {
+        StringBuilder context = new StringBuilder();
+        int end = Math.min(content.size() - 1, line + LINES_LOOK_AHEAD + 1);
+        for (int i = Math.max(0, line - LINES_LOOK_AHEAD); i <= end; i++) {
+            context.append(content.get(i));
+        }
+        return context.toString();
+    }
+
+    private List<String> readLines(final String fileName, final int lastLine, final String encoding,
+            @CheckForNull final MessageDigest digest) throws IOException {
+        InputStream input = new FileInputStream(fileName);
+        if (digest != null) {
+            input = new DigestInputStream(input, digest);
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, getCharset(encoding)));
+        try {
+            List<String> content = new ArrayList<String>();
+            for (String line = reader.readLine(); line != null && content.size() <= lastLine; line = reader.readLine()) {
+                content.add(line);
+            }
+            if (digest != null) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (input.read(buffer) >= 0) {
+                    // read the remaining content for the digest
+                }
+            }
+            return content;
+        }
+        finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    private Charset getCharset(final String encoding) {
+        try {
+            if (StringUtils.isNotBlank(encoding) && Charset.isSupported(encoding)) {
+                return Charset.forName(encoding);
+            }
+        }
+        catch (IllegalArgumentException exception) {
+            // ignore and return the default
+        }
+        return Charset.defaultCharset();
+    }
+}
@@ -0,0 +1,324 @@
+package hudson.plugins.dry.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.io.IOUtils;
+
+import hudson.Util;
+
+/**
+ * Remembers the context hash codes of previous builds. The hash codes are stored by the digest of the file content,
+ * the line, and the encoding. So the hash codes of a file only need to be computed again if the content of the file
+ * changes. In order to skip the computation of the digest for unchanged files, the digest is stored by file name,
+ * size, and modification time as well. Both maps are limited in size, the least recently used entries are evicted
+ * first. The cache is used by several report workers concurrently: the lock of the cache only guards the maps,
+ * files are read and digests are computed without holding it.
+ *
+ * @author Ulli Hafner
+ */
+public class ContextHashCodeCache {
+    /** File name of the cache, relative to the temporary directory of the workspace. */
+    static final String FILE_NAME = "dry-context-hash-codes.bin";
+    private static final int VERSION = 1;
+    /** Maximum number of cached hash codes. */
+    static final int MAX_HASH_CODES = 200000;
+    /** Maximum number of cached file digests. */
+    static final int MAX_FILES = 20000;
+
+    private final File storage;
+    private final Map<String, FileState> files = new LruMap<String, FileState>(MAX_FILES);
+    private final Map<String, Long> hashCodes = new LruMap<String, Long>(MAX_HASH_CODES);
+    private boolean isModified;
+
+    /**
+     * Returns the cache file for the specified workspace. The file is stored in the temporary folder of the
+     * workspace.
+     *
+     * @param workspacePath
+     *            path to the workspace
+     * @return the cache file
+     */
+    public static File getStorage(final String workspacePath) {
+        return new File(workspacePath + "@tmp", FILE_NAME);
+    }
+
+    /**
+     * Creates a new instance of {@link ContextHashCodeCache}.
+     *
+     * @param storage
+     *            the file that stores the cache
+     */
+    public ContextHashCodeCache(final File storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Returns the cached context hash codes for the specified lines of a file. The digest of the file is computed
+     * without holding the lock of the cache, so concurrent calls for other files are not blocked.
+     *
+     * @param fileName
+     *            the absolute name of the file
+     * @param lines
+     *            the lines of the warnings in this file
+     * @param encoding
+     *            the encoding of the file
+     * @return the hash codes, or {@code null} if the hash code of at least one line is not cached
+     * @throws IOException
+     *             if the digest of the file could not be computed
+     */
+    @CheckForNull
+    long[] get(final String fileName, final int[] lines, final String encoding) throws IOException {
+        return getHashCodes(getDigest(fileName), lines, encoding);
+    }
+
+    @CheckForNull
+    private synchronized long[] getHashCodes(final String digest, final int[] lines, final String encoding) {
+        long[] values = new long[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            Long value = hashCodes.get(createKey(digest, lines[i], encoding));
+            if (value == null) {
+                return null;
+            }
+            values[i] = value;
+        }
+        return values;
+    }
+
+    /**
+     * Returns the context hash codes for the specified lines of a file. If the file has not been changed since its
+     * digest has been stored, then the cached hash codes are used. Otherwise the file is read once to compute both
+     * its digest and the hash codes, which are stored in the cache afterwards.
+     *
+     * @param batch
+     *            the hash code calculator
+     * @param fileName
+     *            the absolute name of the file
+     * @param lines
+     *            the lines of the warnings in this file
+     * @param encoding
+     *            the encoding of the file
+     * @return the hash codes, one for each line
+     * @throws IOException
+     *             if the file could not be read
+     */
+    public long[] compute(final BatchContextHashCode batch, final String fileName, final int[] lines,
+            final String encoding) throws IOException {
+        File file = new File(fileName);
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        String digest = getStoredDigest(fileName, size, lastModified);
+        if (digest != null) {
+            long[] values = getHashCodes(digest, lines, encoding);
+            if (values != null) {
+                return values;
+            }
+        }
+
+        MessageDigest md5 = createDigest();
+        long[] values = batch.compute(fileName, lines, encoding, md5);
+        digest = Util.toHexString(md5.digest());
+        synchronized (this) {
+            files.put(fileName, new FileState(size, lastModified, digest));
+            putHashCodes(digest, lines, encoding, values);
+        }
+        return values;
+    }
+
+    private MessageDigest createDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException exception) {
+            throw new IOException(exception);
+        }
+    }
+
+    /**
+     * Stores the context hash codes for the specified lines of a file.
+     *
+     * @param fileName
+     *            the absolute name of the file
+     * @param lines
+     *            the lines of the warnings in this file
+     * @param encoding
+     *            the encoding of the file
+     * @param values
+     *            the hash codes, one for each line
+     * @throws IOException
+     *             if the digest of the file could not be computed
+     */
+    void put(final String fileName, final int[] lines, final String encoding, final long[] values)
+            throws IOException {
+        putHashCodes(getDigest(fileName), lines, encoding, values);
+    }
+
+    private synchronized void putHashCodes(final String digest, final int[] lines, final String encoding,
+            final long[] values) {
+        for (int i = 0; i < lines.length; i++) {
+            hashCodes.put(createKey(digest, lines[i], encoding), values[i]);
+        }
+        isModified = true;
+    }
+
+    private String createKey(final String digest, final int line, final String encoding) {
+        return digest + ':' + line + ':' + encoding;
+    }
+
+    /**
+     * Returns the digest of the specified file. The digest is computed outside of the lock of the cache if the size
+     * or the modification time of the file have been changed.
+     */
+    private String getDigest(final String fileName) throws IOException {
+        File file = new File(fileName);
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        String digest = getStoredDigest(fileName, size, lastModified);
+        if (digest == null) {
+            digest = Util.getDigestOf(file);
+            synchronized (this) {
+                files.put(fileName, new FileState(size, lastModified, digest));
+                isModified = true;
+            }
+        }
+        return digest;
+    }
+
+    @CheckForNull
+    private synchronized String getStoredDigest(final String fileName, final long size, final long lastModified) {
+        FileState state = files.get(fileName);
+        if (state == null || state.size != size || state.lastModified != lastModified) {
+            return null;
+        }
+        return state.digest;
+    }
+
+    /**
+     * Loads the cache from its storage. If the storage does not exist or can't be read, then the cache remains
+     * empty.
+     */
+    public synchronized void load() {
+        files.clear();
+        hashCodes.clear();
+        isModified = false;
+        if (!storage.isFile()) {
+            return;
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(storage)));
+            if (input.readInt() != VERSION) {
+                return;
+            }
+            int numberOfFiles = input.readInt();
+            for (int i = 0; i < numberOfFiles; i++) {
+                files.put(input.readUTF(), new FileState(input.readLong(), input.readLong(), input.readUTF()));
+            }
+            int numberOfHashCodes = input.readInt();
+            for (int i = 0; i < numberOfHashCodes; i++) {
+                hashCodes.put(input.readUTF(), input.readLong());
+            }
+        }
+        catch (IOException exception) {
+            files.clear();
+            hashCodes.clear();
+        }
+        finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Saves the cache to its storage if it has been modified since it has been loaded.
+     *
+     * @throws IOException
+     *             if the cache could not be saved
+     */
+    public synchronized void save() throws IOException {
+        if (!isModified) {
+            return;
+        }
+
+        File parent = storage.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can't create directory " + parent);
+        }
+        File temporary = new File(storage.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            output.writeInt(VERSION);
+            output.writeInt(files.size());
+            for (Entry<String, FileState> entry : files.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeLong(entry.getValue().size);
+                output.writeLong(entry.getValue().lastModified);
+                output.writeUTF(entry.getValue().digest);
+            }
+            output.writeInt(hashCodes.size());
+            for (Entry<String, Long> entry : hashCodes.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeLong(entry.getValue());
+            }
+        }
+        finally {
+            IOUtils.closeQuietly(output);
+        }
+        if (storage.exists() && !storage.delete() || !temporary.renameTo(storage)) {
+            throw new IOException("Can't replace " + storage);
+        }
+        isModified = false;
+    }
+
+    /**
+     * Size, modification time, and digest of a file.
+     */
+    private static class FileState {
+        private final long size;
+        private final long lastModified;
+        private final String digest;
+
+        FileState(final long size, final long lastModified, final String digest) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * A map that evicts the least recently used entry if the maximum number of entries is exceeded.
+     *
+     * @param <K> type of the keys
+     * @param <V> type of the values
+     */
+    private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 7349876125046546318L;
+        private final int maximumSize;
+
+        LruMap(final int maximumSize) {
+            super(16, 0.75f, true);
+
+            this.maximumSize = maximumSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Entry<K, V> eldest) {
+            return size() > maximumSize;
+        }
+    }
+}
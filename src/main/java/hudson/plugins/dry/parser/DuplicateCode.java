@@ -1,27 +1,20 @@
 package hudson.plugins.dry.parser;
 
-import java.io.IOException;
-import java.io.StringReader;
-import java.io.StringWriter;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedSet;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.commons.lang.StringUtils;
 
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
-import de.java2html.converter.JavaSource2HTMLConverter;
-import de.java2html.javasource.JavaSource;
-import de.java2html.javasource.JavaSourceParser;
-import de.java2html.options.JavaSourceConversionOptions;
-import de.java2html.util.IllegalConfigurationException;
-
 import hudson.plugins.analysis.util.model.AbstractAnnotation;
 import hudson.plugins.analysis.util.model.FileAnnotation;
 import hudson.plugins.analysis.util.model.Priority;
@@ -43,30 +36,30 @@ public class DuplicateCode extends AbstractAnnotation {
 
     /**
      * Removes duplicates from the specified set of duplicate code warnings. All warnings that belong to the same
-     * duplication are duplicate.
+     * duplication are duplicate. Warnings that are linked to a {@link DuplicationGroup} are identified by their group,
+     * so different duplications with the same number are kept. All other warnings are identified by their number.
      *
      * @param allAnnotations the annotations to filter
      * @return only one warning per duplication
      */
     public static SortedSet<FileAnnotation> filter(final Set<FileAnnotation> allAnnotations) {
         Set<Integer> numbers = Sets.newHashSet();
+        Set<DuplicationGroup> groups = Sets.newIdentityHashSet();
         Set<FileAnnotation> filtered = Sets.newHashSet();
 
         for (FileAnnotation fileAnnotation : allAnnotations) {
             DuplicateCode duplication = (DuplicateCode)fileAnnotation;
-            int id = duplication.getNumber();
-            if (!numbers.contains(id)) {
+            DuplicationGroup group = duplication.getGroup();
+            if (group == null ? numbers.add(duplication.getNumber()) : groups.add(group)) {
                 filtered.add(fileAnnotation);
-                numbers.add(id);
             }
         }
         return ImmutableSortedSet.copyOf(filtered);
     }
 
-    /** The links to the other code duplications. */
-    @SuppressWarnings("Se")
-    private final Set<DuplicateCode> links = new HashSet<DuplicateCode>();
-    /** The duplicate source code fragment. */
+    /** The duplication this code block belongs to. */
+    private DuplicationGroup group;
+    /** The duplicate source code fragment, if different from the fragment of the group. */
     private String sourceCode;
     private int number;
     private static int oldFormat;
@@ -97,6 +90,13 @@ public class DuplicateCode extends AbstractAnnotation {
         if (number == 0) {
             number = oldFormat++;
         }
+        if (group == null && links != null && !links.isEmpty()) {
+            List<DuplicateCode> codeBlocks = Lists.newArrayList();
+            codeBlocks.add(this);
+            codeBlocks.addAll(links);
+            DuplicationGroup.link(codeBlocks);
+        }
+        links = null;
         return this;
     }
 
@@ -107,6 +107,10 @@ public class DuplicateCode extends AbstractAnnotation {
 
     @Override
     public String getMessage() {
+        DuplicationGroup duplication = getGroup();
+        if (duplication != null && duplication.isSimilar()) {
+            return Messages.DRY_Warning_SimilarMessage(size(), Math.round(duplication.getSimilarity() * 100));
+        }
         return Messages.DRY_Warning_Message(size());
     }
 
@@ -143,7 +147,7 @@ public class DuplicateCode extends AbstractAnnotation {
         message.append("<p>");
         message.append(Messages.DRY_Duplications_Header());
         message.append("<ul>");
-        for (DuplicateCode duplication : links) {
+        for (DuplicateCode duplication : getLinks()) {
             message.append("<li>");
             message.append(String.format("<a href=\"link.%s.%s/#%s\">%s (%s)</a>", getKey(), duplication.getKey(),
                     duplication.getPrimaryLineNumber(), duplication.getLinkName(), duplication.getPrimaryLineNumber()));
@@ -155,14 +159,38 @@ public class DuplicateCode extends AbstractAnnotation {
     }
 
     /**
-     * Creates links to the specified collection of other code blocks.
+     * Creates links to the specified collection of other code blocks. The collection must contain this block.
      *
      * @param codeBlocks
      *            the code blocks to links to
+     * @deprecated use {@link DuplicationGroup#link(List)} to link all blocks of a duplication at once
      */
+    @Deprecated
     public void linkTo(final List<DuplicateCode> codeBlocks) {
-        links.addAll(codeBlocks);
-        links.remove(this);
+        DuplicationGroup.link(codeBlocks);
+    }
+
+    /**
+     * Sets the duplication this code block belongs to.
+     *
+     * @param group
+     *            the duplication
+     */
+    void setGroup(final DuplicationGroup group) {
+        this.group = group;
+        if (sourceCode != null && sourceCode.equals(group.getSourceCode())) {
+            sourceCode = null;
+        }
+    }
+
+    /**
+     * Returns the duplication this code block belongs to.
+     *
+     * @return the duplication, or {@code null} if this code block is not linked to other blocks
+     */
+    @CheckForNull
+    public DuplicationGroup getGroup() {
+        return group;
     }
 
     /**
@@ -171,7 +199,10 @@ public class DuplicateCode extends AbstractAnnotation {
      * @return the links
      */
     public Collection<DuplicateCode> getLinks() {
-        return Collections.unmodifiableCollection(links);
+        if (group == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(group.getOthers(this));
     }
 
     /**
@@ -180,32 +211,25 @@ public class DuplicateCode extends AbstractAnnotation {
      * @return the duplicate source code fragment
      */
     public String getSourceCode() {
+        if (sourceCode == null && group != null) {
+            return group.getSourceCode();
+        }
         return sourceCode;
     }
 
     /**
-     * Returns the duplicate source code fragment as formatted HTML string.
+     * Returns the duplicate source code fragment as formatted HTML string. The formatted fragment is cached and
+     * shared by all blocks of the duplication.
      *
      * @return the duplicate source code fragment
+     * @see FragmentFormatter
      */
     public String getFormattedSourceCode() {
-        try {
-            JavaSource source = new JavaSourceParser().parse(new StringReader(sourceCode));
-            JavaSource2HTMLConverter converter = new JavaSource2HTMLConverter();
-            StringWriter writer = new StringWriter();
-            JavaSourceConversionOptions options = JavaSourceConversionOptions.getDefault();
-            options.setShowLineNumbers(false);
-            options.setAddLineAnchors(false);
-            converter.convert(source, options, writer);
-
-            return writer.toString();
-        }
-        catch (IllegalConfigurationException exception) {
-            return sourceCode;
-        }
-        catch (IOException exception) {
-            return sourceCode;
+        String fragment = getSourceCode();
+        if (fragment == null) {
+            return StringUtils.EMPTY;
         }
+        return FragmentFormatter.format(fragment);
     }
 
     /**
@@ -222,7 +246,8 @@ public class DuplicateCode extends AbstractAnnotation {
     public int hashCode() {
         int prime = 31; // NOCHECKSTYLE
         int result = super.hashCode();
-        result = prime * result + ((sourceCode == null) ? 0 : sourceCode.hashCode());
+        String fragment = getSourceCode();
+        result = prime * result + ((fragment == null) ? 0 : fragment.hashCode());
         return result;
     }
 
@@ -238,12 +263,13 @@ public class DuplicateCode extends AbstractAnnotation {
             return false;
         }
         DuplicateCode other = (DuplicateCode)obj;
-        if (sourceCode == null) {
-            if (other.sourceCode != null) {
+        String fragment = getSourceCode();
+        if (fragment == null) {
+            if (other.getSourceCode() != null) {
                 return false;
             }
         }
-        else if (!sourceCode.equals(other.sourceCode)) {
+        else if (!fragment.equals(other.getSourceCode())) {
             return false;
         }
         return true;
@@ -257,8 +283,9 @@ public class DuplicateCode extends AbstractAnnotation {
      * @return the link with the specified hash code
      */
     public FileAnnotation getLink(final long linkHashCode) {
-        for (FileAnnotation link : links) {
-            if (link.getKey() == linkHashCode) {
+        if (group != null) {
+            DuplicateCode link = group.getMember(linkHashCode);
+            if (link != null && link != this) {
                 return link;
             }
         }
@@ -288,4 +315,8 @@ public class DuplicateCode extends AbstractAnnotation {
     @SuppressWarnings({"unused", "PMD.UnusedPrivateField"})
     @Deprecated
     private boolean isDerived;
+    /** Backward compatibility: links of release 2.x, replaced by {@link #group}. @deprecated do not remove */
+    @SuppressWarnings("Se")
+    @Deprecated
+    private Set<DuplicateCode> links;
 }
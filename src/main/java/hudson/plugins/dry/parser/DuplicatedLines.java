@@ -0,0 +1,142 @@
+package hudson.plugins.dry.parser;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang.StringUtils;
+
+import hudson.plugins.analysis.util.model.FileAnnotation;
+
+/**
+ * Computes the number of duplicated lines of a set of duplications. Duplications that overlap in the same file
+ * count each line only once: the duplicated lines of a file are the union of the line ranges of all duplications in
+ * this file. The line ranges of a file are stored in a primitive array, each range packed into a single long value,
+ * so sorting and merging the ranges requires no additional objects.
+ *
+ * @author Ulli Hafner
+ */
+public class DuplicatedLines {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final long LOWER_BITS = 0xFFFFFFFFL;
+
+    private final Map<String, Integer> files = new HashMap<String, Integer>();
+    private final Map<String, Integer> modules = new HashMap<String, Integer>();
+    private int total;
+
+    /**
+     * Computes the duplicated lines of the specified annotations. Annotations that are not duplications are
+     * skipped.
+     *
+     * @param annotations
+     *            the annotations
+     */
+    public DuplicatedLines(final Collection<? extends FileAnnotation> annotations) {
+        Map<String, Ranges> rangesPerFile = new HashMap<String, Ranges>();
+        for (FileAnnotation annotation : annotations) {
+            if (annotation instanceof DuplicateCode) {
+                DuplicateCode duplication = (DuplicateCode)annotation;
+                Ranges ranges = rangesPerFile.get(duplication.getFileName());
+                if (ranges == null) {
+                    ranges = new Ranges(StringUtils.defaultString(duplication.getModuleName()));
+                    rangesPerFile.put(duplication.getFileName(), ranges);
+                }
+                int start = duplication.getPrimaryLineNumber();
+                ranges.add(start, start + duplication.getNumberOfLines() - 1);
+            }
+        }
+
+        for (Entry<String, Ranges> entry : rangesPerFile.entrySet()) {
+            Ranges ranges = entry.getValue();
+            int lines = ranges.countLines();
+            files.put(entry.getKey(), lines);
+            Integer moduleLines = modules.get(ranges.moduleName);
+            modules.put(ranges.moduleName, moduleLines == null ? lines : moduleLines + lines);
+            total += lines;
+        }
+    }
+
+    /**
+     * Returns the total number of duplicated lines.
+     *
+     * @return the total number of duplicated lines
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the number of duplicated lines of each file.
+     *
+     * @return the number of duplicated lines, mapped by file name
+     */
+    public Map<String, Integer> getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the number of duplicated lines of each module.
+     *
+     * @return the number of duplicated lines, mapped by module name
+     */
+    public Map<String, Integer> getModules() {
+        return modules;
+    }
+
+    /**
+     * The line ranges of the duplications in one file.
+     */
+    private static class Ranges {
+        private final String moduleName;
+        private long[] ranges = new long[INITIAL_CAPACITY];
+        private int size;
+
+        Ranges(final String moduleName) {
+            this.moduleName = moduleName;
+        }
+
+        void add(final int start, final int end) {
+            if (end < start) {
+                return;
+            }
+            if (size == ranges.length) {
+                ranges = Arrays.copyOf(ranges, size * 2);
+            }
+            ranges[size++] = (long)start << 32 | end & LOWER_BITS;
+        }
+
+        /**
+         * Returns the number of lines that are covered by the union of all ranges. Since the start line is stored in
+         * the upper bits, sorting the packed values sorts the ranges by their start line.
+         *
+         * @return the number of covered lines
+         */
+        int countLines() {
+            Arrays.sort(ranges, 0, size);
+
+            int lines = 0;
+            long currentStart = Long.MIN_VALUE;
+            long currentEnd = Long.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                long start = ranges[i] >> 32;
+                long end = (int)ranges[i];
+                if (start > currentEnd + 1) {
+                    if (currentEnd != Long.MIN_VALUE) {
+                        lines += currentEnd - currentStart + 1;
+                    }
+                    currentStart = start;
+                    currentEnd = end;
+                }
+                else if (end > currentEnd) {
+                    currentEnd = end;
+                }
+            }
+            if (currentEnd != Long.MIN_VALUE) {
+                lines += currentEnd - currentStart + 1;
+            }
+            return lines;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package hudson.plugins.dry.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import jenkins.MasterToSlaveFileCallable;
+
+import hudson.FilePath;
+import hudson.plugins.analysis.core.ParserResult;
+import hudson.plugins.analysis.util.FileFinder;
+import hudson.plugins.analysis.util.ModuleDetector;
+import hudson.plugins.analysis.util.NullModuleDetector;
+import hudson.plugins.analysis.util.model.FileAnnotation;
+import hudson.plugins.dry.Messages;
+import hudson.remoting.VirtualChannel;
+
+/**
+ * Parses all duplication files that match a given Ant file-set pattern in the workspace. In contrast to
+ * {@link hudson.plugins.analysis.core.FilesParser} the files are parsed concurrently by a bounded pool of worker
+ * threads. The results of the individual files are merged in the order of the file names, so the result does not
+ * depend on the order the workers complete.
+ *
+ * @author Ulli Hafner
+ */
+public class DuplicationFilesParser extends MasterToSlaveFileCallable<ParserResult> {
+    private static final long serialVersionUID = -3154839366587476127L;
+
+    private final String filePattern;
+    private final DuplicationParserRegistry parser;
+    private final boolean shouldDetectModules;
+    private final boolean isMavenBuild;
+    private final int numberOfThreads;
+
+    /** Log messages of the parsing, sent back to the master with the result. */
+    private transient StringBuilder log;
+
+    /**
+     * Creates a new instance of {@link DuplicationFilesParser}.
+     *
+     * @param filePattern
+     *            ant file-set pattern to scan for files to parse
+     * @param parser
+     *            the parser to apply on the found files, must be thread safe
+     * @param shouldDetectModules
+     *            determines whether modules should be detected from pom.xml or build.xml files
+     * @param isMavenBuild
+     *            determines whether this is a maven build
+     * @param numberOfThreads
+     *            the maximum number of files that are parsed concurrently, 0 uses one thread per available
+     *            processor
+     */
+    public DuplicationFilesParser(final String filePattern, final DuplicationParserRegistry parser,
+            final boolean shouldDetectModules, final boolean isMavenBuild, final int numberOfThreads) {
+        this.filePattern = filePattern;
+        this.parser = parser;
+        this.shouldDetectModules = shouldDetectModules;
+        this.isMavenBuild = isMavenBuild;
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    @Override
+    public ParserResult invoke(final File workspace, final VirtualChannel channel) throws IOException,
+            InterruptedException {
+        log = new StringBuilder();
+        ParserResult result = new ParserResult(new FilePath(workspace));
+
+        log("Finding all files that match the pattern " + filePattern);
+        String[] fileNames = new FileFinder(filePattern).find(workspace);
+        if (fileNames.length == 0) {
+            if (!isMavenBuild) {
+                result.addErrorMessage(Messages.DRY_FilesParser_Error_NoFiles(filePattern));
+            }
+        }
+        else {
+            parseFiles(workspace, fileNames, result);
+        }
+
+        result.setLog(log.toString());
+        return result;
+    }
+
+    private void parseFiles(final File workspace, final String[] fileNames, final ParserResult result)
+            throws InterruptedException {
+        int threads = getNumberOfThreads(fileNames.length);
+        log("Parsing " + fileNames.length + " files in " + workspace.getAbsolutePath() + " using " + threads
+                + " threads");
+
+        ModuleDetector detector = createModuleDetector(workspace);
+        parser.loadCache();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ParserThreadFactory());
+        try {
+            List<Future<FileResult>> results = new ArrayList<Future<FileResult>>();
+            for (String fileName : fileNames) {
+                File file = new File(fileName);
+                if (!file.isAbsolute()) {
+                    file = new File(workspace, fileName);
+                }
+                String module = detector.guessModuleName(file.getAbsolutePath());
+                results.add(executor.submit(new FileParser(file, module)));
+            }
+            for (Future<FileResult> fileResult : results) {
+                merge(getResult(fileResult), result);
+            }
+        }
+        catch (InterruptedException exception) {
+            log("Parsing has been canceled.");
+
+            throw exception;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        try {
+            parser.saveCache();
+        }
+        catch (IOException exception) {
+            log("Can't save the cache of context hash codes: " + exception.getMessage());
+        }
+    }
+
+    private FileResult getResult(final Future<FileResult> fileResult) throws InterruptedException {
+        try {
+            return fileResult.get();
+        }
+        catch (ExecutionException exception) {
+            throw new IllegalStateException("Unexpected exception while parsing a file", exception.getCause());
+        }
+    }
+
+    private void merge(final FileResult fileResult, final ParserResult result) {
+        log(fileResult.message);
+        if (fileResult.annotations == null) {
+            result.addErrorMessage(fileResult.module, fileResult.message);
+        }
+        else {
+            result.addAnnotations(fileResult.annotations);
+        }
+        if (fileResult.isParsed) {
+            result.addModule(fileResult.module);
+        }
+    }
+
+    private int getNumberOfThreads(final int numberOfFiles) {
+        int threads = numberOfThreads;
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, Math.min(threads, numberOfFiles));
+    }
+
+    private ModuleDetector createModuleDetector(final File workspace) {
+        if (shouldDetectModules) {
+            return new ModuleDetector(workspace);
+        }
+        else {
+            return new NullModuleDetector();
+        }
+    }
+
+    private void log(final String message) {
+        log.append(message).append('\n');
+    }
+
+    /**
+     * Parses a single file. Errors are not thrown but reported in the returned result.
+     */
+    private class FileParser implements Callable<FileResult> {
+        private final File file;
+        private final String module;
+
+        FileParser(final File file, final String module) {
+            this.file = file;
+            this.module = module;
+        }
+
+        @Override
+        public FileResult call() {
+            if (!file.canRead()) {
+                return FileResult.error(module, Messages.DRY_FilesParser_Error_NoPermission(module, file), false);
+            }
+            if (file.length() <= 0) {
+                return FileResult.error(module, Messages.DRY_FilesParser_Error_EmptyFile(module, file), false);
+            }
+            try {
+                Collection<FileAnnotation> annotations = parser.parse(file, module);
+
+                return new FileResult(module, annotations, "Successfully parsed file " + file + " of module "
+                        + module + " with " + annotations.size() + " warnings.");
+            }
+            catch (InvocationTargetException exception) {
+                Throwable cause = exception.getCause() == null ? exception : exception.getCause();
+
+                return FileResult.error(module, Messages.DRY_FilesParser_Error_Exception(file) + "\n\n"
+                        + ExceptionUtils.getStackTrace(cause), true);
+            }
+        }
+    }
+
+    /**
+     * The outcome of parsing a single file.
+     */
+    private static class FileResult {
+        private final String module;
+        private final Collection<FileAnnotation> annotations;
+        private final String message;
+        private final boolean isParsed;
+
+        static FileResult error(final String module, final String message, final boolean isParsed) {
+            return new FileResult(module, null, message, isParsed);
+        }
+
+        FileResult(final String module, final Collection<FileAnnotation> annotations, final String message) {
+            this(module, annotations, message, true);
+        }
+
+        private FileResult(final String module, final Collection<FileAnnotation> annotations,
+                final String message, final boolean isParsed) {
+            this.module = module;
+            this.annotations = annotations;
+            this.message = message;
+            this.isParsed = isParsed;
+        }
+    }
+
+    /**
+     * Creates daemon threads for the parser workers.
+     */
+    private static class ParserThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable, "DRY parser " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package hudson.plugins.dry.parser;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * A group of code blocks that are duplicates of each other. All blocks of a duplication reference the same group
+ * instance, so the links between the blocks need only one reference per block. The source code fragment is stored
+ * only once for the whole group as well.
+ *
+ * @author Ulli Hafner
+ */
+public final class DuplicationGroup implements Serializable {
+    private static final long serialVersionUID = 2374987123493281923L;
+
+    /** Similarity of the blocks of an exact duplication. */
+    public static final double EXACT = 1.0;
+
+    /** The code blocks of this duplication. */
+    private final DuplicateCode[] members;
+    /** The duplicate source code fragment. */
+    @CheckForNull
+    private final String sourceCode;
+    /** Similarity of the blocks, 0 for exact duplications of older releases. @since 3.0.1 */
+    private final double similarity;
+    /** The code blocks of this duplication by key, created on demand since the keys are not persisted. */
+    private transient volatile Map<Long, DuplicateCode> membersByKey;
+
+    /**
+     * Creates a new group of the specified code blocks and links each block to this group. If all blocks have the
+     * same source code fragment, then the fragment is stored only once in the group.
+     *
+     * @param codeBlocks
+     *            the code blocks of the duplication
+     * @return the group
+     */
+    public static DuplicationGroup link(final List<DuplicateCode> codeBlocks) {
+        return link(codeBlocks, EXACT);
+    }
+
+    /**
+     * Creates a new group of the specified similar code blocks and links each block to this group.
+     *
+     * @param codeBlocks
+     *            the code blocks of the duplication
+     * @param similarity
+     *            the similarity of the code blocks, a value between 0 (exclusive) and {@link #EXACT}
+     * @return the group
+     * @see #link(List)
+     */
+    public static DuplicationGroup link(final List<DuplicateCode> codeBlocks, final double similarity) {
+        DuplicationGroup group = new DuplicationGroup(codeBlocks.toArray(new DuplicateCode[codeBlocks.size()]),
+                findSourceCode(codeBlocks), similarity);
+        for (DuplicateCode block : codeBlocks) {
+            block.setGroup(group);
+        }
+        return group;
+    }
+
+    @CheckForNull
+    private static String findSourceCode(final List<DuplicateCode> codeBlocks) {
+        String fragment = null;
+        for (DuplicateCode block : codeBlocks) {
+            String blockFragment = block.getSourceCode();
+            if (blockFragment == null || fragment != null && !fragment.equals(blockFragment)) {
+                return null;
+            }
+            fragment = blockFragment;
+        }
+        return fragment;
+    }
+
+    private DuplicationGroup(final DuplicateCode[] members, @CheckForNull final String sourceCode,
+            final double similarity) {
+        this.members = members;
+        this.sourceCode = sourceCode;
+        this.similarity = similarity;
+    }
+
+    /**
+     * Returns the code blocks of this duplication.
+     *
+     * @return the code blocks
+     */
+    public List<DuplicateCode> getMembers() {
+        return Collections.unmodifiableList(Arrays.asList(members));
+    }
+
+    /**
+     * Returns the number of code blocks of this duplication.
+     *
+     * @return the number of code blocks
+     */
+    public int size() {
+        return members.length;
+    }
+
+    /**
+     * Returns the duplicate source code fragment of this group.
+     *
+     * @return the duplicate source code fragment, might be {@code null}
+     */
+    @CheckForNull
+    public String getSourceCode() {
+        return sourceCode;
+    }
+
+    /**
+     * Returns the similarity of the code blocks of this duplication.
+     *
+     * @return the similarity, {@link #EXACT} for exact duplications
+     */
+    public double getSimilarity() {
+        return similarity > 0 ? similarity : EXACT;
+    }
+
+    /**
+     * Returns whether the code blocks of this duplication are similar rather than exact copies.
+     *
+     * @return {@code true} if the code blocks are similar, {@code false} if the code blocks are exact copies
+     */
+    public boolean isSimilar() {
+        return getSimilarity() < EXACT;
+    }
+
+    /**
+     * Returns the code block of this duplication with the specified key.
+     *
+     * @param key
+     *            the key of the code block
+     * @return the code block, or {@code null} if this duplication has no block with the specified key
+     */
+    @CheckForNull
+    public DuplicateCode getMember(final long key) {
+        Map<Long, DuplicateCode> index = membersByKey;
+        if (index == null) {
+            index = new HashMap<Long, DuplicateCode>(members.length * 2);
+            for (DuplicateCode member : members) {
+                index.put(member.getKey(), member);
+            }
+            membersByKey = index;
+        }
+        return index.get(key);
+    }
+
+    /**
+     * Returns all code blocks of this duplication except the specified one.
+     *
+     * @param block
+     *            the block to skip
+     * @return the other code blocks
+     */
+    List<DuplicateCode> getOthers(final DuplicateCode block) {
+        List<DuplicateCode> others = new ArrayList<DuplicateCode>(members.length);
+        for (DuplicateCode member : members) {
+            if (member != block) {
+                others.add(member);
+            }
+        }
+        return others;
+    }
+}
@@ -0,0 +1,207 @@
+package hudson.plugins.dry.parser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+
+import hudson.plugins.analysis.util.model.FileAnnotation;
+
+/**
+ * Computes the difference between the duplications of two builds on the level of duplications rather than on the
+ * level of individual code blocks. The duplications of the reference build are indexed by the signatures of their
+ * code blocks, so each duplication of the current build is matched in time proportional to the number of its code
+ * blocks. The signature of a code block consists of its context hash code and its number of lines. If the context
+ * hash code of a block is not available, then the file name and line number are used instead.
+ * <p>
+ * A duplication of the current build that shares a code block with a duplication of the reference build is treated as
+ * the same duplication. If it has more code blocks than the reference duplication it is reported as grown, if it has
+ * fewer code blocks it is reported as shrunk. Duplications without match are new, reference duplications without
+ * match are fixed.
+ * </p>
+ *
+ * @author Ulli Hafner
+ */
+public class DuplicationGroupDifferencer {
+    private final Map<BlockSignature, DuplicationGroup> referenceBlocks;
+    private final Collection<DuplicationGroup> referenceGroups;
+
+    /**
+     * Creates a new instance of {@link DuplicationGroupDifferencer}.
+     *
+     * @param reference
+     *            the duplications of the reference build
+     */
+    public DuplicationGroupDifferencer(final Collection<? extends FileAnnotation> reference) {
+        referenceGroups = getGroups(reference);
+        referenceBlocks = new HashMap<BlockSignature, DuplicationGroup>();
+        for (DuplicationGroup group : referenceGroups) {
+            for (DuplicateCode block : group.getMembers()) {
+                BlockSignature signature = new BlockSignature(block);
+                if (!referenceBlocks.containsKey(signature)) {
+                    referenceBlocks.put(signature, group);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the duplications of the current build with the duplications of the reference build.
+     *
+     * @param current
+     *            the duplications of the current build
+     * @return the difference
+     */
+    public Difference compare(final Collection<? extends FileAnnotation> current) {
+        Difference difference = new Difference();
+        Set<DuplicationGroup> matched = createIdentitySet();
+        for (DuplicationGroup group : getGroups(current)) {
+            DuplicationGroup reference = findReference(group, matched);
+            if (reference == null) {
+                difference.newGroups.add(group);
+            }
+            else {
+                matched.add(reference);
+                if (group.size() > reference.size()) {
+                    difference.grownGroups.add(group);
+                }
+                else if (group.size() < reference.size()) {
+                    difference.shrunkGroups.add(group);
+                }
+            }
+        }
+        for (DuplicationGroup group : referenceGroups) {
+            if (!matched.contains(group)) {
+                difference.fixedGroups.add(group);
+            }
+        }
+        return difference;
+    }
+
+    @CheckForNull
+    private DuplicationGroup findReference(final DuplicationGroup group, final Set<DuplicationGroup> matched) {
+        for (DuplicateCode block : group.getMembers()) {
+            DuplicationGroup reference = referenceBlocks.get(new BlockSignature(block));
+            if (reference != null && !matched.contains(reference)) {
+                return reference;
+            }
+        }
+        return null;
+    }
+
+    private static Collection<DuplicationGroup> getGroups(final Collection<? extends FileAnnotation> annotations) {
+        Set<DuplicationGroup> visited = createIdentitySet();
+        List<DuplicationGroup> groups = new ArrayList<DuplicationGroup>();
+        for (FileAnnotation annotation : annotations) {
+            if (annotation instanceof DuplicateCode) {
+                DuplicationGroup group = ((DuplicateCode)annotation).getGroup();
+                if (group != null && visited.add(group)) {
+                    groups.add(group);
+                }
+            }
+        }
+        return groups;
+    }
+
+    private static Set<DuplicationGroup> createIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<DuplicationGroup, Boolean>());
+    }
+
+    /**
+     * The difference between the duplications of two builds.
+     */
+    public static class Difference {
+        private final List<DuplicationGroup> newGroups = new ArrayList<DuplicationGroup>();
+        private final List<DuplicationGroup> fixedGroups = new ArrayList<DuplicationGroup>();
+        private final List<DuplicationGroup> grownGroups = new ArrayList<DuplicationGroup>();
+        private final List<DuplicationGroup> shrunkGroups = new ArrayList<DuplicationGroup>();
+
+        /**
+         * Returns the duplications of the current build that have no counterpart in the reference build.
+         *
+         * @return the new duplications
+         */
+        public List<DuplicationGroup> getNewGroups() {
+            return Collections.unmodifiableList(newGroups);
+        }
+
+        /**
+         * Returns the duplications of the reference build that have no counterpart in the current build.
+         *
+         * @return the fixed duplications
+         */
+        public List<DuplicationGroup> getFixedGroups() {
+            return Collections.unmodifiableList(fixedGroups);
+        }
+
+        /**
+         * Returns the duplications of the current build that have more code blocks than in the reference build.
+         *
+         * @return the grown duplications
+         */
+        public List<DuplicationGroup> getGrownGroups() {
+            return Collections.unmodifiableList(grownGroups);
+        }
+
+        /**
+         * Returns the duplications of the current build that have fewer code blocks than in the reference build.
+         *
+         * @return the shrunk duplications
+         */
+        public List<DuplicationGroup> getShrunkGroups() {
+            return Collections.unmodifiableList(shrunkGroups);
+        }
+    }
+
+    /**
+     * Identifies a code block independently of the build.
+     */
+    private static final class BlockSignature {
+        private final long contextHashCode;
+        private final int numberOfLines;
+        @CheckForNull
+        private final String fileName;
+        private final int line;
+
+        BlockSignature(final DuplicateCode block) {
+            contextHashCode = block.getContextHashCode();
+            numberOfLines = block.getNumberOfLines();
+            if (contextHashCode == 0) {
+                fileName = block.getFileName();
+                line = block.getPrimaryLineNumber();
+            }
+            else {
+                fileName = null;
+                line = 0;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int)(contextHashCode ^ contextHashCode >>> 32);
+            result = 31 * result + numberOfLines;
+            result = 31 * result + (fileName == null ? 0 : fileName.hashCode());
+            return 31 * result + line;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof BlockSignature)) {
+                return false;
+            }
+            BlockSignature other = (BlockSignature)obj;
+            return contextHashCode == other.contextHashCode && numberOfLines == other.numberOfLines
+                    && line == other.line
+                    && (fileName == null ? other.fileName == null : fileName.equals(other.fileName));
+        }
+    }
+}
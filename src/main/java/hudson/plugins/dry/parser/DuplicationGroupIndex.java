@@ -0,0 +1,139 @@
+package hudson.plugins.dry.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedSet;
+
+import hudson.plugins.analysis.util.model.FileAnnotation;
+
+/**
+ * Sorted index of the duplications of a set of annotations: for each duplication only one representative warning
+ * is stored. The index is computed once and then used for all views that show all annotations of a build. The
+ * representatives can be read page by page in several sort orders, the sort order of each column is computed only
+ * once.
+ *
+ * @author Ulli Hafner
+ */
+public class DuplicationGroupIndex {
+    /** Sorts the duplications by file name and line. */
+    public static final String SORT_BY_FILE = "file";
+    /** Sorts the duplications by the number of duplicated lines. */
+    public static final String SORT_BY_LINES = "lines";
+    /** Sorts the duplications by the number of linked code blocks. */
+    public static final String SORT_BY_LINKS = "links";
+
+    private final SortedSet<FileAnnotation> representatives;
+    private final FileAnnotation[] byFile;
+    private FileAnnotation[] byLines;
+    private FileAnnotation[] byLinks;
+
+    /**
+     * Creates a new index of the specified annotations.
+     *
+     * @param annotations
+     *            the annotations to index, sorted by their natural order: the first warning of each duplication
+     *            becomes the representative of the duplication
+     */
+    public DuplicationGroupIndex(final SortedSet<FileAnnotation> annotations) {
+        representatives = DuplicateCode.filter(annotations);
+        byFile = representatives.toArray(new FileAnnotation[representatives.size()]);
+    }
+
+    /**
+     * Returns one warning for each duplication, sorted by the natural order of the warnings.
+     *
+     * @return the representatives of the duplications
+     */
+    public SortedSet<FileAnnotation> getRepresentatives() {
+        return representatives;
+    }
+
+    /**
+     * Returns the number of duplications.
+     *
+     * @return the number of duplications
+     */
+    public int size() {
+        return representatives.size();
+    }
+
+    /**
+     * Returns a page of the representatives of the duplications.
+     *
+     * @param start
+     *            the index of the first duplication of the page
+     * @param length
+     *            the maximum number of duplications of the page
+     * @param sortKey
+     *            the sort order, one of {@link #SORT_BY_FILE}, {@link #SORT_BY_LINES}, or {@link #SORT_BY_LINKS}.
+     *            Unknown values sort by file.
+     * @param ascending
+     *            determines whether to sort in ascending or descending order
+     * @return the representatives of the duplications of the page, might be empty
+     */
+    public List<FileAnnotation> getPage(final int start, final int length, final String sortKey,
+            final boolean ascending) {
+        FileAnnotation[] sorted = getSorted(sortKey);
+        int from = Math.max(0, Math.min(start, sorted.length));
+        int to = Math.min(sorted.length, from + Math.max(0, length));
+        if (ascending) {
+            return Collections.unmodifiableList(Arrays.asList(sorted).subList(from, to));
+        }
+        List<FileAnnotation> page = new ArrayList<FileAnnotation>(to - from);
+        for (int i = from; i < to; i++) {
+            page.add(sorted[sorted.length - 1 - i]);
+        }
+        return page;
+    }
+
+    private synchronized FileAnnotation[] getSorted(final String sortKey) {
+        if (SORT_BY_LINES.equals(sortKey)) {
+            if (byLines == null) {
+                byLines = sort(new Comparator<DuplicateCode>() {
+                    @Override
+                    public int compare(final DuplicateCode first, final DuplicateCode second) {
+                        return compareNumbers(first.size(), second.size());
+                    }
+                });
+            }
+            return byLines;
+        }
+        if (SORT_BY_LINKS.equals(sortKey)) {
+            if (byLinks == null) {
+                byLinks = sort(new Comparator<DuplicateCode>() {
+                    @Override
+                    public int compare(final DuplicateCode first, final DuplicateCode second) {
+                        return compareNumbers(first.getLinks().size(), second.getLinks().size());
+                    }
+                });
+            }
+            return byLinks;
+        }
+        return byFile;
+    }
+
+    private FileAnnotation[] sort(final Comparator<DuplicateCode> comparator) {
+        FileAnnotation[] sorted = byFile.clone();
+        Arrays.sort(sorted, new Comparator<FileAnnotation>() {
+            @Override
+            public int compare(final FileAnnotation first, final FileAnnotation second) {
+                int result = comparator.compare((DuplicateCode)first, (DuplicateCode)second);
+                if (result == 0) {
+                    return first.compareTo(second);
+                }
+                return result;
+            }
+        });
+        return sorted;
+    }
+
+    private static int compareNumbers(final int first, final int second) {
+        if (first < second) {
+            return -1;
+        }
+        return first == second ? 0 : 1;
+    }
+}
@@ -0,0 +1,18 @@
+package hudson.plugins.dry.parser;
+
+import java.util.List;
+
+/**
+ * Receives the duplications of a report while the report is read by an {@link AbstractStaxParser}.
+ *
+ * @author Ulli Hafner
+ */
+public interface DuplicationHandler {
+    /**
+     * Called for each duplication of the report as soon as the duplication has been read completely.
+     *
+     * @param codeBlocks
+     *            the linked code blocks of the duplication
+     */
+    void handle(List<DuplicateCode> codeBlocks);
+}
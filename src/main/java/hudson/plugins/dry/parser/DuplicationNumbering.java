@@ -0,0 +1,155 @@
+package hudson.plugins.dry.parser;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Assigns the numbers of the duplications of a report. The number of a duplication is derived from a hash of the
+ * locations of its code blocks and of its source code fragment, so the same duplication gets the same number in
+ * every build and on every agent. The locations are relative to the workspace of the code blocks (see
+ * {@link DuplicateCode#getPathName()}), so the numbers need to be assigned again with {@link #reassign(Collection)}
+ * once the workspace is known. No state is kept per report: two different duplications get the same number only if
+ * their hash values collide, these duplications are still told apart by their {@link DuplicationGroup}, see
+ * {@link DuplicateCode#filter(java.util.Set)}.
+ *
+ * @author Ulli Hafner
+ */
+public final class DuplicationNumbering {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /** Number that must not be used, since it is stored as 0 by {@link DuplicateCode#setNumber(int)}. */
+    private static final int RESERVED = -1;
+
+    /**
+     * Assigns the number of the specified duplication to all of its code blocks.
+     *
+     * @param codeBlocks
+     *            the code blocks of the duplication
+     * @return the assigned number
+     */
+    public static int assign(final List<DuplicateCode> codeBlocks) {
+        int number = computeNumber(codeBlocks);
+        if (number == RESERVED) {
+            number = 0;
+        }
+        for (DuplicateCode block : codeBlocks) {
+            block.setNumber(number);
+        }
+        return number;
+    }
+
+    /**
+     * Assigns the numbers of the duplications of the specified code blocks again, e.g., after the workspace of the
+     * code blocks has been set. All code blocks of a duplication get the same number.
+     *
+     * @param codeBlocks
+     *            the code blocks of the duplications
+     */
+    public static void reassign(final Collection<DuplicateCode> codeBlocks) {
+        Set<DuplicationGroup> assigned = Sets.newIdentityHashSet();
+        for (DuplicateCode block : codeBlocks) {
+            DuplicationGroup group = block.getGroup();
+            if (group == null) {
+                assign(Collections.singletonList(block));
+            }
+            else if (assigned.add(group)) {
+                assign(group.getMembers());
+            }
+        }
+    }
+
+    /**
+     * Computes the hash value of the specified duplication. The value depends only on the file names relative to the
+     * workspace, lines and sizes of the code blocks and on the duplicate source code fragment, but not on the order of
+     * the blocks.
+     *
+     * @param codeBlocks
+     *            the code blocks of the duplication
+     * @return the hash value
+     */
+    public static int computeNumber(final List<DuplicateCode> codeBlocks) {
+        String fragment = null;
+        for (DuplicateCode block : codeBlocks) {
+            if (fragment == null) {
+                fragment = block.getSourceCode();
+            }
+        }
+
+        MessageDigest digest = createDigest();
+        for (String location : getLocations(codeBlocks)) {
+            digest.update(location.getBytes(UTF_8));
+            digest.update((byte)'\n');
+        }
+        update(digest, fragment);
+        byte[] hash = digest.digest();
+        return (hash[0] & 0xFF) << 24 | (hash[1] & 0xFF) << 16 | (hash[2] & 0xFF) << 8 | hash[3] & 0xFF;
+    }
+
+    /**
+     * Returns the locations of the specified code blocks, i.e. the file names relative to the workspace, the lines
+     * and the sizes of the blocks. The locations do not depend on the order of the blocks.
+     *
+     * @param codeBlocks
+     *            the code blocks of a duplication
+     * @return the sorted locations
+     */
+    public static List<String> getLocations(final Collection<DuplicateCode> codeBlocks) {
+        List<String> locations = new ArrayList<String>(codeBlocks.size());
+        for (DuplicateCode block : codeBlocks) {
+            locations.add(getRelativeFileName(block) + ':' + block.getPrimaryLineNumber() + ':'
+                    + block.getNumberOfLines());
+        }
+        Collections.sort(locations);
+        return locations;
+    }
+
+    /**
+     * Returns the file name of the specified code block relative to its workspace. If the workspace is not known or
+     * the file is not part of the workspace, then the file name is returned as is.
+     *
+     * @param block
+     *            the code block
+     * @return the relative file name
+     */
+    static String getRelativeFileName(final DuplicateCode block) {
+        String fileName = block.getFileName().replace('\\', '/');
+        String pathName = block.getPathName();
+        if (StringUtils.isNotEmpty(pathName)) {
+            String workspace = StringUtils.removeEnd(pathName.replace('\\', '/'), "/") + '/';
+            if (fileName.startsWith(workspace)) {
+                return fileName.substring(workspace.length());
+            }
+        }
+        return fileName;
+    }
+
+    private static void update(final MessageDigest digest, @CheckForNull final String fragment) {
+        if (fragment != null) {
+            digest.update(fragment.getBytes(UTF_8));
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("MD5 is not supported by this JVM", exception);
+        }
+    }
+
+    private DuplicationNumbering() {
+        // prevents instantiation
+    }
+}
@@ -1,16 +1,20 @@
 package hudson.plugins.dry.parser;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import hudson.FilePath;
@@ -34,6 +38,8 @@ public class DuplicationParserRegistry implements AnnotationParser {
     private final List<AbstractDryParser> parsers = new ArrayList<AbstractDryParser>();
     private String workspacePath;
     private final String defaultEncoding;
+    /** Context hash codes of previous builds, only available while the files of a workspace are parsed. */
+    private transient ContextHashCodeCache cache;
 
    /**
      * Creates a new instance of {@link DuplicationParserRegistry}.
@@ -46,11 +52,29 @@ public class DuplicationParserRegistry implements AnnotationParser {
      *            default encoding of the files
      */
     public DuplicationParserRegistry(final int normalThreshold, final int highThreshold, final String defaultEncoding) {
+        this(normalThreshold, highThreshold, defaultEncoding, DupFinderParser.ALL_TEXT);
+    }
+
+    /**
+     * Creates a new instance of {@link DuplicationParserRegistry}.
+     *
+     * @param highThreshold
+     *            minimum number of duplicate lines for high priority warnings
+     * @param normalThreshold
+     *            minimum number of duplicate lines for normal priority warnings
+     * @param defaultEncoding
+     *            default encoding of the files
+     * @param maximumTextLength
+     *            maximum number of characters of the source code text of DupFinder fragments, see
+     *            {@link DupFinderParser#DupFinderParser(int, int, int)}
+     */
+    public DuplicationParserRegistry(final int normalThreshold, final int highThreshold, final String defaultEncoding,
+            final int maximumTextLength) {
         this.defaultEncoding = defaultEncoding;
         parsers.add(new CpdParser(highThreshold, normalThreshold));
         parsers.add(new CpdParser(highThreshold, normalThreshold, false));
         parsers.add(new SimianParser(highThreshold, normalThreshold));
-        parsers.add(new DupFinderParser(highThreshold, normalThreshold));
+        parsers.add(new DupFinderParser(highThreshold, normalThreshold, maximumTextLength));
     }
 
     /**
@@ -72,31 +96,60 @@ public class DuplicationParserRegistry implements AnnotationParser {
         this.workspacePath = workspacePath;
     }
 
+    /**
+     * Creates a new instance of {@link DuplicationParserRegistry}.
+     *
+     * @param highThreshold
+     *            minimum number of duplicate lines for high priority warnings
+     * @param normalThreshold
+     *            minimum number of duplicate lines for normal priority warnings
+     * @param workspacePath
+     *            path to the workspace files
+     * @param defaultEncoding
+     *            default encoding of the files
+     * @param maximumTextLength
+     *            maximum number of characters of the source code text of DupFinder fragments, see
+     *            {@link DupFinderParser#DupFinderParser(int, int, int)}
+     */
+    public DuplicationParserRegistry(final int normalThreshold, final int highThreshold,
+            final String workspacePath, final String defaultEncoding, final int maximumTextLength) {
+        this(normalThreshold, highThreshold, defaultEncoding, maximumTextLength);
+
+        this.workspacePath = workspacePath;
+    }
+
     @Override
     public Collection<FileAnnotation> parse(final File file, final String moduleName) throws InvocationTargetException {
-        FileInputStream inputStream = null;
+        InputStream inputStream = null;
         try {
-            for (AbstractDryParser parser : parsers) {
-                inputStream = new FileInputStream(file);
-                if (parser.accepts(inputStream)) {
-                    IOUtils.closeQuietly(inputStream);
-                    inputStream = new FileInputStream(file);
-                    Collection<DuplicateCode> result = parser.parse(inputStream, moduleName);
-                    createLinkNames(result);
-                    Set<FileAnnotation> warnings = Sets.newHashSet();
-                    warnings.addAll(result);
-                    ContextHashCode hashCode = new ContextHashCode();
-                    for (FileAnnotation duplication : warnings) {
-                        String fullPath = getFullPath(duplication);
-                        long value = hashCode.compute(fullPath,
-                                duplication.getPrimaryLineNumber(), defaultEncoding);
-                        duplication.setContextHashCode(value * 31 + (((DuplicateCode)duplication).getNumberOfLines()));
-                    }
+            inputStream = AbstractDryParser.openReport(file);
+            List<AbstractDryParser> candidates = findParsers(ReportFormatSniffer.sniffRootElement(inputStream));
+            if (candidates.isEmpty()) {
+                IOUtils.closeQuietly(inputStream);
+                inputStream = null;
+                candidates = findParsers(file);
+            }
+            if (candidates.isEmpty()) {
+                throw new IOException("No parser found for duplicated code results file " + file.getAbsolutePath());
+            }
 
-                    return warnings;
+            InvocationTargetException lastException = null;
+            for (AbstractDryParser parser : candidates) {
+                try {
+                    if (inputStream == null) {
+                        inputStream = AbstractDryParser.openReport(file);
+                    }
+                    return createWarnings(parser.parse(inputStream, moduleName));
+                }
+                catch (InvocationTargetException exception) {
+                    lastException = exception;
+                }
+                finally {
+                    IOUtils.closeQuietly(inputStream);
+                    inputStream = null;
                 }
             }
-            throw new IOException("No parser found for duplicated code results file " + file.getAbsolutePath());
+            throw lastException;
         }
         catch (IOException exception) {
             throw new InvocationTargetException(exception);
@@ -106,6 +159,153 @@ public class DuplicationParserRegistry implements AnnotationParser {
         }
     }
 
+    /**
+     * Returns all parsers that accept reports with the specified root element. Usually only one parser is
+     * returned, the remaining parsers are used if the report can't be read by the first one (e.g., due to an
+     * unexpected encoding).
+     *
+     * @param rootElement
+     *            the root element of the report
+     * @return the parsers that accept the report
+     */
+    private List<AbstractDryParser> findParsers(final String rootElement) {
+        List<AbstractDryParser> candidates = new ArrayList<AbstractDryParser>();
+        for (AbstractDryParser parser : parsers) {
+            if (parser.acceptsRootElement(rootElement)) {
+                candidates.add(parser);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the first parser that accepts the specified report. Each parser reads the report on its own, so
+     * this method is only used if the format could not be detected using the root element.
+     *
+     * @param file
+     *            the report
+     * @return the parser that accepts the report
+     * @throws IOException
+     *             if the report could not be read
+     */
+    private List<AbstractDryParser> findParsers(final File file) throws IOException {
+        for (AbstractDryParser parser : parsers) {
+            InputStream inputStream = AbstractDryParser.openReport(file);
+            try {
+                if (parser.accepts(inputStream)) {
+                    return Collections.singletonList(parser);
+                }
+            }
+            finally {
+                IOUtils.closeQuietly(inputStream);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Creates the warnings for the parsed duplications. Computes the link names and context hash codes.
+     *
+     * @param result
+     *            the duplications
+     * @return the warnings
+     * @throws IOException
+     *             if the context hash code could not be computed
+     */
+    private Set<FileAnnotation> createWarnings(final Collection<DuplicateCode> result) throws IOException {
+        createLinkNames(result);
+        Set<FileAnnotation> warnings = Sets.newHashSet();
+        warnings.addAll(result);
+
+        Map<String, List<DuplicateCode>> duplicationsPerFile = Maps.newHashMap();
+        for (FileAnnotation duplication : warnings) {
+            String fullPath = getFullPath(duplication);
+            List<DuplicateCode> duplications = duplicationsPerFile.get(fullPath);
+            if (duplications == null) {
+                duplications = Lists.newArrayList();
+                duplicationsPerFile.put(fullPath, duplications);
+            }
+            duplications.add((DuplicateCode)duplication);
+        }
+        BatchContextHashCode batch = new BatchContextHashCode();
+        for (Map.Entry<String, List<DuplicateCode>> entry : duplicationsPerFile.entrySet()) {
+            computeContextHashCodes(batch, entry.getKey(), entry.getValue());
+        }
+        return warnings;
+    }
+
+    /**
+     * Computes the context hash codes of the duplications in the specified file. The file is read only once for
+     * all duplications.
+     *
+     * @param batch
+     *            the hash code calculator
+     * @param fullPath
+     *            the absolute path of the file
+     * @param duplications
+     *            the duplications in the file
+     * @throws IOException
+     *             if the context hash code could not be computed
+     */
+    private void computeContextHashCodes(final BatchContextHashCode batch, final String fullPath,
+            final List<DuplicateCode> duplications) throws IOException {
+        int[] lines = new int[duplications.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = duplications.get(i).getPrimaryLineNumber();
+        }
+
+        long[] values;
+        try {
+            if (cache == null) {
+                values = batch.compute(fullPath, lines, defaultEncoding);
+            }
+            else {
+                values = cache.compute(batch, fullPath, lines, defaultEncoding);
+            }
+        }
+        catch (IOException exception) { // let the analysis core decide how to handle unreadable files
+            ContextHashCode hashCode = new ContextHashCode();
+            values = new long[lines.length];
+            for (int i = 0; i < lines.length; i++) {
+                values[i] = hashCode.compute(fullPath, lines[i], defaultEncoding);
+            }
+        }
+        for (int i = 0; i < lines.length; i++) {
+            DuplicateCode duplication = duplications.get(i);
+            duplication.setContextHashCode(values[i] * 31 + duplication.getNumberOfLines());
+        }
+    }
+
+    /**
+     * Loads the context hash codes of previous builds from the temporary folder of the workspace. The cache is used
+     * by all subsequent calls of {@link #parse(File, String)} until {@link #saveCache()} is called. If the workspace
+     * path is not known then no cache is used.
+     */
+    void loadCache() {
+        if (workspacePath != null) {
+            cache = new ContextHashCodeCache(ContextHashCodeCache.getStorage(workspacePath));
+            cache.load();
+        }
+    }
+
+    /**
+     * Saves the context hash codes that have been computed since the cache has been loaded. Afterwards, no cache
+     * is used anymore.
+     *
+     * @throws IOException
+     *             if the cache could not be saved
+     */
+    void saveCache() throws IOException {
+        if (cache != null) {
+            try {
+                cache.save();
+            }
+            finally {
+                cache = null;
+            }
+        }
+    }
+
     /**
      * Gets full file path.
      *
@@ -128,7 +328,8 @@ public class DuplicationParserRegistry implements AnnotationParser {
 
     /**
      * For each duplicate code annotation that does not have a package name
-     * (i.e., for non Java sources), a link name is generated.
+     * (i.e., for non Java sources), a link name is generated. Since the numbers
+     * of the duplications depend on the workspace, they are assigned again.
      *
      * @param result the annotations
      */
@@ -137,6 +338,7 @@ public class DuplicationParserRegistry implements AnnotationParser {
             for (FileAnnotation duplication : result) {
                 duplication.setPathName(workspacePath);
             }
+            DuplicationNumbering.reassign(result);
         }
     }
 }
@@ -0,0 +1,397 @@
+package hudson.plugins.dry.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+
+import hudson.plugins.analysis.util.model.FileAnnotation;
+import hudson.plugins.analysis.util.model.Priority;
+
+/**
+ * Stores duplications in a compact binary file. Each duplication is stored as one record that contains the source
+ * code fragment of the duplication only once. File, module, package, and path names are stored in a string table.
+ * The records are always read one after another, either all at once or by a {@link Visitor}.
+ * <p>
+ * Layout of the file:
+ * </p>
+ * <pre>
+ * header:  magic, version
+ * records: one record for each duplication
+ * strings: the string table
+ * footer:  position of the string table, number of records, magic
+ * </pre>
+ *
+ * @author Ulli Hafner
+ */
+public class DuplicationStorage {
+    /** File name of the storage, relative to the root directory of a build. */
+    public static final String FILE_NAME = "dry-warnings.bin";
+
+    private static final int MAGIC = 0x44525942;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int FOOTER_SIZE = 16;
+    private static final int NO_STRING = -1;
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final File file;
+
+    /**
+     * Creates a new instance of {@link DuplicationStorage}.
+     *
+     * @param file
+     *            the file that stores the duplications
+     */
+    public DuplicationStorage(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns whether the storage file exists.
+     *
+     * @return {@code true} if the storage file exists, {@code false} otherwise
+     */
+    public boolean exists() {
+        return file.isFile();
+    }
+
+    /**
+     * Deletes the storage file.
+     */
+    public void delete() {
+        FileUtils.deleteQuietly(file);
+    }
+
+    /**
+     * Writes the specified duplications to the storage file. All blocks of a duplication are written in the same
+     * record. Blocks that are linked to one of the duplications but are not part of the specified annotations are
+     * written as well, but are not returned as annotations when the file is read.
+     *
+     * @param annotations
+     *            the duplications to write
+     * @throws IOException
+     *             if the file could not be written
+     * @throws IllegalArgumentException
+     *             if one of the annotations is not a {@link DuplicateCode} instance
+     */
+    public void write(final Collection<FileAnnotation> annotations) throws IOException {
+        Map<FileAnnotation, Boolean> isAnnotation = new IdentityHashMap<FileAnnotation, Boolean>();
+        for (FileAnnotation annotation : annotations) {
+            if (!(annotation instanceof DuplicateCode)) {
+                throw new IllegalArgumentException("Not a duplication: " + annotation);
+            }
+            isAnnotation.put(annotation, Boolean.TRUE);
+        }
+
+        StringTable strings = new StringTable();
+        int numberOfRecords = 0;
+        Map<DuplicationGroup, Boolean> written = new IdentityHashMap<DuplicationGroup, Boolean>();
+
+        CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        DataOutputStream output = new DataOutputStream(counter);
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+
+            for (FileAnnotation annotation : annotations) {
+                DuplicateCode duplication = (DuplicateCode)annotation;
+                DuplicationGroup group = duplication.getGroup();
+                if (group == null) {
+                    numberOfRecords++;
+                    writeRecord(output, strings, Collections.singletonList(duplication), false,
+                            duplication.getSourceCode(), DuplicationGroup.EXACT, isAnnotation);
+                }
+                else if (!written.containsKey(group)) {
+                    written.put(group, Boolean.TRUE);
+                    numberOfRecords++;
+                    writeRecord(output, strings, group.getMembers(), true, group.getSourceCode(),
+                            group.getSimilarity(), isAnnotation);
+                }
+            }
+
+            long stringsPosition = counter.getByteCount();
+            strings.write(output);
+
+            output.writeLong(stringsPosition);
+            output.writeInt(numberOfRecords);
+            output.writeInt(MAGIC);
+        }
+        finally {
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+    private void writeRecord(final DataOutputStream output, final StringTable strings,
+            final List<DuplicateCode> members, final boolean isGroup, @CheckForNull final String fragment,
+            final double similarity, final Map<FileAnnotation, Boolean> isAnnotation) throws IOException {
+        output.writeInt(members.size());
+        output.writeBoolean(isGroup);
+        writeText(output, fragment);
+        output.writeDouble(similarity);
+        for (DuplicateCode member : members) {
+            output.writeBoolean(isAnnotation.containsKey(member));
+            output.writeByte(member.getPriority().ordinal());
+            output.writeInt(member.getPrimaryLineNumber());
+            output.writeInt(member.getNumberOfLines());
+            output.writeInt(member.getNumber());
+            output.writeLong(member.getContextHashCode());
+            output.writeInt(member.getBuild());
+            output.writeInt(strings.indexOf(member.getFileName()));
+            output.writeInt(strings.indexOf(member.getModuleName()));
+            output.writeInt(strings.indexOf(member.getPackageName()));
+            output.writeInt(strings.indexOf(member.getPathName()));
+            output.writeInt(strings.indexOf(member.getOrigin()));
+            output.writeInt(strings.indexOf(member.getAuthorName()));
+            output.writeInt(strings.indexOf(member.getAuthorEmail()));
+            output.writeInt(strings.indexOf(member.getCommitId()));
+            writeText(output, fragment == null ? member.getSourceCode() : null);
+        }
+    }
+
+    /**
+     * Reads all duplications of the storage file.
+     *
+     * @return the duplications
+     * @throws IOException
+     *             if the file could not be read
+     */
+    public List<FileAnnotation> read() throws IOException {
+        Footer footer = readFooter();
+        List<String> strings = readStrings(footer);
+
+        List<FileAnnotation> annotations = new ArrayList<FileAnnotation>();
+        DataInputStream input = open(HEADER_SIZE);
+        try {
+            for (int i = 0; i < footer.numberOfRecords; i++) {
+                readRecord(input, strings, annotations);
+            }
+        }
+        finally {
+            IOUtils.closeQuietly(input);
+        }
+        return annotations;
+    }
+
+    /**
+     * Reads the duplications of the storage file one after another and passes the blocks of each duplication to the
+     * specified visitor. The duplications are not retained, so the whole file is never held in memory.
+     *
+     * @param visitor
+     *            the visitor that receives the blocks of each duplication
+     * @throws IOException
+     *             if the file could not be read or the visitor failed
+     */
+    public void accept(final Visitor visitor) throws IOException {
+        Footer footer = readFooter();
+        List<String> strings = readStrings(footer);
+
+        DataInputStream input = open(HEADER_SIZE);
+        try {
+            List<FileAnnotation> annotations = new ArrayList<FileAnnotation>();
+            for (int i = 0; i < footer.numberOfRecords; i++) {
+                visitor.visit(readRecord(input, strings, annotations));
+                annotations.clear();
+            }
+        }
+        finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    private List<DuplicateCode> readRecord(final DataInputStream input, final List<String> strings,
+            final List<FileAnnotation> annotations) throws IOException {
+        int size = input.readInt();
+        boolean isGroup = input.readBoolean();
+        String fragment = readText(input);
+        double similarity = input.readDouble();
+
+        List<DuplicateCode> members = new ArrayList<DuplicateCode>(size);
+        for (int i = 0; i < size; i++) {
+            boolean isAnnotation = input.readBoolean();
+            Priority priority = PRIORITIES[input.readByte()];
+            int firstLine = input.readInt();
+            int numberOfLines = input.readInt();
+            int number = input.readInt();
+            long contextHashCode = input.readLong();
+            int build = input.readInt();
+
+            DuplicateCode member = new DuplicateCode(priority, firstLine, numberOfLines,
+                    getString(strings, input.readInt()));
+            member.setNumber(number - 1);
+            member.setContextHashCode(contextHashCode);
+            member.setBuild(build);
+            member.setModuleName(getString(strings, input.readInt()));
+            member.setPackageName(getString(strings, input.readInt()));
+            member.setPathName(getString(strings, input.readInt()));
+            member.setOrigin(getString(strings, input.readInt()));
+            member.setAuthorName(getString(strings, input.readInt()));
+            member.setAuthorEmail(getString(strings, input.readInt()));
+            member.setCommitId(getString(strings, input.readInt()));
+            String ownFragment = readText(input);
+            member.setSourceCode(ownFragment == null ? fragment : ownFragment);
+
+            members.add(member);
+            if (isAnnotation) {
+                annotations.add(member);
+            }
+        }
+        if (isGroup) {
+            DuplicationGroup.link(members, similarity);
+        }
+        return members;
+    }
+
+    @CheckForNull
+    private String getString(final List<String> strings, final int index) {
+        if (index == NO_STRING) {
+            return null;
+        }
+        return strings.get(index);
+    }
+
+    private Footer readFooter() throws IOException {
+        RandomAccessFile random = new RandomAccessFile(file, "r");
+        try {
+            if (random.length() < HEADER_SIZE + FOOTER_SIZE || random.readInt() != MAGIC) {
+                throw new IOException("Not a valid DRY storage file: " + file);
+            }
+            int version = random.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of DRY storage file: " + file);
+            }
+            random.seek(random.length() - FOOTER_SIZE);
+            Footer footer = new Footer(random.readLong(), random.readInt());
+            if (random.readInt() != MAGIC) {
+                throw new IOException("Incomplete DRY storage file: " + file);
+            }
+            return footer;
+        }
+        finally {
+            IOUtils.closeQuietly(random);
+        }
+    }
+
+    private List<String> readStrings(final Footer footer) throws IOException {
+        DataInputStream input = open(footer.stringsPosition);
+        try {
+            int size = input.readInt();
+            List<String> strings = new ArrayList<String>(size);
+            for (int i = 0; i < size; i++) {
+                strings.add(input.readUTF());
+            }
+            return strings;
+        }
+        finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    private DataInputStream open(final long position) throws IOException {
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            stream.getChannel().position(position);
+        }
+        catch (IOException exception) {
+            IOUtils.closeQuietly(stream);
+            throw exception;
+        }
+        return new DataInputStream(new BufferedInputStream(stream));
+    }
+
+    private void writeText(final DataOutputStream output, @CheckForNull final String text) throws IOException {
+        if (text == null) {
+            output.writeInt(NO_STRING);
+        }
+        else {
+            byte[] bytes = text.getBytes("UTF-8");
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    @CheckForNull
+    private String readText(final DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length == NO_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Receives the duplications of a storage file.
+     */
+    public interface Visitor {
+        /**
+         * Called for each duplication of the storage file.
+         *
+         * @param blocks
+         *            the code blocks of the duplication
+         * @throws IOException
+         *             if the duplication could not be processed
+         */
+        void visit(List<DuplicateCode> blocks) throws IOException;
+    }
+
+    /**
+     * Position of the string table and the number of records.
+     */
+    private static class Footer {
+        private final long stringsPosition;
+        private final int numberOfRecords;
+
+        Footer(final long stringsPosition, final int numberOfRecords) {
+            this.stringsPosition = stringsPosition;
+            this.numberOfRecords = numberOfRecords;
+        }
+    }
+
+    /**
+     * Maps each distinct string to its index in the string table.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> indices = new HashMap<String, Integer>();
+        private final List<String> strings = new ArrayList<String>();
+
+        int indexOf(@CheckForNull final String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            Integer index = indices.get(value);
+            if (index == null) {
+                index = strings.size();
+                indices.put(value, index);
+                strings.add(value);
+            }
+            return index;
+        }
+
+        void write(final DataOutputStream output) throws IOException {
+            output.writeInt(strings.size());
+            for (String value : strings) {
+                output.writeUTF(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package hudson.plugins.dry.parser;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+
+import de.java2html.converter.JavaSource2HTMLConverter;
+import de.java2html.javasource.JavaSource;
+import de.java2html.javasource.JavaSourceParser;
+import de.java2html.options.JavaSourceConversionOptions;
+import de.java2html.util.IllegalConfigurationException;
+
+import hudson.Util;
+import hudson.plugins.analysis.util.model.FileAnnotation;
+
+/**
+ * Formats duplicate source code fragments as syntax highlighted HTML. The formatted fragments are cached on the
+ * controller by the digest of the fragment, so all blocks of a duplication (and all builds that report the same
+ * duplication) share the same HTML, and the cache does not keep the fragments themselves. The cache is limited by
+ * the total number of characters of the cached HTML, the least recently used fragments are evicted first. The limit
+ * can be changed with the system property {@code hudson.plugins.dry.parser.FragmentFormatter.cacheCharacters}.
+ *
+ * @author Ulli Hafner
+ */
+public final class FragmentFormatter {
+    /** Fragments with more lines are not shown as tooltip and therefore not formatted in advance. */
+    public static final int MAXIMUM_TOOLTIP_LINES = 40;
+    /** Maximum number of characters of all cached fragments. */
+    static final int CACHE_CHARACTERS = Integer.getInteger(FragmentFormatter.class.getName() + ".cacheCharacters",
+            4000000);
+
+    private static final HtmlCache CACHE = new HtmlCache(CACHE_CHARACTERS);
+
+    /**
+     * Returns the specified source code fragment as formatted HTML string.
+     *
+     * @param fragment
+     *            the source code fragment
+     * @return the formatted fragment, or the fragment itself if it could not be formatted
+     */
+    public static String format(final String fragment) {
+        String key = Util.getDigestOf(fragment);
+        String html = CACHE.get(key);
+        if (html == null) {
+            html = convert(fragment);
+            CACHE.put(key, html);
+        }
+        return html;
+    }
+
+    /**
+     * Formats the source code fragments of the specified duplications in advance, so that the first rendering of
+     * the warnings does not need to format them. Each duplication is formatted only once. Duplications that are too
+     * large to be shown as tooltip are skipped.
+     *
+     * @param annotations
+     *            the duplications to format
+     */
+    public static void preload(final Collection<? extends FileAnnotation> annotations) {
+        for (FileAnnotation annotation : annotations) {
+            if (annotation instanceof DuplicateCode) {
+                DuplicateCode duplication = (DuplicateCode)annotation;
+                String fragment = duplication.getSourceCode();
+                if (fragment != null && duplication.size() < MAXIMUM_TOOLTIP_LINES) {
+                    format(fragment);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all formatted fragments from the cache.
+     */
+    static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * Returns the number of cached fragments.
+     *
+     * @return the number of cached fragments
+     */
+    static int size() {
+        return CACHE.size();
+    }
+
+    private static String convert(final String fragment) {
+        try {
+            JavaSource source = new JavaSourceParser().parse(new StringReader(fragment));
+            JavaSource2HTMLConverter converter = new JavaSource2HTMLConverter();
+            StringWriter writer = new StringWriter();
+            JavaSourceConversionOptions options = JavaSourceConversionOptions.getDefault();
+            options.setShowLineNumbers(false);
+            options.setAddLineAnchors(false);
+            converter.convert(source, options, writer);
+
+            return writer.toString();
+        }
+        catch (IllegalConfigurationException exception) {
+            return fragment;
+        }
+        catch (IOException exception) {
+            return fragment;
+        }
+    }
+
+    private FragmentFormatter() {
+        // prevents instantiation
+    }
+
+    /**
+     * Caches formatted fragments by their digest. The cache is limited by the total number of characters of the
+     * cached fragments, the least recently used fragments are evicted first. Fragments that exceed the limit on
+     * their own are not cached at all.
+     */
+    static class HtmlCache {
+        private final Map<String, String> fragments = new LinkedHashMap<String, String>(16, 0.75f, true);
+        private final long maximumCharacters;
+        private long characters;
+
+        HtmlCache(final long maximumCharacters) {
+            this.maximumCharacters = maximumCharacters;
+        }
+
+        @CheckForNull
+        synchronized String get(final String key) {
+            return fragments.get(key);
+        }
+
+        synchronized void put(final String key, final String html) {
+            if (html.length() > maximumCharacters) {
+                return;
+            }
+            String previous = fragments.put(key, html);
+            if (previous != null) {
+                characters -= previous.length();
+            }
+            characters += html.length();
+            for (Iterator<String> values = fragments.values().iterator(); characters > maximumCharacters;) {
+                characters -= values.next().length();
+                values.remove();
+            }
+        }
+
+        synchronized void clear() {
+            fragments.clear();
+            characters = 0;
+        }
+
+        synchronized int size() {
+            return fragments.size();
+        }
+
+        synchronized long getCharacters() {
+            return characters;
+        }
+    }
+}
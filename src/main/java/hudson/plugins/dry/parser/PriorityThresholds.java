@@ -0,0 +1,49 @@
+package hudson.plugins.dry.parser;
+
+import java.io.Serializable;
+
+import hudson.plugins.analysis.util.model.Priority;
+
+/**
+ * Derives the priority of a duplication from its number of duplicate lines.
+ *
+ * @author Ulli Hafner
+ */
+public class PriorityThresholds implements Serializable {
+    private static final long serialVersionUID = -5198283245651178346L;
+
+    /** Minimum number of duplicate lines for high priority warnings. */
+    private final int highThreshold;
+    /** Minimum number of duplicate lines for normal priority warnings. */
+    private final int normalThreshold;
+
+    /**
+     * Creates a new instance of {@link PriorityThresholds}.
+     *
+     * @param highThreshold   minimum number of duplicate lines for high priority warnings
+     * @param normalThreshold minimum number of duplicate lines for normal priority warnings
+     */
+    public PriorityThresholds(final int highThreshold, final int normalThreshold) {
+        this.highThreshold = highThreshold;
+        this.normalThreshold = normalThreshold;
+    }
+
+    /**
+     * Returns the priority of a duplication.
+     *
+     * @param lines
+     *            number of duplicate lines
+     * @return the priority of the duplication
+     */
+    public Priority getPriority(final int lines) {
+        if (lines >= highThreshold) {
+            return Priority.HIGH;
+        }
+        else if (lines >= normalThreshold) {
+            return Priority.NORMAL;
+        }
+        else {
+            return Priority.LOW;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package hudson.plugins.dry.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+
+import javax.annotation.CheckForNull;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Detects the format of a duplication report by peeking at the XML prolog and the root element. Only the first
+ * bytes of the report are inspected, the stream is reset afterwards so that the selected parser can read the
+ * whole report in a single pass.
+ *
+ * @author Ulli Hafner
+ */
+public final class ReportFormatSniffer {
+    /** Maximum number of bytes that are inspected to find the root element. */
+    static final int PROLOG_SIZE = 16 * 1024;
+    /** Encoding that is used if the parser does not support the encoding of the report. */
+    private static final String FALLBACK_ENCODING = "ISO-8859-1";
+
+    /**
+     * Returns the local name of the root element of the specified XML report. The stream must support
+     * {@link InputStream#mark(int)}, it will be reset to the beginning of the report when this method returns.
+     *
+     * @param inputStream
+     *            the report to inspect
+     * @return the name of the root element or {@code null} if the report does not start with a well-formed XML
+     *         prolog and root element within the first {@value #PROLOG_SIZE} bytes
+     * @throws IOException
+     *             if the report could not be read
+     */
+    @CheckForNull
+    public static String sniffRootElement(final InputStream inputStream) throws IOException {
+        if (!inputStream.markSupported()) {
+            throw new IllegalArgumentException("Stream does not support mark and reset: " + inputStream);
+        }
+
+        byte[] prolog = new byte[PROLOG_SIZE];
+        inputStream.mark(PROLOG_SIZE);
+        int length = 0;
+        try {
+            while (length < PROLOG_SIZE) {
+                int read = inputStream.read(prolog, length, PROLOG_SIZE - length);
+                if (read < 0) {
+                    break;
+                }
+                length += read;
+            }
+        }
+        finally {
+            inputStream.reset();
+        }
+
+        String rootElement = findRootElement(new ByteArrayInputStream(prolog, 0, length), null);
+        if (rootElement == null) { // the encoding might not be supported by the parser, names are ASCII anyway
+            rootElement = findRootElement(new ByteArrayInputStream(prolog, 0, length), FALLBACK_ENCODING);
+        }
+        return rootElement;
+    }
+
+    @CheckForNull
+    private static String findRootElement(final InputStream prolog, @CheckForNull final String encoding) {
+        XMLStreamReader reader = null;
+        try {
+            XMLInputFactory factory = createInputFactory();
+            if (encoding == null) {
+                reader = factory.createXMLStreamReader(prolog);
+            }
+            else {
+                reader = factory.createXMLStreamReader(new InputStreamReader(prolog, encoding));
+            }
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return reader.getLocalName();
+                }
+            }
+        }
+        catch (XMLStreamException exception) {
+            // ignore and return null
+        }
+        catch (UnsupportedEncodingException exception) {
+            // ignore and return null
+        }
+        finally {
+            close(reader);
+        }
+        return null;
+    }
+
+    /**
+     * Creates a new StAX input factory that neither reads DTDs nor resolves external entities.
+     *
+     * @return the input factory
+     */
+    static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    /**
+     * Closes the specified reader, errors are ignored.
+     *
+     * @param reader
+     *            the reader to close, might be {@code null}
+     */
+    static void close(@CheckForNull final XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            }
+            catch (XMLStreamException exception) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Creates a new instance of {@link ReportFormatSniffer}.
+     */
+    private ReportFormatSniffer() {
+        // prevents instantiation
+    }
+}
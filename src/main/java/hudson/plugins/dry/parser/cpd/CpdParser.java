@@ -2,23 +2,22 @@ package hudson.plugins.dry.parser.cpd;
 
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.Random;
 
-import org.xml.sax.InputSource;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
-import hudson.plugins.analysis.util.PackageDetectors;
-import hudson.plugins.analysis.util.SecureDigester;
-import hudson.plugins.dry.parser.AbstractDigesterParser;
+import hudson.plugins.dry.parser.AbstractStaxParser;
 import hudson.plugins.dry.parser.DuplicateCode;
 
 /**
- * A parser for PMD's CPD XML files.
+ * A parser for PMD's CPD XML files. The file is read using a StAX parser so that only the current duplication is
+ * kept in memory.
  *
  * @author Ulli Hafner
  */
-public class CpdParser extends AbstractDigesterParser<Duplication> {
+public class CpdParser extends AbstractStaxParser {
     /** Unique ID of this class. */
     private static final long serialVersionUID = 6507147028628714706L;
     private final boolean forceUtf8;
@@ -48,57 +47,60 @@ public class CpdParser extends AbstractDigesterParser<Duplication> {
     }
 
     @Override
-    protected InputSource createInputSource(final InputStream file) {
+    protected XMLStreamReader createReader(final XMLInputFactory factory, final InputStream file)
+            throws XMLStreamException {
         if (forceUtf8) {
-            return super.createInputSource(file);
+            return super.createReader(factory, file);
         }
         else {
-            return new InputSource(file);
+            return factory.createXMLStreamReader(file);
         }
     }
 
     @Override
-    protected String getMatchingPattern() {
-        return "*/pmd-cpd";
+    protected String getRootElement() {
+        return "pmd-cpd";
     }
 
     @Override
-    protected void configureParser(final SecureDigester digester) {
-        String duplicationXPath = "*/pmd-cpd/duplication";
-        digester.addObjectCreate(duplicationXPath, Duplication.class);
-        digester.addSetProperties(duplicationXPath);
-        digester.addCallMethod(duplicationXPath + "/codefragment", "setCodeFragment", 0);
-        digester.addSetNext(duplicationXPath, "add");
-
-        String fileXPath = duplicationXPath + "/file";
-        digester.addObjectCreate(fileXPath, SourceFile.class);
-        digester.addSetProperties(fileXPath);
-        digester.addSetNext(fileXPath, "addFile", SourceFile.class.getName());
+    protected String getDuplicationElement() {
+        return "duplication";
     }
 
     @Override
-    protected Collection<DuplicateCode> convertWarnings(final List<Duplication> duplications, final String moduleName) {
-        List<DuplicateCode> annotations = new ArrayList<DuplicateCode>();
-
-        Random random = new Random();
-        int number = random.nextInt();
-        for (Duplication duplication : duplications) {
-            List<DuplicateCode> codeBlocks = new ArrayList<DuplicateCode>();
-            for (SourceFile file : duplication.getFiles()) {
-                // TODO: check why PMD reports a length + 1
-                DuplicateCode annotation = new DuplicateCode(getPriority(duplication.getLines()), file.getLine(), duplication.getLines(), file.getPath());
-                annotation.setSourceCode(duplication.getCodeFragment());
-                annotation.setModuleName(moduleName);
-                codeBlocks.add(annotation);
+    protected List<DuplicateCode> readDuplication(final XMLStreamReader reader, final String moduleName)
+            throws XMLStreamException {
+        Duplication duplication = new Duplication();
+        duplication.setLines(getIntAttribute(reader, "lines"));
+        duplication.setTokens(getIntAttribute(reader, "tokens"));
+        while (nextChildElement(reader)) {
+            String name = reader.getLocalName();
+            if ("file".equals(name)) {
+                SourceFile file = new SourceFile();
+                file.setLine(getIntAttribute(reader, "line"));
+                file.setPath(reader.getAttributeValue(null, "path"));
+                duplication.addFile(file);
+                skipElement(reader);
+            }
+            else if ("codefragment".equals(name)) {
+                duplication.setCodeFragment(reader.getElementText().trim());
             }
-            for (DuplicateCode block : codeBlocks) {
-                block.linkTo(codeBlocks);
-                block.setNumber(number);
-                block.setPackageName(PackageDetectors.detectPackageName(block.getFileName()));
+            else {
+                skipElement(reader);
             }
-            annotations.addAll(codeBlocks);
-            number++;
         }
-        return annotations;
+        return convertWarnings(duplication, moduleName);
+    }
+
+    private List<DuplicateCode> convertWarnings(final Duplication duplication, final String moduleName) {
+        List<DuplicateCode> codeBlocks = new ArrayList<DuplicateCode>();
+        for (SourceFile file : duplication.getFiles()) {
+            // TODO: check why PMD reports a length + 1
+            DuplicateCode annotation = new DuplicateCode(getPriority(duplication.getLines()), file.getLine(), duplication.getLines(), file.getPath());
+            annotation.setSourceCode(duplication.getCodeFragment());
+            annotation.setModuleName(moduleName);
+            codeBlocks.add(annotation);
+        }
+        return codeBlocks;
     }
 }
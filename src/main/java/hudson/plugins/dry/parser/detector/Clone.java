@@ -0,0 +1,118 @@
+package hudson.plugins.dry.parser.detector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import hudson.plugins.dry.parser.DuplicationGroup;
+
+/**
+ * A duplication found by a {@link CloneDetector}: two or more token sequences of the source files that are
+ * duplicates of each other, or that are similar to each other.
+ *
+ * @author Ulli Hafner
+ */
+public class Clone {
+    private final List<Occurrence> occurrences = new ArrayList<Occurrence>();
+    private final double similarity;
+
+    /**
+     * Creates a new instance of {@link Clone} whose occurrences are exact duplicates.
+     */
+    public Clone() {
+        this(DuplicationGroup.EXACT);
+    }
+
+    /**
+     * Creates a new instance of {@link Clone} whose occurrences are similar.
+     *
+     * @param similarity
+     *            the similarity of the occurrences
+     */
+    public Clone(final double similarity) {
+        this.similarity = similarity;
+    }
+
+    /**
+     * Adds an occurrence of this clone.
+     *
+     * @param file
+     *            the index of the file in the list of tokenized files
+     * @param start
+     *            the position of the first token
+     * @param end
+     *            the position after the last token
+     */
+    public void add(final int file, final int start, final int end) {
+        occurrences.add(new Occurrence(file, start, end));
+    }
+
+    /**
+     * Returns the occurrences of this clone.
+     *
+     * @return the occurrences
+     */
+    public List<Occurrence> getOccurrences() {
+        return Collections.unmodifiableList(occurrences);
+    }
+
+    /**
+     * Returns the similarity of the occurrences of this clone.
+     *
+     * @return the similarity, {@link DuplicationGroup#EXACT} for exact duplicates
+     */
+    public double getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * Returns the number of occurrences of this clone.
+     *
+     * @return the number of occurrences
+     */
+    public int size() {
+        return occurrences.size();
+    }
+
+    /**
+     * A token sequence of a source file.
+     */
+    public static final class Occurrence {
+        private final int file;
+        private final int start;
+        private final int end;
+
+        Occurrence(final int file, final int start, final int end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Returns the index of the file in the list of tokenized files.
+         *
+         * @return the index of the file
+         */
+        public int getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the position of the first token.
+         *
+         * @return the position of the first token
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * Returns the position after the last token.
+         *
+         * @return the position after the last token
+         */
+        public int getEnd() {
+            return end;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package hudson.plugins.dry.parser.detector;
+
+import java.util.List;
+
+/**
+ * Finds duplicate token sequences in a set of tokenized source files.
+ *
+ * @author Ulli Hafner
+ */
+public interface CloneDetector {
+    /**
+     * Finds the duplicate token sequences of the specified files.
+     *
+     * @param files
+     *            the tokenized source files
+     * @param minimumTokens
+     *            the minimum number of tokens of a duplication
+     * @return the found duplications
+     */
+    List<Clone> detect(List<TokenizedFile> files, int minimumTokens);
+}
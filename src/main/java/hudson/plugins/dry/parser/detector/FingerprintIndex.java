@@ -0,0 +1,798 @@
+package hudson.plugins.dry.parser.detector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.io.IOUtils;
+
+import hudson.Util;
+import hudson.plugins.dry.parser.DuplicateCode;
+
+/**
+ * Remembers the tokens, the window hash values, and the duplications of the source files of the previous build, so
+ * that the next build needs to tokenize the changed files only. Each file gets a number that does not change as long
+ * as the file exists. The hash values of the token windows of all files are stored as one sorted array of
+ * {@code hash << 32 | file} entries, so the files that share a window with a changed file are found by binary
+ * search. The tokens of a file are read from the storage on demand. For each duplication the lines, source code
+ * fragment, context hash code and package name of its code blocks are stored as well, so the duplications of
+ * unchanged files are created without reading these files again.
+ * <p>
+ * Layout of the file:
+ * </p>
+ * <pre>
+ * header:     magic, version, minimum number of tokens, encoding
+ * tokens:     tokens, lines, and kinds of each file
+ * dictionary: the tokens and their numbers
+ * files:      name, size, modification time, digest, position and number of tokens of each file
+ * windows:    the sorted window entries
+ * clones:     the occurrences and code blocks of each duplication
+ * footer:     position of the dictionary, magic
+ * </pre>
+ *
+ * @author Ulli Hafner
+ */
+public class FingerprintIndex {
+    /** File name of the index, relative to the temporary directory of the workspace. */
+    static final String FILE_NAME = "dry-fingerprints.bin";
+
+    private static final Logger LOGGER = Logger.getLogger(FingerprintIndex.class.getName());
+
+    private static final int MAGIC = 0x44525946;
+    private static final int VERSION = 3;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int FOOTER_SIZE = 12;
+    private static final int HASH_SHIFT = 32;
+    private static final long FILE_MASK = 0xFFFFFFFFL;
+    private static final int NOT_STORED = -1;
+    private static final int BYTES_PER_TOKEN = 9;
+
+    private final File storage;
+    private final int minimumTokens;
+    private final String encoding;
+
+    private TokenDictionary dictionary = new TokenDictionary();
+    /** The files by number, {@code null} for removed files. */
+    private final List<FileEntry> files = new ArrayList<FileEntry>();
+    private final Map<String, Integer> numbers = new HashMap<String, Integer>();
+    private long[] windows = new long[0];
+    private List<Clone> clones = new ArrayList<Clone>();
+    /** The code blocks of each duplication, in the order of its occurrences. */
+    private Map<Clone, List<CodeBlock>> codeBlocks = new IdentityHashMap<Clone, List<CodeBlock>>();
+
+    /**
+     * Returns the index file for the specified workspace. The file is stored in the temporary folder of the
+     * workspace.
+     *
+     * @param workspacePath
+     *            path to the workspace
+     * @return the index file
+     */
+    public static File getStorage(final String workspacePath) {
+        return new File(workspacePath + "@tmp", FILE_NAME);
+    }
+
+    /**
+     * Creates a new instance of {@link FingerprintIndex}.
+     *
+     * @param storage
+     *            the file that stores the index
+     * @param minimumTokens
+     *            the number of tokens of a window
+     * @param encoding
+     *            the encoding of the source files
+     */
+    public FingerprintIndex(final File storage, final int minimumTokens, final String encoding) {
+        this.storage = storage;
+        this.minimumTokens = minimumTokens;
+        this.encoding = String.valueOf(encoding);
+    }
+
+    /**
+     * Loads the index from its storage. If the storage does not exist, can't be read, or has been created with other
+     * settings, then the index remains empty.
+     */
+    public void load() {
+        clear();
+        if (!storage.isFile()) {
+            return;
+        }
+
+        try {
+            long dictionaryPosition = readHeader();
+            if (dictionaryPosition >= 0) {
+                readIndex(dictionaryPosition);
+            }
+        }
+        catch (IOException exception) {
+            LOGGER.log(Level.WARNING, "Failed to read fingerprint index " + storage, exception);
+            clear();
+        }
+    }
+
+    private void clear() {
+        dictionary = new TokenDictionary();
+        files.clear();
+        numbers.clear();
+        windows = new long[0];
+        clones = new ArrayList<Clone>();
+        codeBlocks = new IdentityHashMap<Clone, List<CodeBlock>>();
+    }
+
+    /**
+     * Reads the header and the footer of the storage.
+     *
+     * @return the position of the dictionary, or -1 if the storage has been created with other settings
+     */
+    private long readHeader() throws IOException {
+        RandomAccessFile random = new RandomAccessFile(storage, "r");
+        try {
+            if (random.length() < FOOTER_SIZE || random.readInt() != MAGIC || random.readInt() != VERSION
+                    || random.readInt() != minimumTokens || !encoding.equals(random.readUTF())) {
+                return NOT_STORED;
+            }
+            random.seek(random.length() - FOOTER_SIZE);
+            long position = random.readLong();
+            if (random.readInt() != MAGIC) {
+                return NOT_STORED;
+            }
+            return position;
+        }
+        finally {
+            IOUtils.closeQuietly(random);
+        }
+    }
+
+    private void readIndex(final long position) throws IOException {
+        DataInputStream input = open(position);
+        try {
+            int limit = input.readInt();
+            int numberOfTokens = input.readInt();
+            Map<String, Integer> tokens = new HashMap<String, Integer>(numberOfTokens * 2);
+            for (int i = 0; i < numberOfTokens; i++) {
+                tokens.put(readText(input), input.readInt());
+            }
+            dictionary = new TokenDictionary(tokens, limit);
+
+            int numberOfFiles = input.readInt();
+            for (int i = 0; i < numberOfFiles; i++) {
+                if (input.readBoolean()) {
+                    FileEntry entry = new FileEntry(readText(input), input.readLong(), input.readLong(),
+                            readText(input));
+                    entry.position = input.readLong();
+                    entry.numberOfTokens = input.readInt();
+                    numbers.put(entry.fileName, i);
+                    files.add(entry);
+                }
+                else {
+                    files.add(null);
+                }
+            }
+
+            windows = new long[input.readInt()];
+            for (int i = 0; i < windows.length; i++) {
+                windows[i] = input.readLong();
+            }
+
+            int numberOfClones = input.readInt();
+            for (int i = 0; i < numberOfClones; i++) {
+                Clone clone = new Clone();
+                int size = input.readInt();
+                List<CodeBlock> blocks = new ArrayList<CodeBlock>(size);
+                for (int j = 0; j < size; j++) {
+                    clone.add(input.readInt(), input.readInt(), input.readInt());
+                    blocks.add(new CodeBlock(input.readInt(), input.readInt(), input.readLong(), readText(input),
+                            readText(input)));
+                }
+                clones.add(clone);
+                codeBlocks.put(clone, blocks);
+            }
+        }
+        finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Returns the dictionary of the tokens. The dictionary must be used to tokenize new and changed files, so that
+     * the token numbers match the numbers of the stored files.
+     *
+     * @return the dictionary
+     */
+    public TokenDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the number of the specified file.
+     *
+     * @param fileName
+     *            the absolute name of the file
+     * @return the number of the file, or -1 if the file is not part of the index
+     */
+    public int getNumber(final String fileName) {
+        Integer number = numbers.get(fileName);
+        return number == null ? NOT_STORED : number;
+    }
+
+    /**
+     * Returns the absolute name of the specified file.
+     *
+     * @param number
+     *            the number of the file
+     * @return the absolute name of the file
+     */
+    public String getFileName(final int number) {
+        return files.get(number).fileName;
+    }
+
+    /**
+     * Returns the number of files slots of this index, i.e. an upper bound of the file numbers.
+     *
+     * @return the number of file slots
+     */
+    public int getNumberOfSlots() {
+        return files.size();
+    }
+
+    /**
+     * Returns the absolute names of all files of the index.
+     *
+     * @return the file names
+     */
+    public List<String> getFileNames() {
+        return new ArrayList<String>(numbers.keySet());
+    }
+
+    /**
+     * Returns whether the content of the specified file is the same as the content of the stored file. The digest of
+     * the file is computed only if the size or the modification time of the file have been changed.
+     *
+     * @param number
+     *            the number of the file
+     * @param file
+     *            the file
+     * @return {@code true} if the file has not been changed, {@code false} otherwise
+     * @throws IOException
+     *             if the digest of the file could not be computed
+     */
+    public boolean isUnchanged(final int number, final File file) throws IOException {
+        FileEntry entry = files.get(number);
+        if (entry.size == file.length() && entry.lastModified == file.lastModified()) {
+            return true;
+        }
+        if (entry.digest.equals(Util.getDigestOf(file))) {
+            entry.size = file.length();
+            entry.lastModified = file.lastModified();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the tokens of the specified file. Stored tokens are read from the storage.
+     *
+     * @param number
+     *            the number of the file
+     * @return the tokens of the file
+     * @throws IOException
+     *             if the tokens could not be read
+     */
+    public TokenizedFile getTokenizedFile(final int number) throws IOException {
+        FileEntry entry = files.get(number);
+        if (entry.tokens == null) {
+            DataInputStream input = open(entry.position);
+            try {
+                int size = entry.numberOfTokens;
+                int[] tokens = new int[size];
+                for (int i = 0; i < size; i++) {
+                    tokens[i] = input.readInt();
+                }
+                int[] lines = new int[size];
+                for (int i = 0; i < size; i++) {
+                    lines[i] = input.readInt();
+                }
+                byte[] kinds = new byte[size];
+                input.readFully(kinds);
+                entry.tokens = new TokenizedFile(entry.fileName, tokens, lines, kinds);
+            }
+            finally {
+                IOUtils.closeQuietly(input);
+            }
+        }
+        return entry.tokens;
+    }
+
+    /**
+     * Stores the tokens of a new or changed file. The window hash values of the file are replaced when the index is
+     * saved.
+     *
+     * @param file
+     *            the file
+     * @param tokens
+     *            the tokens of the file
+     * @return the number of the file
+     * @throws IOException
+     *             if the digest of the file could not be computed
+     */
+    public int put(final File file, final TokenizedFile tokens) throws IOException {
+        FileEntry entry = new FileEntry(tokens.getFileName(), file.length(), file.lastModified(),
+                Util.getDigestOf(file));
+        entry.tokens = tokens;
+        entry.numberOfTokens = tokens.size();
+        entry.isChanged = true;
+
+        int number = getNumber(tokens.getFileName());
+        if (number == NOT_STORED) {
+            number = files.size();
+            files.add(entry);
+            numbers.put(entry.fileName, number);
+        }
+        else {
+            files.set(number, entry);
+        }
+        return number;
+    }
+
+    /**
+     * Removes the specified file from the index.
+     *
+     * @param number
+     *            the number of the file
+     */
+    public void remove(final int number) {
+        FileEntry entry = files.get(number);
+        if (entry != null) {
+            numbers.remove(entry.fileName);
+            files.set(number, null);
+        }
+    }
+
+    /**
+     * Returns the numbers of the stored files that contain at least one of the specified window hash values.
+     *
+     * @param hashes
+     *            the window hash values
+     * @return the numbers of the files
+     */
+    public BitSet findFiles(final int[] hashes) {
+        BitSet found = new BitSet();
+        for (int hash : hashes) {
+            long key = (long)hash << HASH_SHIFT;
+            int index = Arrays.binarySearch(windows, key);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            while (index < windows.length && windows[index] >>> HASH_SHIFT == key >>> HASH_SHIFT) {
+                found.set((int)(windows[index] & FILE_MASK));
+                index++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the duplications of the previous build, the occurrences reference the numbers of the files.
+     *
+     * @return the duplications
+     */
+    public List<Clone> getClones() {
+        return clones;
+    }
+
+    /**
+     * Returns the code blocks of the specified duplication of the previous build.
+     *
+     * @param clone
+     *            the duplication, one of {@link #getClones()}
+     * @return the code blocks, in the order of the occurrences of the duplication, or {@code null} if the code blocks
+     *         are not known
+     */
+    @CheckForNull
+    public List<CodeBlock> getCodeBlocks(final Clone clone) {
+        return codeBlocks.get(clone);
+    }
+
+    /**
+     * Sets the duplications of this build, the occurrences reference the numbers of the files.
+     *
+     * @param clones
+     *            the duplications
+     * @param duplications
+     *            the code blocks of the duplications, in the order of the duplications and their occurrences
+     */
+    public void setClones(final List<Clone> clones, final List<DuplicateCode> duplications) {
+        Map<Clone, List<CodeBlock>> blocks = new IdentityHashMap<Clone, List<CodeBlock>>();
+        Iterator<DuplicateCode> iterator = duplications.iterator();
+        for (Clone clone : clones) {
+            List<CodeBlock> cloneBlocks = new ArrayList<CodeBlock>(clone.size());
+            for (int i = 0; i < clone.size(); i++) {
+                cloneBlocks.add(new CodeBlock(iterator.next()));
+            }
+            blocks.put(clone, cloneBlocks);
+        }
+        if (iterator.hasNext()) {
+            throw new IllegalArgumentException("More code blocks than occurrences of the duplications");
+        }
+        this.clones = clones;
+        codeBlocks = blocks;
+    }
+
+    /**
+     * Saves the index to its storage. The tokens of unchanged files are copied from the previous storage, the
+     * window hash values of changed files are merged into the sorted window entries.
+     *
+     * @throws IOException
+     *             if the index could not be saved
+     */
+    public void save() throws IOException {
+        File parent = storage.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can't create directory " + parent);
+        }
+        File temporary = new File(storage.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temporary);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+        long[] positions;
+        long[] merged;
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(minimumTokens);
+            output.writeUTF(encoding);
+
+            positions = writeTokens(output, stream.getChannel());
+
+            output.flush();
+            long dictionaryPosition = stream.getChannel().position();
+            writeDictionary(output);
+            writeFiles(output, positions);
+            merged = mergeWindows();
+            output.writeInt(merged.length);
+            for (long window : merged) {
+                output.writeLong(window);
+            }
+            writeClones(output);
+
+            output.writeLong(dictionaryPosition);
+            output.writeInt(MAGIC);
+        }
+        finally {
+            IOUtils.closeQuietly(output);
+        }
+        if (storage.exists() && !storage.delete() || !temporary.renameTo(storage)) {
+            throw new IOException("Can't replace " + storage);
+        }
+
+        windows = merged;
+        for (int number = 0; number < files.size(); number++) {
+            FileEntry entry = files.get(number);
+            if (entry != null) {
+                entry.position = positions[number];
+                entry.isChanged = false;
+            }
+        }
+    }
+
+    /**
+     * Writes the tokens of all files. The tokens of unchanged files are copied from the previous storage without
+     * decoding them.
+     *
+     * @return the positions of the tokens of each file
+     */
+    private long[] writeTokens(final DataOutputStream output, final FileChannel target) throws IOException {
+        long[] positions = new long[files.size()];
+        FileInputStream previous = storage.isFile() ? new FileInputStream(storage) : null;
+        try {
+            for (int number = 0; number < files.size(); number++) {
+                FileEntry entry = files.get(number);
+                if (entry == null) {
+                    continue;
+                }
+                output.flush();
+                positions[number] = target.position();
+                if (entry.isChanged || previous == null) {
+                    writeTokens(output, getTokenizedFile(number));
+                }
+                else {
+                    FileChannel source = previous.getChannel();
+                    long length = (long)entry.numberOfTokens * BYTES_PER_TOKEN;
+                    long copied = 0;
+                    while (copied < length) {
+                        long transferred = source.transferTo(entry.position + copied, length - copied, target);
+                        if (transferred <= 0) {
+                            throw new IOException("Truncated fingerprint index " + storage);
+                        }
+                        copied += transferred;
+                    }
+                }
+            }
+        }
+        finally {
+            IOUtils.closeQuietly(previous);
+        }
+        return positions;
+    }
+
+    private void writeTokens(final DataOutputStream output, final TokenizedFile tokens) throws IOException {
+        for (int i = 0; i < tokens.size(); i++) {
+            output.writeInt(tokens.getToken(i));
+        }
+        for (int i = 0; i < tokens.size(); i++) {
+            output.writeInt(tokens.getLine(i));
+        }
+        for (int i = 0; i < tokens.size(); i++) {
+            output.writeByte(tokens.getKind(i));
+        }
+    }
+
+    private void writeDictionary(final DataOutputStream output) throws IOException {
+        Map<String, Integer> tokens = new HashMap<String, Integer>(dictionary.getTokens());
+        output.writeInt(dictionary.getLimit());
+        output.writeInt(tokens.size());
+        for (Map.Entry<String, Integer> token : tokens.entrySet()) {
+            writeText(output, token.getKey());
+            output.writeInt(token.getValue());
+        }
+    }
+
+    private void writeFiles(final DataOutputStream output, final long[] positions) throws IOException {
+        output.writeInt(files.size());
+        for (int number = 0; number < files.size(); number++) {
+            FileEntry entry = files.get(number);
+            output.writeBoolean(entry != null);
+            if (entry != null) {
+                writeText(output, entry.fileName);
+                output.writeLong(entry.size);
+                output.writeLong(entry.lastModified);
+                writeText(output, entry.digest);
+                output.writeLong(positions[number]);
+                output.writeInt(entry.numberOfTokens);
+            }
+        }
+    }
+
+    /**
+     * Merges the window entries: the entries of unchanged files are kept, the entries of changed files are created
+     * from their tokens. Both sequences are sorted, so they are merged in linear time.
+     */
+    private long[] mergeWindows() {
+        long[] changed = createChangedWindows();
+        int kept = 0;
+        for (long window : windows) {
+            if (isKept((int)(window & FILE_MASK))) {
+                kept++;
+            }
+        }
+
+        long[] merged = new long[kept + changed.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < windows.length || j < changed.length) {
+            if (i < windows.length && !isKept((int)(windows[i] & FILE_MASK))) {
+                i++;
+            }
+            else if (j >= changed.length || i < windows.length && windows[i] < changed[j]) {
+                merged[count++] = windows[i++];
+            }
+            else {
+                merged[count++] = changed[j++];
+            }
+        }
+        return merged;
+    }
+
+    private boolean isKept(final int number) {
+        FileEntry entry = files.get(number);
+        return entry != null && !entry.isChanged;
+    }
+
+    private long[] createChangedWindows() {
+        List<long[]> parts = new ArrayList<long[]>();
+        int size = 0;
+        for (int number = 0; number < files.size(); number++) {
+            FileEntry entry = files.get(number);
+            if (entry != null && entry.isChanged) {
+                int[] hashes = RollingHashDetector.computeWindowHashes(entry.tokens.getTokens(), minimumTokens);
+                long[] part = new long[hashes.length];
+                for (int k = 0; k < hashes.length; k++) {
+                    part[k] = (long)hashes[k] << HASH_SHIFT | number;
+                }
+                parts.add(part);
+                size += part.length;
+            }
+        }
+        long[] changed = new long[size];
+        int position = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, changed, position, part.length);
+            position += part.length;
+        }
+        Arrays.sort(changed);
+        int unique = 0;
+        for (int k = 0; k < changed.length; k++) {
+            if (k == 0 || changed[k] != changed[k - 1]) {
+                changed[unique++] = changed[k];
+            }
+        }
+        return Arrays.copyOf(changed, unique);
+    }
+
+    private void writeClones(final DataOutputStream output) throws IOException {
+        output.writeInt(clones.size());
+        for (Clone clone : clones) {
+            output.writeInt(clone.size());
+            List<CodeBlock> blocks = codeBlocks.get(clone);
+            for (int i = 0; i < clone.size(); i++) {
+                Clone.Occurrence occurrence = clone.getOccurrences().get(i);
+                output.writeInt(occurrence.getFile());
+                output.writeInt(occurrence.getStart());
+                output.writeInt(occurrence.getEnd());
+                CodeBlock block = blocks.get(i);
+                output.writeInt(block.getLine());
+                output.writeInt(block.getNumberOfLines());
+                output.writeLong(block.getContextHashCode());
+                writeText(output, block.getSourceCode());
+                writeText(output, block.getPackageName());
+            }
+        }
+    }
+
+    /**
+     * Writes a text that might be {@code null}. In contrast to {@link DataOutputStream#writeUTF(String)} the length
+     * of the text is not limited.
+     */
+    private void writeText(final DataOutputStream output, @CheckForNull final String text) throws IOException {
+        if (text == null) {
+            output.writeInt(NOT_STORED);
+        }
+        else {
+            byte[] bytes = text.getBytes(UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    @CheckForNull
+    private String readText(final DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length == NOT_STORED) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private DataInputStream open(final long position) throws IOException {
+        FileInputStream stream = new FileInputStream(storage);
+        try {
+            stream.getChannel().position(position);
+        }
+        catch (IOException exception) {
+            IOUtils.closeQuietly(stream);
+            throw exception;
+        }
+        return new DataInputStream(new BufferedInputStream(stream));
+    }
+
+    /**
+     * A file of the index.
+     */
+    private static class FileEntry {
+        private final String fileName;
+        private long size;
+        private long lastModified;
+        private final String digest;
+        /** Position of the tokens in the storage. */
+        private long position;
+        private int numberOfTokens;
+        /** The tokens of the file, read on demand. */
+        @CheckForNull
+        private TokenizedFile tokens;
+        /** Determines whether the content of the file has been changed. */
+        private boolean isChanged;
+
+        FileEntry(final String fileName, final long size, final long lastModified, final String digest) {
+            this.fileName = fileName;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * The properties of a code block of a duplication that are read from the source file.
+     */
+    public static final class CodeBlock {
+        private final int line;
+        private final int numberOfLines;
+        private final long contextHashCode;
+        @CheckForNull
+        private final String sourceCode;
+        @CheckForNull
+        private final String packageName;
+
+        CodeBlock(final DuplicateCode duplication) {
+            this(duplication.getPrimaryLineNumber(), duplication.getNumberOfLines(),
+                    duplication.getContextHashCode(), duplication.getSourceCode(), duplication.getPackageName());
+        }
+
+        CodeBlock(final int line, final int numberOfLines, final long contextHashCode,
+                @CheckForNull final String sourceCode, @CheckForNull final String packageName) {
+            this.line = line;
+            this.numberOfLines = numberOfLines;
+            this.contextHashCode = contextHashCode;
+            this.sourceCode = sourceCode;
+            this.packageName = packageName;
+        }
+
+        /**
+         * Returns the first line of the code block.
+         *
+         * @return the first line
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * Returns the number of lines of the code block.
+         *
+         * @return the number of lines
+         */
+        public int getNumberOfLines() {
+            return numberOfLines;
+        }
+
+        /**
+         * Returns the context hash code of the code block.
+         *
+         * @return the context hash code
+         */
+        public long getContextHashCode() {
+            return contextHashCode;
+        }
+
+        /**
+         * Returns the source code fragment of the code block.
+         *
+         * @return the source code fragment
+         */
+        @CheckForNull
+        public String getSourceCode() {
+            return sourceCode;
+        }
+
+        /**
+         * Returns the name of the package of the source file.
+         *
+         * @return the package name
+         */
+        @CheckForNull
+        public String getPackageName() {
+            return packageName;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package hudson.plugins.dry.parser.detector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds blocks of code that are similar but not identical, e.g. code that has been copied and then edited. The
+ * candidates are the brace blocks of the files (methods, loops, classes, etc.) including their declaration, with a
+ * size between the minimum number of tokens and {@value #MAXIMUM_UNIT_FACTOR} times that number. Identifiers and
+ * literals of a block are normalized, then the block is split into shingles of {@value #SHINGLE_SIZE} tokens.
+ * <p>
+ * Similar blocks are found in sub-quadratic time with locality sensitive hashing: for each block a MinHash
+ * signature of {@value #NUMBER_OF_HASHES} values is computed and split into {@value #BANDS} bands. Blocks with an
+ * equal band are candidates, the similarity of each candidate pair is then verified by computing the exact Jaccard
+ * index of the shingle sets. Pairs of blocks that are nested in an already reported pair are skipped.
+ * </p>
+ *
+ * @author Ulli Hafner
+ */
+public class NearMissDetector implements CloneDetector {
+    /** Number of tokens of a shingle. */
+    static final int SHINGLE_SIZE = 5;
+    /** Number of values of a MinHash signature. */
+    static final int NUMBER_OF_HASHES = 64;
+    /** Number of bands of a signature, each band has {@code NUMBER_OF_HASHES / BANDS} rows. */
+    static final int BANDS = 16;
+    /** Maximum size of a block, as multiple of the minimum number of tokens. */
+    static final int MAXIMUM_UNIT_FACTOR = 10;
+    /** Buckets with more blocks are skipped, they contain trivial code like getters. */
+    static final int MAXIMUM_BUCKET_SIZE = 100;
+
+    private static final int ROWS = NUMBER_OF_HASHES / BANDS;
+    private static final int IDENTIFIER = -1;
+    private static final int LITERAL = -2;
+    private static final int INITIAL_CAPACITY = 1024;
+    /** Marks a pair of blocks with the same tokens, the Jaccard index is at most 1. */
+    private static final double IDENTICAL = 2.0;
+    private static final int[] MULTIPLIERS = new int[NUMBER_OF_HASHES];
+    private static final int[] OFFSETS = new int[NUMBER_OF_HASHES];
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < NUMBER_OF_HASHES; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            MULTIPLIERS[i] = (int)(seed >>> 32) | 1;
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            OFFSETS[i] = (int)(seed >>> 32);
+        }
+    }
+
+    private final int openingBrace;
+    private final int closingBrace;
+    private final int semicolon;
+    private final double threshold;
+
+    private List<TokenizedFile> files;
+    private int numberOfBlocks;
+    private int[] blockFile = new int[INITIAL_CAPACITY];
+    private int[] blockStart = new int[INITIAL_CAPACITY];
+    private int[] blockEnd = new int[INITIAL_CAPACITY];
+    private int[] blockParent = new int[INITIAL_CAPACITY];
+
+    /**
+     * Creates a new instance of {@link NearMissDetector}.
+     *
+     * @param dictionary
+     *            the dictionary of the tokens
+     * @param threshold
+     *            the minimum similarity of reported blocks, a value between 0 and 1
+     */
+    public NearMissDetector(final TokenDictionary dictionary, final double threshold) {
+        openingBrace = dictionary.getId("{");
+        closingBrace = dictionary.getId("}");
+        semicolon = dictionary.getId(";");
+        this.threshold = threshold;
+    }
+
+    @Override
+    public List<Clone> detect(final List<TokenizedFile> tokenizedFiles, final int minimumTokens) {
+        files = tokenizedFiles;
+        numberOfBlocks = 0;
+        int minimum = Math.max(SHINGLE_SIZE, minimumTokens);
+        int[] units = findUnits(minimum, minimum * MAXIMUM_UNIT_FACTOR);
+
+        int[][] shingles = new int[units.length][];
+        int[] signatures = new int[units.length * NUMBER_OF_HASHES];
+        for (int i = 0; i < units.length; i++) {
+            shingles[i] = createShingles(units[i]);
+            computeSignature(shingles[i], signatures, i * NUMBER_OF_HASHES);
+        }
+
+        long[] candidates = findCandidates(signatures, units.length);
+        return verify(candidates, units, shingles);
+    }
+
+    /**
+     * Finds all brace blocks of all files. Each block starts with the first token of its declaration, i.e. after
+     * the previous semicolon or brace.
+     *
+     * @return the blocks that have an accepted size
+     */
+    private int[] findUnits(final int minimum, final int maximum) {
+        int[] units = new int[INITIAL_CAPACITY];
+        int numberOfUnits = 0;
+        for (int file = 0; file < files.size(); file++) {
+            TokenizedFile tokens = files.get(file);
+            int[] open = new int[INITIAL_CAPACITY];
+            int depth = 0;
+            int statementStart = 0;
+            for (int i = 0; i < tokens.size(); i++) {
+                int token = tokens.getToken(i);
+                if (token == openingBrace) {
+                    int block = addBlock(file, statementStart, depth > 0 ? open[depth - 1] : -1);
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, depth * 2);
+                    }
+                    open[depth++] = block;
+                    statementStart = i + 1;
+                }
+                else if (token == closingBrace) {
+                    if (depth > 0) {
+                        int block = open[--depth];
+                        blockEnd[block] = i + 1;
+                        int size = blockEnd[block] - blockStart[block];
+                        if (size >= minimum && size <= maximum) {
+                            if (numberOfUnits == units.length) {
+                                units = Arrays.copyOf(units, numberOfUnits * 2);
+                            }
+                            units[numberOfUnits++] = block;
+                        }
+                    }
+                    statementStart = i + 1;
+                }
+                else if (token == semicolon) {
+                    statementStart = i + 1;
+                }
+            }
+        }
+        return Arrays.copyOf(units, numberOfUnits);
+    }
+
+    private int addBlock(final int file, final int start, final int parent) {
+        if (numberOfBlocks == blockFile.length) {
+            int capacity = numberOfBlocks * 2;
+            blockFile = Arrays.copyOf(blockFile, capacity);
+            blockStart = Arrays.copyOf(blockStart, capacity);
+            blockEnd = Arrays.copyOf(blockEnd, capacity);
+            blockParent = Arrays.copyOf(blockParent, capacity);
+        }
+        blockFile[numberOfBlocks] = file;
+        blockStart[numberOfBlocks] = start;
+        blockParent[numberOfBlocks] = parent;
+        return numberOfBlocks++;
+    }
+
+    /**
+     * Creates the sorted set of the hash values of the shingles of the normalized tokens of a block.
+     */
+    private int[] createShingles(final int block) {
+        TokenizedFile file = files.get(blockFile[block]);
+        int start = blockStart[block];
+        int count = blockEnd[block] - start - SHINGLE_SIZE + 1;
+        int[] normalized = new int[blockEnd[block] - start];
+        for (int i = 0; i < normalized.length; i++) {
+            normalized[i] = normalize(file, start + i);
+        }
+        int[] shingles = new int[count];
+        for (int i = 0; i < count; i++) {
+            int hash = 0x811C9DC5;
+            for (int j = 0; j < SHINGLE_SIZE; j++) {
+                hash = (hash ^ normalized[i + j]) * 0x01000193;
+            }
+            shingles[i] = hash;
+        }
+        Arrays.sort(shingles);
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || shingles[i] != shingles[i - 1]) {
+                shingles[size++] = shingles[i];
+            }
+        }
+        return Arrays.copyOf(shingles, size);
+    }
+
+    private int normalize(final TokenizedFile file, final int position) {
+        switch (file.getKind(position)) {
+            case TokenizedFile.IDENTIFIER:
+                return IDENTIFIER;
+            case TokenizedFile.LITERAL:
+                return LITERAL;
+            default:
+                return file.getToken(position);
+        }
+    }
+
+    private void computeSignature(final int[] shingles, final int[] signatures, final int offset) {
+        Arrays.fill(signatures, offset, offset + NUMBER_OF_HASHES, Integer.MAX_VALUE);
+        for (int shingle : shingles) {
+            for (int i = 0; i < NUMBER_OF_HASHES; i++) {
+                int value = mix(shingle * MULTIPLIERS[i] + OFFSETS[i]);
+                if (value < signatures[offset + i]) {
+                    signatures[offset + i] = value;
+                }
+            }
+        }
+    }
+
+    private int mix(final int value) {
+        int hash = value;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * Finds the pairs of units that have at least one equal band. For each band the hash values of the band are
+     * sorted together with the unit, so units with the same band value are adjacent.
+     *
+     * @return the sorted and unique pairs, each pair is encoded as {@code first << 32 | second}
+     */
+    private long[] findCandidates(final int[] signatures, final int numberOfUnits) {
+        long[] pairs = new long[INITIAL_CAPACITY];
+        int numberOfPairs = 0;
+        long[] entries = new long[numberOfUnits];
+        for (int band = 0; band < BANDS; band++) {
+            for (int unit = 0; unit < numberOfUnits; unit++) {
+                int hash = 17;
+                for (int row = 0; row < ROWS; row++) {
+                    hash = hash * 31 + signatures[unit * NUMBER_OF_HASHES + band * ROWS + row];
+                }
+                entries[unit] = (long)hash << 32 | unit;
+            }
+            Arrays.sort(entries);
+
+            int start = 0;
+            while (start < numberOfUnits) {
+                int end = start + 1;
+                while (end < numberOfUnits && entries[end] >>> 32 == entries[start] >>> 32) {
+                    end++;
+                }
+                if (end - start > 1 && end - start <= MAXIMUM_BUCKET_SIZE) {
+                    for (int i = start; i < end; i++) {
+                        for (int j = i + 1; j < end; j++) {
+                            if (numberOfPairs == pairs.length) {
+                                pairs = Arrays.copyOf(pairs, numberOfPairs * 2);
+                            }
+                            long first = entries[i] & 0xFFFFFFFFL;
+                            long second = entries[j] & 0xFFFFFFFFL;
+                            pairs[numberOfPairs++] = Math.min(first, second) << 32 | Math.max(first, second);
+                        }
+                    }
+                }
+                start = end;
+            }
+        }
+        long[] sorted = Arrays.copyOf(pairs, numberOfPairs);
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+
+    /**
+     * Verifies the candidate pairs with the exact Jaccard index of the shingle sets. Identical blocks are not
+     * reported, they are found by the exact detectors. A pair is skipped if a nested block of one side matches the
+     * other side as well, e.g. a class that consists of a single copied method. Larger pairs are reported first,
+     * pairs that are nested in a reported pair are skipped.
+     */
+    private List<Clone> verify(final long[] candidates, final int[] units, final int[][] shingles) {
+        List<long[]> matches = new ArrayList<long[]>();
+        Set<Long> explained = new HashSet<Long>();
+        for (long candidate : candidates) {
+            int first = (int)(candidate >>> 32);
+            int second = (int)candidate;
+            int firstBlock = units[first];
+            int secondBlock = units[second];
+            if (overlaps(firstBlock, secondBlock)) {
+                continue;
+            }
+            double similarity = isIdentical(firstBlock, secondBlock) ? IDENTICAL
+                    : computeJaccardIndex(shingles[first], shingles[second]);
+            if (similarity >= threshold) {
+                int size = blockEnd[firstBlock] - blockStart[firstBlock] + blockEnd[secondBlock]
+                        - blockStart[secondBlock];
+                matches.add(new long[] {size, firstBlock, secondBlock, Double.doubleToLongBits(similarity)});
+                markEnclosingPairs(firstBlock, secondBlock, explained);
+            }
+        }
+        sortBySize(matches);
+
+        List<Clone> clones = new ArrayList<Clone>();
+        Set<Long> reported = new HashSet<Long>();
+        for (long[] pair : matches) {
+            int firstBlock = (int)pair[1];
+            int secondBlock = (int)pair[2];
+            double similarity = Double.longBitsToDouble(pair[3]);
+            if (similarity != IDENTICAL && !explained.contains(createKey(firstBlock, secondBlock))
+                    && !isNested(firstBlock, secondBlock, reported)) {
+                reported.add(createKey(firstBlock, secondBlock));
+                Clone clone = new Clone(similarity);
+                clone.add(blockFile[firstBlock], blockStart[firstBlock], blockEnd[firstBlock]);
+                clone.add(blockFile[secondBlock], blockStart[secondBlock], blockEnd[secondBlock]);
+                clones.add(clone);
+            }
+        }
+        return clones;
+    }
+
+    /**
+     * Marks the pairs of a block and the enclosing blocks of its partner, these pairs are explained by the match.
+     */
+    private void markEnclosingPairs(final int first, final int second, final Set<Long> explained) {
+        for (int outer = blockParent[first]; outer >= 0; outer = blockParent[outer]) {
+            explained.add(createKey(outer, second));
+        }
+        for (int outer = blockParent[second]; outer >= 0; outer = blockParent[outer]) {
+            explained.add(createKey(first, outer));
+        }
+    }
+
+    private void sortBySize(final List<long[]> pairs) {
+        Collections.sort(pairs, new Comparator<long[]>() {
+            @Override
+            public int compare(final long[] left, final long[] right) {
+                if (left[0] != right[0]) {
+                    return left[0] > right[0] ? -1 : 1;
+                }
+                if (left[1] != right[1]) {
+                    return left[1] < right[1] ? -1 : 1;
+                }
+                return left[2] < right[2] ? -1 : left[2] == right[2] ? 0 : 1;
+            }
+        });
+    }
+
+    private boolean overlaps(final int first, final int second) {
+        return blockFile[first] == blockFile[second] && blockStart[first] < blockEnd[second]
+                && blockStart[second] < blockEnd[first];
+    }
+
+    private boolean isIdentical(final int first, final int second) {
+        int length = blockEnd[first] - blockStart[first];
+        if (length != blockEnd[second] - blockStart[second]) {
+            return false;
+        }
+        TokenizedFile firstFile = files.get(blockFile[first]);
+        TokenizedFile secondFile = files.get(blockFile[second]);
+        for (int i = 0; i < length; i++) {
+            if (firstFile.getToken(blockStart[first] + i) != secondFile.getToken(blockStart[second] + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double computeJaccardIndex(final int[] first, final int[] second) {
+        int i = 0;
+        int j = 0;
+        int intersection = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] == second[j]) {
+                intersection++;
+                i++;
+                j++;
+            }
+            else if (first[i] < second[j]) {
+                i++;
+            }
+            else {
+                j++;
+            }
+        }
+        int union = first.length + second.length - intersection;
+        return union == 0 ? 0 : (double)intersection / union;
+    }
+
+    /**
+     * Returns whether the specified blocks are nested in the blocks of an already reported pair.
+     */
+    private boolean isNested(final int first, final int second, final Set<Long> reported) {
+        for (int outerFirst = first; outerFirst >= 0; outerFirst = blockParent[outerFirst]) {
+            for (int outerSecond = second; outerSecond >= 0; outerSecond = blockParent[outerSecond]) {
+                if (reported.contains(createKey(outerFirst, outerSecond))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the key of a pair of blocks, the key does not depend on the order of the blocks.
+     */
+    private Long createKey(final int first, final int second) {
+        return (long)Math.min(first, second) << 32 | Math.max(first, second);
+    }
+}
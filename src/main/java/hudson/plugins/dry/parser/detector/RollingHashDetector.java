@@ -0,0 +1,220 @@
+package hudson.plugins.dry.parser.detector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds duplications using rolling hash values of token windows. For each position of each file the hash value of
+ * the window of the following {@code minimumTokens} tokens is computed in constant time from the hash value of the
+ * previous window. The hash values are stored together with their positions in a single primitive array that is
+ * sorted, so equal windows are adjacent afterwards. Windows with equal hash values are compared token by token,
+ * equal windows are then extended as long as all occurrences have the same next token.
+ * <p>
+ * A duplication is reported only at its first window: if all occurrences of a window are preceded by the same
+ * token, then the window is part of a duplication that starts before.
+ * </p>
+ *
+ * @author Ulli Hafner
+ */
+public class RollingHashDetector implements CloneDetector {
+    private static final long BASE = 1000003L;
+    private static final long POSITION_MASK = 0xFFFFFFFFL;
+    private static final int HASH_SHIFT = 32;
+
+    private List<TokenizedFile> files;
+    private int[] offsets;
+
+    @Override
+    public List<Clone> detect(final List<TokenizedFile> tokenizedFiles, final int minimumTokens) {
+        files = tokenizedFiles;
+        offsets = new int[files.size() + 1];
+        int windows = 0;
+        for (int i = 0; i < files.size(); i++) {
+            offsets[i + 1] = offsets[i] + files.get(i).size();
+            windows += Math.max(0, files.get(i).size() - minimumTokens + 1);
+        }
+
+        long[] entries = new long[windows];
+        int count = 0;
+        for (int i = 0; i < files.size(); i++) {
+            count = addWindows(i, minimumTokens, entries, count);
+        }
+        Arrays.sort(entries);
+
+        List<Clone> clones = new ArrayList<Clone>();
+        int start = 0;
+        while (start < entries.length) {
+            int end = start + 1;
+            while (end < entries.length && entries[end] >>> HASH_SHIFT == entries[start] >>> HASH_SHIFT) {
+                end++;
+            }
+            if (end - start > 1) {
+                findClones(entries, start, end, minimumTokens, clones);
+            }
+            start = end;
+        }
+        return clones;
+    }
+
+    /**
+     * Stores the hash values of all windows of the specified file with the global position of the window.
+     */
+    private int addWindows(final int file, final int length, final long[] entries, final int start) {
+        int[] hashes = computeWindowHashes(files.get(file).getTokens(), length);
+        int count = start;
+        for (int i = 0; i < hashes.length; i++) {
+            entries[count++] = (long)hashes[i] << HASH_SHIFT | offsets[file] + i;
+        }
+        return count;
+    }
+
+    /**
+     * Computes the hash values of all windows of the specified tokens. The hash value of each window is computed in
+     * constant time from the hash value of the previous window.
+     *
+     * @param tokens
+     *            the tokens of a file
+     * @param length
+     *            the number of tokens of a window
+     * @return the hash values of the windows, one value for each start position
+     */
+    static int[] computeWindowHashes(final int[] tokens, final int length) {
+        if (tokens.length < length) {
+            return new int[0];
+        }
+        int[] hashes = new int[tokens.length - length + 1];
+        long power = 1;
+        for (int i = 1; i < length; i++) {
+            power *= BASE;
+        }
+        long hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = hash * BASE + tokens[i];
+        }
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = (int)(hash ^ hash >>> HASH_SHIFT);
+            if (i + length < tokens.length) {
+                hash = (hash - tokens[i] * power) * BASE + tokens[i + length];
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Splits the windows with the same hash value into sets of equal windows and reports each set that starts a
+     * duplication.
+     */
+    private void findClones(final long[] entries, final int start, final int end, final int length,
+            final List<Clone> clones) {
+        boolean[] assigned = new boolean[end - start];
+        for (int i = start; i < end; i++) {
+            if (assigned[i - start]) {
+                continue;
+            }
+            List<Integer> equal = new ArrayList<Integer>();
+            int reference = (int)(entries[i] & POSITION_MASK);
+            equal.add(reference);
+            for (int j = i + 1; j < end; j++) {
+                int position = (int)(entries[j] & POSITION_MASK);
+                if (!assigned[j - start] && isEqual(reference, position, length)) {
+                    assigned[j - start] = true;
+                    equal.add(position);
+                }
+            }
+            if (equal.size() > 1 && !isPrecededByEqualTokens(equal)) {
+                Clone clone = createClone(equal, length);
+                if (clone.size() > 1) {
+                    clones.add(clone);
+                }
+            }
+        }
+    }
+
+    private boolean isEqual(final int first, final int second, final int length) {
+        TokenizedFile firstFile = files.get(getFile(first));
+        TokenizedFile secondFile = files.get(getFile(second));
+        int firstStart = first - offsets[getFile(first)];
+        int secondStart = second - offsets[getFile(second)];
+        for (int i = 0; i < length; i++) {
+            if (firstFile.getToken(firstStart + i) != secondFile.getToken(secondStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isPrecededByEqualTokens(final List<Integer> positions) {
+        int token = -1;
+        for (int position : positions) {
+            int file = getFile(position);
+            int offset = position - offsets[file];
+            if (offset == 0) {
+                return false;
+            }
+            int previous = files.get(file).getToken(offset - 1);
+            if (token == -1) {
+                token = previous;
+            }
+            else if (token != previous) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Extends the equal windows as long as all windows have the same next token and removes windows that overlap
+     * with a previous window of the same file.
+     */
+    private Clone createClone(final List<Integer> positions, final int minimumLength) {
+        int length = minimumLength;
+        while (hasEqualToken(positions, length)) {
+            length++;
+        }
+
+        Clone clone = new Clone();
+        int previousFile = -1;
+        int previousEnd = 0;
+        for (int position : positions) {
+            int file = getFile(position);
+            int offset = position - offsets[file];
+            if (file != previousFile || offset >= previousEnd) {
+                clone.add(file, offset, offset + length);
+                previousFile = file;
+                previousEnd = offset + length;
+            }
+        }
+        return clone;
+    }
+
+    private boolean hasEqualToken(final List<Integer> positions, final int length) {
+        int token = -1;
+        for (int position : positions) {
+            int file = getFile(position);
+            int offset = position - offsets[file] + length;
+            if (offset >= files.get(file).size()) {
+                return false;
+            }
+            int next = files.get(file).getToken(offset);
+            if (token == -1) {
+                token = next;
+            }
+            else if (token != next) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int getFile(final int position) {
+        int index = Arrays.binarySearch(offsets, position);
+        if (index < 0) {
+            return -index - 2;
+        }
+        while (index + 1 < offsets.length && offsets[index + 1] == position) {
+            index++;
+        }
+        return index;
+    }
+}
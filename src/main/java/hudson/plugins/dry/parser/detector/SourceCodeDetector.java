@@ -0,0 +1,646 @@
+package hudson.plugins.dry.parser.detector;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+import hudson.plugins.analysis.util.PackageDetectors;
+import hudson.plugins.analysis.util.model.Priority;
+import hudson.plugins.dry.parser.BatchContextHashCode;
+import hudson.plugins.dry.parser.DuplicateCode;
+import hudson.plugins.dry.parser.DuplicationGroup;
+import hudson.plugins.dry.parser.DuplicationNumbering;
+import hudson.plugins.dry.parser.PriorityThresholds;
+
+/**
+ * Finds duplicate code in source files without an external tool. The source files are tokenized concurrently by a
+ * bounded pool of worker threads, then the duplications are found by a {@link CloneDetector} and converted to
+ * {@link DuplicateCode} warnings. The priority of a duplication is derived from its number of lines, just like for
+ * the duplications of the reports of external tools.
+ *
+ * @author Ulli Hafner
+ */
+public class SourceCodeDetector implements Serializable {
+    private static final long serialVersionUID = 3921864709327405437L;
+
+    private static final Pattern JAVA_PACKAGE = Pattern.compile(
+            "^\\s*package\\s*([a-z]+(\\.[a-zA-Z_][a-zA-Z0-9_]*)*)\\s*.*");
+    private static final Pattern CSHARP_NAMESPACE = Pattern.compile("^\\s*namespace\\s+([^\\s{]+).*");
+
+    /** Default minimum number of tokens of a duplication. */
+    public static final int DEFAULT_MINIMUM_TOKENS = 100;
+
+    private final PriorityThresholds thresholds;
+    private final int minimumTokens;
+    private final String encoding;
+    /** Determines whether the maximal duplications should be found with a suffix array. */
+    private final boolean findMaximalDuplicates;
+    /** Minimum similarity of similar blocks, 0 if similar blocks should not be detected. */
+    private final double similarityThreshold;
+
+    /** Number of tokens of the files tokenized by the last detection. */
+    private transient long numberOfTokens;
+    /** Number of files that have been tokenized by the last detection. */
+    private transient int numberOfChangedFiles;
+    /** Number of files that have been compared by the last detection. */
+    private transient int numberOfAnalyzedFiles;
+
+    /**
+     * Creates a new instance of {@link SourceCodeDetector}.
+     *
+     * @param highThreshold
+     *            minimum number of duplicate lines for high priority warnings
+     * @param normalThreshold
+     *            minimum number of duplicate lines for normal priority warnings
+     * @param minimumTokens
+     *            minimum number of tokens of a duplication
+     * @param encoding
+     *            the encoding of the source files
+     */
+    public SourceCodeDetector(final int highThreshold, final int normalThreshold, final int minimumTokens,
+            final String encoding) {
+        this(highThreshold, normalThreshold, minimumTokens, encoding, false);
+    }
+
+    /**
+     * Creates a new instance of {@link SourceCodeDetector}.
+     *
+     * @param highThreshold
+     *            minimum number of duplicate lines for high priority warnings
+     * @param normalThreshold
+     *            minimum number of duplicate lines for normal priority warnings
+     * @param minimumTokens
+     *            minimum number of tokens of a duplication
+     * @param encoding
+     *            the encoding of the source files
+     * @param findMaximalDuplicates
+     *            determines whether the maximal duplications should be found with a {@link SuffixArrayDetector}
+     *            rather than with a {@link RollingHashDetector}
+     */
+    public SourceCodeDetector(final int highThreshold, final int normalThreshold, final int minimumTokens,
+            final String encoding, final boolean findMaximalDuplicates) {
+        this(highThreshold, normalThreshold, minimumTokens, encoding, findMaximalDuplicates, 0);
+    }
+
+    /**
+     * Creates a new instance of {@link SourceCodeDetector}.
+     *
+     * @param highThreshold
+     *            minimum number of duplicate lines for high priority warnings
+     * @param normalThreshold
+     *            minimum number of duplicate lines for normal priority warnings
+     * @param minimumTokens
+     *            minimum number of tokens of a duplication
+     * @param encoding
+     *            the encoding of the source files
+     * @param findMaximalDuplicates
+     *            determines whether the maximal duplications should be found with a {@link SuffixArrayDetector}
+     *            rather than with a {@link RollingHashDetector}
+     * @param similarityThreshold
+     *            minimum similarity of blocks that are found by the {@link NearMissDetector}, a value between 0 and
+     *            1; 0 disables the detection of similar blocks
+     */
+    public SourceCodeDetector(final int highThreshold, final int normalThreshold, final int minimumTokens,
+            final String encoding, final boolean findMaximalDuplicates, final double similarityThreshold) {
+        thresholds = new PriorityThresholds(highThreshold, normalThreshold);
+        this.minimumTokens = minimumTokens > 0 ? minimumTokens : DEFAULT_MINIMUM_TOKENS;
+        this.encoding = encoding;
+        this.findMaximalDuplicates = findMaximalDuplicates;
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    /**
+     * Finds the duplications in the specified source files.
+     *
+     * @param files
+     *            the source files
+     * @param modules
+     *            the module names of the source files, in the same order as the files
+     * @param numberOfThreads
+     *            the maximum number of files that are tokenized concurrently, 0 uses one thread per available
+     *            processor
+     * @return the duplications
+     * @throws IOException
+     *             if a file could not be read
+     * @throws InterruptedException
+     *             if the detection has been canceled
+     */
+    public Collection<DuplicateCode> detect(final List<File> files, final List<String> modules,
+            final int numberOfThreads) throws IOException, InterruptedException {
+        TokenDictionary dictionary = new TokenDictionary();
+        List<TokenizedFile> tokenizedFiles = tokenize(files, numberOfThreads, dictionary);
+        numberOfTokens = countTokens(tokenizedFiles);
+        numberOfChangedFiles = files.size();
+        numberOfAnalyzedFiles = files.size();
+        List<Clone> clones = new ArrayList<Clone>(createCloneDetector().detect(tokenizedFiles, minimumTokens));
+        if (similarityThreshold > 0) {
+            clones.addAll(new NearMissDetector(dictionary, similarityThreshold).detect(tokenizedFiles,
+                    minimumTokens));
+        }
+
+        return createDuplications(tokenizedFiles, modules, clones);
+    }
+
+    /**
+     * Determines whether the duplications can be found incrementally with a {@link FingerprintIndex}. This is
+     * possible for the exact duplications of the {@link RollingHashDetector} only.
+     *
+     * @return {@code true} if {@link #detect(List, List, int, FingerprintIndex)} uses the index, {@code false} if
+     *         it analyzes all files
+     */
+    public boolean isIncremental() {
+        return !findMaximalDuplicates && similarityThreshold <= 0;
+    }
+
+    /**
+     * Creates the fingerprint index for this detector and loads it from the specified file. An index that has been
+     * created with another minimum number of tokens or another encoding is discarded.
+     *
+     * @param storage
+     *            the file that stores the index
+     * @return the loaded index
+     */
+    public FingerprintIndex loadFingerprintIndex(final File storage) {
+        FingerprintIndex index = new FingerprintIndex(storage, minimumTokens, encoding);
+        index.load();
+        return index;
+    }
+
+    /**
+     * Finds the duplications in the specified source files using the fingerprint index of the previous detection.
+     * Only new and changed files are tokenized. The duplications are searched again in the changed files and in all
+     * files that share a window of tokens with a changed file or that have been part of a duplication with a changed
+     * or deleted file. The duplications of all other files are taken from the index. Afterwards the index contains
+     * the tokens and duplications of the specified files, it needs to be saved by the caller.
+     *
+     * @param files
+     *            the source files
+     * @param modules
+     *            the module names of the source files, in the same order as the files
+     * @param numberOfThreads
+     *            the maximum number of files that are tokenized concurrently, 0 uses one thread per available
+     *            processor
+     * @param index
+     *            the fingerprint index of the previous detection
+     * @return the duplications
+     * @throws IOException
+     *             if a file or the index could not be read
+     * @throws InterruptedException
+     *             if the detection has been canceled
+     */
+    public Collection<DuplicateCode> detect(final List<File> files, final List<String> modules,
+            final int numberOfThreads, final FingerprintIndex index) throws IOException, InterruptedException {
+        if (!isIncremental()) {
+            return detect(files, modules, numberOfThreads);
+        }
+
+        Map<Integer, String> modulesPerFile = new HashMap<Integer, String>();
+        List<File> changedFiles = new ArrayList<File>();
+        List<String> changedModules = new ArrayList<String>();
+        Set<String> fileNames = new HashSet<String>();
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            fileNames.add(file.getAbsolutePath());
+            int number = index.getNumber(file.getAbsolutePath());
+            if (number < 0 || !index.isUnchanged(number, file)) {
+                changedFiles.add(file);
+                changedModules.add(modules.get(i));
+            }
+            else {
+                modulesPerFile.put(number, modules.get(i));
+            }
+        }
+        BitSet affected = new BitSet();
+        for (String fileName : index.getFileNames()) {
+            if (!fileNames.contains(fileName)) {
+                int number = index.getNumber(fileName);
+                affected.set(number);
+                index.remove(number);
+            }
+        }
+
+        List<TokenizedFile> tokenizedFiles = tokenize(changedFiles, numberOfThreads, index.getDictionary());
+        for (int i = 0; i < changedFiles.size(); i++) {
+            TokenizedFile tokenizedFile = tokenizedFiles.get(i);
+            affected.or(index.findFiles(RollingHashDetector.computeWindowHashes(tokenizedFile.getTokens(),
+                    minimumTokens)));
+            int number = index.put(changedFiles.get(i), tokenizedFile);
+            affected.set(number);
+            modulesPerFile.put(number, changedModules.get(i));
+        }
+        List<Clone> keptClones = addPartners(index.getClones(), affected);
+
+        List<Integer> analyzed = new ArrayList<Integer>();
+        List<TokenizedFile> analyzedFiles = new ArrayList<TokenizedFile>();
+        for (int number = affected.nextSetBit(0); number >= 0; number = affected.nextSetBit(number + 1)) {
+            if (modulesPerFile.containsKey(number)) {
+                analyzed.add(number);
+                analyzedFiles.add(index.getTokenizedFile(number));
+            }
+        }
+        List<Clone> clones = new ArrayList<Clone>();
+        List<DuplicateCode> duplications = new ArrayList<DuplicateCode>();
+        List<Clone> readClones = new ArrayList<Clone>();
+        for (Clone clone : keptClones) {
+            List<FingerprintIndex.CodeBlock> codeBlocks = index.getCodeBlocks(clone);
+            if (codeBlocks == null) {
+                readClones.add(clone);
+            }
+            else {
+                clones.add(clone);
+                duplications.addAll(createDuplications(index, modulesPerFile, clone, codeBlocks));
+            }
+        }
+        for (Clone clone : createCloneDetector().detect(analyzedFiles, minimumTokens)) {
+            Clone renumbered = new Clone();
+            for (Clone.Occurrence occurrence : clone.getOccurrences()) {
+                renumbered.add(analyzed.get(occurrence.getFile()), occurrence.getStart(), occurrence.getEnd());
+            }
+            readClones.add(renumbered);
+        }
+        clones.addAll(readClones);
+        duplications.addAll(createDuplications(index, modulesPerFile, readClones));
+        index.setClones(clones, duplications);
+
+        numberOfTokens = countTokens(tokenizedFiles);
+        numberOfChangedFiles = changedFiles.size();
+        numberOfAnalyzedFiles = analyzedFiles.size();
+
+        return duplications;
+    }
+
+    /**
+     * Converts a duplication of unchanged files to linked code blocks. The source code fragments, context hash codes
+     * and package names are taken from the index, so the files are not read again.
+     */
+    private List<DuplicateCode> createDuplications(final FingerprintIndex index,
+            final Map<Integer, String> modulesPerFile, final Clone clone,
+            final List<FingerprintIndex.CodeBlock> codeBlocks) {
+        List<DuplicateCode> blocks = new ArrayList<DuplicateCode>(codeBlocks.size());
+        Priority priority = thresholds.getPriority(codeBlocks.get(0).getNumberOfLines());
+        for (int i = 0; i < codeBlocks.size(); i++) {
+            FingerprintIndex.CodeBlock codeBlock = codeBlocks.get(i);
+            int file = clone.getOccurrences().get(i).getFile();
+            DuplicateCode block = new DuplicateCode(priority, codeBlock.getLine(), codeBlock.getNumberOfLines(),
+                    index.getFileName(file));
+            block.setModuleName(modulesPerFile.get(file));
+            block.setSourceCode(codeBlock.getSourceCode());
+            block.setPackageName(codeBlock.getPackageName());
+            block.setContextHashCode(codeBlock.getContextHashCode());
+            blocks.add(block);
+        }
+        DuplicationGroup.link(blocks, clone.getSimilarity());
+        DuplicationNumbering.assign(blocks);
+        return blocks;
+    }
+
+    /**
+     * Adds all files that have been part of a duplication with an affected file to the affected files, until no
+     * more files are added. The duplications of these files need to be searched again.
+     *
+     * @return the duplications that contain no affected file
+     */
+    private List<Clone> addPartners(final List<Clone> previous, final BitSet affected) {
+        List<Clone> kept = new ArrayList<Clone>(previous);
+        boolean isChanged = true;
+        while (isChanged) {
+            isChanged = false;
+            for (Iterator<Clone> iterator = kept.iterator(); iterator.hasNext();) {
+                Clone clone = iterator.next();
+                if (isAffected(clone, affected)) {
+                    for (Clone.Occurrence occurrence : clone.getOccurrences()) {
+                        affected.set(occurrence.getFile());
+                    }
+                    iterator.remove();
+                    isChanged = true;
+                }
+            }
+        }
+        return kept;
+    }
+
+    private boolean isAffected(final Clone clone, final BitSet affected) {
+        for (Clone.Occurrence occurrence : clone.getOccurrences()) {
+            if (affected.get(occurrence.getFile())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Converts the clones of the index to duplications. The occurrences of the clones reference the numbers of the
+     * files in the index.
+     */
+    private Collection<DuplicateCode> createDuplications(final FingerprintIndex index,
+            final Map<Integer, String> modulesPerFile, final List<Clone> clones) throws IOException {
+        Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+        List<TokenizedFile> files = new ArrayList<TokenizedFile>();
+        List<String> modules = new ArrayList<String>();
+        List<Clone> renumbered = new ArrayList<Clone>(clones.size());
+        for (Clone clone : clones) {
+            Clone copy = new Clone();
+            for (Clone.Occurrence occurrence : clone.getOccurrences()) {
+                Integer position = positions.get(occurrence.getFile());
+                if (position == null) {
+                    position = files.size();
+                    positions.put(occurrence.getFile(), position);
+                    files.add(index.getTokenizedFile(occurrence.getFile()));
+                    modules.add(modulesPerFile.get(occurrence.getFile()));
+                }
+                copy.add(position, occurrence.getStart(), occurrence.getEnd());
+            }
+            renumbered.add(copy);
+        }
+        return createDuplications(files, modules, renumbered);
+    }
+
+    /**
+     * Returns the number of tokens of the files that have been analyzed by the last detection.
+     *
+     * @return the number of tokens
+     */
+    public long getNumberOfTokens() {
+        return numberOfTokens;
+    }
+
+    /**
+     * Returns the number of files that have been tokenized by the last detection.
+     *
+     * @return the number of new and changed files
+     */
+    public int getNumberOfChangedFiles() {
+        return numberOfChangedFiles;
+    }
+
+    /**
+     * Returns the number of files that have been compared by the last detection.
+     *
+     * @return the number of compared files
+     */
+    public int getNumberOfAnalyzedFiles() {
+        return numberOfAnalyzedFiles;
+    }
+
+    private long countTokens(final List<TokenizedFile> files) {
+        long count = 0;
+        for (TokenizedFile file : files) {
+            count += file.size();
+        }
+        return count;
+    }
+
+    /**
+     * Creates the engine that finds the duplications in the tokenized files.
+     *
+     * @return the clone detector
+     */
+    protected CloneDetector createCloneDetector() {
+        if (findMaximalDuplicates) {
+            return new SuffixArrayDetector();
+        }
+        return new RollingHashDetector();
+    }
+
+    /**
+     * Returns the minimum number of tokens of a duplication.
+     *
+     * @return the minimum number of tokens
+     */
+    public int getMinimumTokens() {
+        return minimumTokens;
+    }
+
+    private List<TokenizedFile> tokenize(final List<File> files, final int numberOfThreads,
+            final TokenDictionary dictionary) throws IOException, InterruptedException {
+        int threads = numberOfThreads <= 0 ? Runtime.getRuntime().availableProcessors() : numberOfThreads;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())),
+                new DetectorThreadFactory());
+        try {
+            List<Future<TokenizedFile>> results = new ArrayList<Future<TokenizedFile>>();
+            for (final File file : files) {
+                results.add(executor.submit(new Callable<TokenizedFile>() {
+                    @Override
+                    public TokenizedFile call() throws IOException {
+                        return new Tokenizer(dictionary).tokenize(file.getAbsolutePath(), read(file));
+                    }
+                }));
+            }
+            List<TokenizedFile> tokenizedFiles = new ArrayList<TokenizedFile>(files.size());
+            for (Future<TokenizedFile> result : results) {
+                tokenizedFiles.add(getResult(result));
+            }
+            return tokenizedFiles;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private TokenizedFile getResult(final Future<TokenizedFile> result) throws IOException, InterruptedException {
+        try {
+            return result.get();
+        }
+        catch (ExecutionException exception) {
+            if (exception.getCause() instanceof IOException) {
+                throw (IOException)exception.getCause();
+            }
+            throw new IllegalStateException("Unexpected exception while tokenizing a file", exception.getCause());
+        }
+    }
+
+    private String read(final File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            return IOUtils.toString(input, getCharset().name());
+        }
+        finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    private Charset getCharset() {
+        try {
+            if (StringUtils.isNotBlank(encoding) && Charset.isSupported(encoding)) {
+                return Charset.forName(encoding);
+            }
+        }
+        catch (IllegalArgumentException exception) {
+            // ignore and return the default
+        }
+        return Charset.defaultCharset();
+    }
+
+    /**
+     * Converts the clones to linked duplications. The source code fragment, the context hash code and the package
+     * name of each code block are read from the source file.
+     *
+     * @param files
+     *            the tokenized files
+     * @param modules
+     *            the module names of the files
+     * @param clones
+     *            the clones found in the files
+     * @return the duplications
+     * @throws IOException
+     *             if a file could not be read
+     */
+    protected Collection<DuplicateCode> createDuplications(final List<TokenizedFile> files,
+            final List<String> modules, final List<Clone> clones) throws IOException {
+        Map<Integer, List<DuplicateCode>> blocksPerFile = new TreeMap<Integer, List<DuplicateCode>>();
+        List<List<DuplicateCode>> duplications = new ArrayList<List<DuplicateCode>>(clones.size());
+        for (Clone clone : clones) {
+            List<DuplicateCode> blocks = new ArrayList<DuplicateCode>();
+            Clone.Occurrence first = clone.getOccurrences().get(0);
+            int lines = getNumberOfLines(files.get(first.getFile()), first);
+            for (Clone.Occurrence occurrence : clone.getOccurrences()) {
+                TokenizedFile file = files.get(occurrence.getFile());
+                DuplicateCode block = new DuplicateCode(thresholds.getPriority(lines),
+                        file.getLine(occurrence.getStart()), getNumberOfLines(file, occurrence), file.getFileName());
+                block.setModuleName(modules.get(occurrence.getFile()));
+                blocks.add(block);
+
+                List<DuplicateCode> fileBlocks = blocksPerFile.get(occurrence.getFile());
+                if (fileBlocks == null) {
+                    fileBlocks = new ArrayList<DuplicateCode>();
+                    blocksPerFile.put(occurrence.getFile(), fileBlocks);
+                }
+                fileBlocks.add(block);
+            }
+            duplications.add(blocks);
+        }
+
+        BatchContextHashCode batch = new BatchContextHashCode();
+        for (Map.Entry<Integer, List<DuplicateCode>> entry : blocksPerFile.entrySet()) {
+            String fileName = files.get(entry.getKey()).getFileName();
+            List<String> lines = readLines(fileName);
+            setSourceCode(fileName, lines, entry.getValue());
+            setContextHashCodes(batch, lines, entry.getValue());
+        }
+
+        List<DuplicateCode> result = new ArrayList<DuplicateCode>();
+        for (int i = 0; i < duplications.size(); i++) {
+            List<DuplicateCode> blocks = duplications.get(i);
+            DuplicationGroup.link(blocks, clones.get(i).getSimilarity());
+            DuplicationNumbering.assign(blocks);
+            result.addAll(blocks);
+        }
+        return result;
+    }
+
+    private int getNumberOfLines(final TokenizedFile file, final Clone.Occurrence occurrence) {
+        return file.getLine(occurrence.getEnd() - 1) - file.getLine(occurrence.getStart()) + 1;
+    }
+
+    private List<String> readLines(final String fileName) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName),
+                getCharset()));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+        }
+        finally {
+            IOUtils.closeQuietly(reader);
+        }
+        return lines;
+    }
+
+    private void setSourceCode(final String fileName, final List<String> lines, final List<DuplicateCode> blocks) {
+        String packageName = detectPackageName(fileName, lines);
+        for (DuplicateCode block : blocks) {
+            StringBuilder fragment = new StringBuilder();
+            int end = Math.min(lines.size(), block.getPrimaryLineNumber() + block.getNumberOfLines() - 1);
+            for (int line = block.getPrimaryLineNumber(); line <= end; line++) {
+                fragment.append(lines.get(line - 1)).append('\n');
+            }
+            block.setSourceCode(fragment.toString());
+            block.setPackageName(packageName);
+        }
+    }
+
+    /**
+     * Detects the package of a Java file or the namespace of a C# file in the same way as {@link PackageDetectors},
+     * but from the lines that have been read already.
+     *
+     * @param fileName
+     *            the name of the file
+     * @param lines
+     *            the lines of the file
+     * @return the package name, or {@link PackageDetectors#UNDEFINED_PACKAGE} if there is no package
+     */
+    static String detectPackageName(final String fileName, final List<String> lines) {
+        Pattern pattern;
+        if (fileName.endsWith(".java")) {
+            pattern = JAVA_PACKAGE;
+        }
+        else if (fileName.endsWith(".cs")) {
+            pattern = CSHARP_NAMESPACE;
+        }
+        else {
+            return PackageDetectors.UNDEFINED_PACKAGE;
+        }
+        for (String line : lines) {
+            Matcher matcher = pattern.matcher(line);
+            if (matcher.matches()) {
+                return matcher.group(1);
+            }
+        }
+        return PackageDetectors.UNDEFINED_PACKAGE;
+    }
+
+    private void setContextHashCodes(final BatchContextHashCode batch, final List<String> content,
+            final List<DuplicateCode> blocks) {
+        int[] lines = new int[blocks.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = blocks.get(i).getPrimaryLineNumber();
+        }
+        long[] values = batch.compute(content, lines);
+        for (int i = 0; i < lines.length; i++) {
+            DuplicateCode block = blocks.get(i);
+            block.setContextHashCode(values[i] * 31 + block.getNumberOfLines());
+        }
+    }
+
+    /**
+     * Creates daemon threads for the tokenizer workers.
+     */
+    private static class DetectorThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable, "DRY tokenizer " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package hudson.plugins.dry.parser.detector;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import jenkins.MasterToSlaveFileCallable;
+
+import hudson.FilePath;
+import hudson.plugins.analysis.core.ParserResult;
+import hudson.plugins.analysis.util.FileFinder;
+import hudson.plugins.analysis.util.ModuleDetector;
+import hudson.plugins.analysis.util.NullModuleDetector;
+import hudson.plugins.dry.Messages;
+import hudson.plugins.dry.parser.DuplicateCode;
+import hudson.plugins.dry.parser.DuplicationNumbering;
+import hudson.remoting.VirtualChannel;
+
+/**
+ * Finds the duplicate code in all source files that match a given Ant file-set pattern in the workspace. The
+ * detection runs on the agent that contains the workspace, so the source files are not copied to the master.
+ *
+ * @author Ulli Hafner
+ */
+public class SourceFilesDetector extends MasterToSlaveFileCallable<ParserResult> {
+    private static final long serialVersionUID = -2407215740436561392L;
+
+    private final String filePattern;
+    private final SourceCodeDetector detector;
+    private final boolean shouldDetectModules;
+    private final int numberOfThreads;
+
+    /** Log messages of the detection, sent back to the master with the result. */
+    private transient StringBuilder log;
+
+    /**
+     * Creates a new instance of {@link SourceFilesDetector}.
+     *
+     * @param filePattern
+     *            ant file-set pattern to scan for source files
+     * @param detector
+     *            the detector to apply on the found files
+     * @param shouldDetectModules
+     *            determines whether modules should be detected from pom.xml or build.xml files
+     * @param numberOfThreads
+     *            the maximum number of files that are tokenized concurrently, 0 uses one thread per available
+     *            processor
+     */
+    public SourceFilesDetector(final String filePattern, final SourceCodeDetector detector,
+            final boolean shouldDetectModules, final int numberOfThreads) {
+        this.filePattern = filePattern;
+        this.detector = detector;
+        this.shouldDetectModules = shouldDetectModules;
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    @Override
+    public ParserResult invoke(final File workspace, final VirtualChannel channel) throws IOException,
+            InterruptedException {
+        log = new StringBuilder();
+        ParserResult result = new ParserResult(new FilePath(workspace));
+
+        log("Finding all source files that match the pattern " + filePattern);
+        String[] fileNames = new FileFinder(filePattern).find(workspace);
+        if (fileNames.length == 0) {
+            result.addErrorMessage(Messages.DRY_FilesParser_Error_NoFiles(filePattern));
+        }
+        else {
+            detect(workspace, fileNames, result);
+        }
+
+        result.setLog(log.toString());
+        return result;
+    }
+
+    private void detect(final File workspace, final String[] fileNames, final ParserResult result)
+            throws IOException, InterruptedException {
+        ModuleDetector moduleDetector = createModuleDetector(workspace);
+        List<File> files = new ArrayList<File>(fileNames.length);
+        List<String> modules = new ArrayList<String>(fileNames.length);
+        for (String fileName : fileNames) {
+            File file = new File(fileName);
+            if (!file.isAbsolute()) {
+                file = new File(workspace, fileName);
+            }
+            files.add(file);
+            modules.add(moduleDetector.guessModuleName(file.getAbsolutePath()));
+        }
+
+        long start = System.currentTimeMillis();
+        Collection<DuplicateCode> duplications;
+        if (detector.isIncremental()) {
+            FingerprintIndex index = detector.loadFingerprintIndex(
+                    FingerprintIndex.getStorage(workspace.getAbsolutePath()));
+            duplications = detector.detect(files, modules, numberOfThreads, index);
+            try {
+                index.save();
+            }
+            catch (IOException exception) {
+                log("Can't save the fingerprint index: " + exception.getMessage());
+            }
+        }
+        else {
+            duplications = detector.detect(files, modules, numberOfThreads);
+        }
+        for (DuplicateCode duplication : duplications) {
+            duplication.setPathName(workspace.getAbsolutePath());
+        }
+        DuplicationNumbering.reassign(duplications);
+        result.addAnnotations(duplications);
+        for (String module : modules) {
+            result.addModule(module);
+        }
+        log("Found " + duplications.size() + " duplicate code blocks in " + files.size() + " files in "
+                + (System.currentTimeMillis() - start) + " ms: tokenized " + detector.getNumberOfChangedFiles()
+                + " changed files with " + detector.getNumberOfTokens() + " tokens, compared "
+                + detector.getNumberOfAnalyzedFiles() + " files");
+    }
+
+    private ModuleDetector createModuleDetector(final File workspace) {
+        if (shouldDetectModules) {
+            return new ModuleDetector(workspace);
+        }
+        else {
+            return new NullModuleDetector();
+        }
+    }
+
+    private void log(final String message) {
+        log.append(message).append('\n');
+    }
+}
@@ -0,0 +1,274 @@
+package hudson.plugins.dry.parser.detector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds maximal duplications using a suffix array and the array of the longest common prefixes (LCP) of the
+ * concatenated token streams of all files. Each file is terminated by a unique separator, so no duplication spans
+ * two files. Every LCP interval with a length of at least {@code minimumTokens} is a right maximal repeat; it is
+ * reported if it is left maximal as well, i.e. if not all occurrences are preceded by the same token.
+ * <p>
+ * All arrays are primitive int arrays: the suffix array is built by prefix doubling with counting sort, the LCP
+ * array by Kasai's algorithm. Besides the concatenated tokens four arrays of the same size are required.
+ * </p>
+ *
+ * @author Ulli Hafner
+ */
+public class SuffixArrayDetector implements CloneDetector {
+    /** Marks an interval whose occurrences are preceded by different tokens. */
+    private static final int DIVERSE = -1;
+    /** Marks an interval whose preceding tokens are not known yet. */
+    private static final int UNDEFINED = -2;
+    private static final int INITIAL_STACK_SIZE = 64;
+
+    private int[] offsets;
+    private int[] text;
+    private int firstSeparator;
+
+    @Override
+    public List<Clone> detect(final List<TokenizedFile> files, final int minimumTokens) {
+        int alphabet = concatenate(files);
+        int[] suffixes = createSuffixArray(alphabet);
+        int[] lcp = createLcpArray(suffixes);
+
+        return findMaximalRepeats(suffixes, lcp, Math.max(1, minimumTokens));
+    }
+
+    /**
+     * Concatenates the tokens of all files, each file is followed by a unique separator.
+     *
+     * @return the number of different values in the concatenated text
+     */
+    private int concatenate(final List<TokenizedFile> files) {
+        offsets = new int[files.size() + 1];
+        int maximum = 0;
+        for (int i = 0; i < files.size(); i++) {
+            TokenizedFile file = files.get(i);
+            offsets[i + 1] = offsets[i] + file.size() + 1;
+            for (int token : file.getTokens()) {
+                maximum = Math.max(maximum, token);
+            }
+        }
+        firstSeparator = maximum + 1;
+        text = new int[offsets[files.size()]];
+        for (int i = 0; i < files.size(); i++) {
+            int[] tokens = files.get(i).getTokens();
+            System.arraycopy(tokens, 0, text, offsets[i], tokens.length);
+            text[offsets[i + 1] - 1] = firstSeparator + i;
+        }
+        return firstSeparator + files.size();
+    }
+
+    /**
+     * Sorts the suffixes of the text by prefix doubling: in each round the suffixes are sorted by the rank of their
+     * first {@code h} tokens and the rank of the following {@code h} tokens, using two passes of counting sort.
+     */
+    private int[] createSuffixArray(final int alphabet) {
+        int length = text.length;
+        int[] suffixes = new int[length];
+        int[] rank = new int[length];
+        int[] buffer = new int[length];
+        int[] count = new int[Math.max(alphabet, length) + 1];
+        if (length == 0) {
+            return suffixes;
+        }
+
+        for (int i = 0; i < length; i++) {
+            rank[i] = text[i];
+            buffer[i] = i;
+        }
+        countingSort(buffer, rank, suffixes, count, alphabet);
+        int classes = rerank(suffixes, rank, buffer, 0);
+        int[] swap = rank;
+        rank = buffer;
+        buffer = swap;
+
+        for (int h = 1; classes < length; h <<= 1) {
+            int next = 0;
+            for (int i = Math.max(0, length - h); i < length; i++) {
+                buffer[next++] = i;
+            }
+            for (int i = 0; i < length; i++) {
+                if (suffixes[i] >= h) {
+                    buffer[next++] = suffixes[i] - h;
+                }
+            }
+            countingSort(buffer, rank, suffixes, count, classes);
+            classes = rerank(suffixes, rank, buffer, h);
+            swap = rank;
+            rank = buffer;
+            buffer = swap;
+        }
+        return suffixes;
+    }
+
+    /**
+     * Stably sorts the positions by their rank.
+     */
+    private void countingSort(final int[] positions, final int[] rank, final int[] sorted, final int[] count,
+            final int classes) {
+        Arrays.fill(count, 0, classes + 1, 0);
+        for (int position : positions) {
+            count[rank[position] + 1]++;
+        }
+        for (int i = 1; i <= classes; i++) {
+            count[i] += count[i - 1];
+        }
+        for (int position : positions) {
+            sorted[count[rank[position]]++] = position;
+        }
+    }
+
+    /**
+     * Assigns the new ranks of the sorted suffixes: two suffixes get the same rank if their first and second halves
+     * have the same rank.
+     *
+     * @return the number of different ranks
+     */
+    private int rerank(final int[] suffixes, final int[] rank, final int[] newRank, final int h) {
+        int classes = 1;
+        newRank[suffixes[0]] = 0;
+        for (int i = 1; i < suffixes.length; i++) {
+            int current = suffixes[i];
+            int previous = suffixes[i - 1];
+            if (rank[current] != rank[previous] || getRank(rank, current + h) != getRank(rank, previous + h)) {
+                classes++;
+            }
+            newRank[current] = classes - 1;
+        }
+        return classes;
+    }
+
+    private int getRank(final int[] rank, final int position) {
+        return position < rank.length ? rank[position] : -1;
+    }
+
+    /**
+     * Computes the length of the longest common prefix of each suffix and its predecessor in the suffix array
+     * (Kasai et al.).
+     */
+    private int[] createLcpArray(final int[] suffixes) {
+        int length = suffixes.length;
+        int[] inverse = new int[length];
+        for (int i = 0; i < length; i++) {
+            inverse[suffixes[i]] = i;
+        }
+        int[] lcp = new int[length];
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            if (inverse[i] > 0) {
+                int j = suffixes[inverse[i] - 1];
+                while (i + h < length && j + h < length && text[i + h] == text[j + h]) {
+                    h++;
+                }
+                lcp[inverse[i]] = h;
+                if (h > 0) {
+                    h--;
+                }
+            }
+            else {
+                h = 0;
+            }
+        }
+        return lcp;
+    }
+
+    /**
+     * Enumerates the LCP intervals bottom up with a stack. The token that precedes all occurrences of an interval is
+     * propagated from the children to the parent, so the left maximality of all intervals is computed in linear
+     * time.
+     */
+    private List<Clone> findMaximalRepeats(final int[] suffixes, final int[] lcp, final int minimumTokens) {
+        List<Clone> clones = new ArrayList<Clone>();
+        int[] stackLcp = new int[INITIAL_STACK_SIZE];
+        int[] stackStart = new int[INITIAL_STACK_SIZE];
+        int[] stackLeft = new int[INITIAL_STACK_SIZE];
+        int top = 0;
+        stackLeft[0] = UNDEFINED;
+
+        for (int i = 1; i <= suffixes.length; i++) {
+            int height = i < suffixes.length ? lcp[i] : 0;
+            int start = i - 1;
+            int left = getPrecedingToken(suffixes[i - 1]);
+            while (height < stackLcp[top]) {
+                left = merge(stackLeft[top], left);
+                start = stackStart[top];
+                if (stackLcp[top] >= minimumTokens && left == DIVERSE) {
+                    addClone(suffixes, start, i - 1, stackLcp[top], clones);
+                }
+                top--;
+            }
+            if (height > stackLcp[top]) {
+                top++;
+                if (top == stackLcp.length) {
+                    stackLcp = Arrays.copyOf(stackLcp, top * 2);
+                    stackStart = Arrays.copyOf(stackStart, top * 2);
+                    stackLeft = Arrays.copyOf(stackLeft, top * 2);
+                }
+                stackLcp[top] = height;
+                stackStart[top] = start;
+                stackLeft[top] = left;
+            }
+            else {
+                stackLeft[top] = merge(stackLeft[top], left);
+            }
+        }
+        return clones;
+    }
+
+    private int getPrecedingToken(final int position) {
+        if (position == 0 || text[position - 1] >= firstSeparator) {
+            return DIVERSE;
+        }
+        return text[position - 1];
+    }
+
+    private int merge(final int first, final int second) {
+        if (first == UNDEFINED) {
+            return second;
+        }
+        if (second == UNDEFINED) {
+            return first;
+        }
+        if (first == second) {
+            return first;
+        }
+        return DIVERSE;
+    }
+
+    /**
+     * Creates a clone for the occurrences of the specified interval of the suffix array. Occurrences that overlap
+     * with a previous occurrence in the same file are skipped.
+     */
+    private void addClone(final int[] suffixes, final int start, final int end, final int length,
+            final List<Clone> clones) {
+        int[] positions = Arrays.copyOfRange(suffixes, start, end + 1);
+        Arrays.sort(positions);
+
+        Clone clone = new Clone();
+        int previousFile = -1;
+        int previousEnd = 0;
+        for (int position : positions) {
+            int file = getFile(position);
+            int offset = position - offsets[file];
+            if (file != previousFile || offset >= previousEnd) {
+                clone.add(file, offset, offset + length);
+                previousFile = file;
+                previousEnd = offset + length;
+            }
+        }
+        if (clone.size() > 1) {
+            clones.add(clone);
+        }
+    }
+
+    private int getFile(final int position) {
+        int index = Arrays.binarySearch(offsets, position);
+        if (index < 0) {
+            return -index - 2;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,78 @@
+package hudson.plugins.dry.parser.detector;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps the text of tokens to consecutive numbers, so that token streams can be stored and compared as primitive
+ * int arrays. The dictionary is thread safe, so several files can be tokenized concurrently.
+ *
+ * @author Ulli Hafner
+ */
+public class TokenDictionary {
+    /** Number of the first token, 0 is never used. */
+    static final int FIRST_TOKEN = 1;
+
+    private final ConcurrentMap<String, Integer> tokens = new ConcurrentHashMap<String, Integer>();
+    private final AtomicInteger next;
+
+    /**
+     * Creates a new and empty instance of {@link TokenDictionary}.
+     */
+    public TokenDictionary() {
+        next = new AtomicInteger(FIRST_TOKEN);
+    }
+
+    /**
+     * Creates a new instance of {@link TokenDictionary} that contains the specified tokens.
+     *
+     * @param tokens
+     *            the numbers of the tokens
+     * @param limit
+     *            the upper bound of the token numbers, see {@link #getLimit()}
+     */
+    TokenDictionary(final Map<String, Integer> tokens, final int limit) {
+        this.tokens.putAll(tokens);
+        next = new AtomicInteger(limit);
+    }
+
+    /**
+     * Returns the number of the specified token. If the token is not part of the dictionary yet, then the next free
+     * number is assigned.
+     *
+     * @param token
+     *            the text of the token
+     * @return the number of the token
+     */
+    public int getId(final String token) {
+        Integer id = tokens.get(token);
+        if (id == null) {
+            Integer created = next.getAndIncrement();
+            id = tokens.putIfAbsent(token, created);
+            if (id == null) {
+                id = created;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Returns an upper bound of the token numbers: all assigned numbers are less than this value.
+     *
+     * @return the upper bound of the token numbers
+     */
+    public int getLimit() {
+        return next.get();
+    }
+
+    /**
+     * Returns all tokens of this dictionary with their numbers.
+     *
+     * @return the numbers of the tokens
+     */
+    Map<String, Integer> getTokens() {
+        return tokens;
+    }
+}
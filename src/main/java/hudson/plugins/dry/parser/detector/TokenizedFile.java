@@ -0,0 +1,102 @@
+package hudson.plugins.dry.parser.detector;
+
+/**
+ * The token stream of a source file. For each token the number of the token in the {@link TokenDictionary}, the
+ * line of the token, and the kind of the token are stored in primitive arrays.
+ *
+ * @author Ulli Hafner
+ */
+public class TokenizedFile {
+    /** Kind of keywords and other reserved words. */
+    public static final byte KEYWORD = 0;
+    /** Kind of identifiers. */
+    public static final byte IDENTIFIER = 1;
+    /** Kind of string, character and number literals. */
+    public static final byte LITERAL = 2;
+    /** Kind of operators and separators. */
+    public static final byte OPERATOR = 3;
+
+    private final String fileName;
+    private final int[] tokens;
+    private final int[] lines;
+    private final byte[] kinds;
+
+    /**
+     * Creates a new instance of {@link TokenizedFile}.
+     *
+     * @param fileName
+     *            the absolute name of the file
+     * @param tokens
+     *            the numbers of the tokens
+     * @param lines
+     *            the lines of the tokens
+     * @param kinds
+     *            the kinds of the tokens
+     */
+    public TokenizedFile(final String fileName, final int[] tokens, final int[] lines, final byte[] kinds) {
+        this.fileName = fileName;
+        this.tokens = tokens;
+        this.lines = lines;
+        this.kinds = kinds;
+    }
+
+    /**
+     * Returns the absolute name of the file.
+     *
+     * @return the file name
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Returns the number of tokens of the file.
+     *
+     * @return the number of tokens
+     */
+    public int size() {
+        return tokens.length;
+    }
+
+    /**
+     * Returns the number of the token at the specified position.
+     *
+     * @param index
+     *            the position of the token
+     * @return the number of the token in the dictionary
+     */
+    public int getToken(final int index) {
+        return tokens[index];
+    }
+
+    /**
+     * Returns the line of the token at the specified position.
+     *
+     * @param index
+     *            the position of the token
+     * @return the line of the token
+     */
+    public int getLine(final int index) {
+        return lines[index];
+    }
+
+    /**
+     * Returns the kind of the token at the specified position.
+     *
+     * @param index
+     *            the position of the token
+     * @return the kind of the token
+     */
+    public byte getKind(final int index) {
+        return kinds[index];
+    }
+
+    /**
+     * Returns the numbers of all tokens. The array is not copied.
+     *
+     * @return the numbers of the tokens
+     */
+    int[] getTokens() {
+        return tokens;
+    }
+}
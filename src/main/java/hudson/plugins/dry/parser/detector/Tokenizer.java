@@ -0,0 +1,198 @@
+package hudson.plugins.dry.parser.detector;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Splits the source code of languages with a C like syntax (Java, C#, C, C++, JavaScript, Groovy, etc.) into tokens.
+ * White space and comments are skipped, as well as import and package statements. Each token is stored by its number
+ * in a {@link TokenDictionary}.
+ *
+ * @author Ulli Hafner
+ */
+public class Tokenizer {
+    private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList(
+            "abstract", "as", "assert", "async", "auto", "await", "base", "bool", "boolean", "break", "byte", "case",
+            "catch", "char", "checked", "class", "const", "continue", "decimal", "def", "default", "delegate",
+            "delete", "do", "double", "else", "enum", "event", "explicit", "export", "extends", "extern", "false",
+            "final", "finally", "fixed", "float", "for", "foreach", "function", "goto", "if", "implements",
+            "implicit", "in", "inline", "instanceof", "int", "interface", "internal", "is", "let", "lock", "long",
+            "namespace", "native", "new", "null", "object", "operator", "out", "override", "params", "private",
+            "protected", "public", "readonly", "ref", "register", "return", "sbyte", "sealed", "short", "signed",
+            "sizeof", "static", "strictfp", "string", "struct", "super", "switch", "synchronized", "template",
+            "this", "throw", "throws", "transient", "true", "try", "typedef", "typeof", "uint", "ulong", "union",
+            "unsigned", "ushort", "using", "var", "virtual", "void", "volatile", "while", "yield"));
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final TokenDictionary dictionary;
+    private final int semicolon;
+    private final int closingBrace;
+
+    private int[] tokens;
+    private int[] lines;
+    private byte[] kinds;
+    private int size;
+
+    /**
+     * Creates a new instance of {@link Tokenizer}.
+     *
+     * @param dictionary
+     *            the dictionary of the tokens
+     */
+    public Tokenizer(final TokenDictionary dictionary) {
+        this.dictionary = dictionary;
+
+        semicolon = dictionary.getId(";");
+        closingBrace = dictionary.getId("}");
+    }
+
+    /**
+     * Splits the specified source code into tokens.
+     *
+     * @param fileName
+     *            the absolute name of the file
+     * @param content
+     *            the content of the file
+     * @return the tokens of the file
+     */
+    public TokenizedFile tokenize(final String fileName, final CharSequence content) {
+        tokens = new int[INITIAL_CAPACITY];
+        lines = new int[INITIAL_CAPACITY];
+        kinds = new byte[INITIAL_CAPACITY];
+        size = 0;
+
+        int line = 1;
+        int length = content.length();
+        int statementStart = -1;
+        int position = 0;
+        while (position < length) {
+            char c = content.charAt(position);
+            if (c == '\n' || c == '\r') {
+                if (c == '\r' && position + 1 < length && content.charAt(position + 1) == '\n') {
+                    position++;
+                }
+                line++;
+                position++;
+            }
+            else if (Character.isWhitespace(c)) {
+                position++;
+            }
+            else if (c == '/' && position + 1 < length && content.charAt(position + 1) == '/') {
+                position = skipLine(content, position);
+            }
+            else if (c == '/' && position + 1 < length && content.charAt(position + 1) == '*') {
+                int end = skipComment(content, position + 2);
+                line += countLines(content, position, end);
+                position = end;
+            }
+            else if (Character.isJavaIdentifierStart(c)) {
+                int end = position + 1;
+                while (end < length && Character.isJavaIdentifierPart(content.charAt(end))) {
+                    end++;
+                }
+                String word = content.subSequence(position, end).toString();
+                if (statementStart < 0 && isStartOfStatement() && ("import".equals(word) || "package".equals(word))) {
+                    statementStart = size;
+                }
+                add(word, KEYWORDS.contains(word) ? TokenizedFile.KEYWORD : TokenizedFile.IDENTIFIER, line);
+                position = end;
+            }
+            else if (Character.isDigit(c)) {
+                int end = position + 1;
+                while (end < length && isNumberPart(content.charAt(end))) {
+                    end++;
+                }
+                add(content.subSequence(position, end).toString(), TokenizedFile.LITERAL, line);
+                position = end;
+            }
+            else if (c == '"' || c == '\'') {
+                int end = skipLiteral(content, position, c);
+                add(content.subSequence(position, end).toString(), TokenizedFile.LITERAL, line);
+                position = end;
+            }
+            else {
+                add(String.valueOf(c), TokenizedFile.OPERATOR, line);
+                position++;
+                if (c == ';' && statementStart >= 0) {
+                    size = statementStart;
+                    statementStart = -1;
+                }
+            }
+        }
+        return new TokenizedFile(fileName, Arrays.copyOf(tokens, size), Arrays.copyOf(lines, size),
+                Arrays.copyOf(kinds, size));
+    }
+
+    private boolean isStartOfStatement() {
+        if (size == 0) {
+            return true;
+        }
+        return tokens[size - 1] == semicolon || tokens[size - 1] == closingBrace;
+    }
+
+    private boolean isNumberPart(final char c) {
+        return Character.isLetterOrDigit(c) || c == '.' || c == '_';
+    }
+
+    private int skipLine(final CharSequence content, final int start) {
+        int position = start;
+        while (position < content.length() && content.charAt(position) != '\n' && content.charAt(position) != '\r') {
+            position++;
+        }
+        return position;
+    }
+
+    private int skipComment(final CharSequence content, final int start) {
+        for (int position = start; position + 1 < content.length(); position++) {
+            if (content.charAt(position) == '*' && content.charAt(position + 1) == '/') {
+                return position + 2;
+            }
+        }
+        return content.length();
+    }
+
+    private int skipLiteral(final CharSequence content, final int start, final char quote) {
+        int position = start + 1;
+        while (position < content.length()) {
+            char c = content.charAt(position);
+            if (c == '\\') {
+                position += 2;
+            }
+            else if (c == quote) {
+                return position + 1;
+            }
+            else if (c == '\n' || c == '\r') {
+                return position;
+            }
+            else {
+                position++;
+            }
+        }
+        return content.length();
+    }
+
+    private int countLines(final CharSequence content, final int start, final int end) {
+        int count = 0;
+        for (int position = start; position < end; position++) {
+            char c = content.charAt(position);
+            if (c == '\n' || c == '\r' && (position + 1 >= end || content.charAt(position + 1) != '\n')) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void add(final String token, final byte kind, final int line) {
+        if (size == tokens.length) {
+            int capacity = size * 2;
+            tokens = Arrays.copyOf(tokens, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+        }
+        tokens[size] = dictionary.getId(token);
+        lines[size] = line;
+        kinds[size] = kind;
+        size++;
+    }
+}
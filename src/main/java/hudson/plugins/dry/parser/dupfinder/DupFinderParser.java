@@ -1,23 +1,33 @@
 package hudson.plugins.dry.parser.dupfinder;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.Random;
 
-import hudson.plugins.analysis.util.PackageDetectors;
-import hudson.plugins.analysis.util.SecureDigester;
-import hudson.plugins.dry.parser.AbstractDigesterParser;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang.StringUtils;
+
+import hudson.plugins.dry.parser.AbstractStaxParser;
 import hudson.plugins.dry.parser.DuplicateCode;
 
 /**
- * A parser for Reshaper Dupfinder XML files.
+ * A parser for Reshaper Dupfinder XML files. The file is read using a StAX parser so that only the current
+ * duplication is kept in memory. Since the source code text of the fragments might be huge, the parser can be
+ * configured to skip or truncate the text.
  *
  * @author Rafal Jasica
  */
-public class DupFinderParser extends AbstractDigesterParser<Duplicate> {
+public class DupFinderParser extends AbstractStaxParser {
     /** Unique ID of this class. */
     private static final long serialVersionUID = 1357147358617711901L;
+    /** Indicates that the source code text of the fragments is read completely. */
+    public static final int ALL_TEXT = -1;
+    /** Indicates that the source code text of the fragments is skipped. */
+    public static final int NO_TEXT = 0;
+
+    private final int maximumTextLength;
 
     /**
      * Creates a new instance of {@link DupFinderParser}.
@@ -28,71 +38,153 @@ public class DupFinderParser extends AbstractDigesterParser<Duplicate> {
      *            minimum number of duplicate lines for normal priority warnings
      */
     public DupFinderParser(final int highThreshold, final int normalThreshold) {
+        this(highThreshold, normalThreshold, ALL_TEXT);
+    }
+
+    /**
+     * Creates a new instance of {@link DupFinderParser}.
+     *
+     * @param highThreshold
+     *            minimum number of duplicate lines for high priority warnings
+     * @param normalThreshold
+     *            minimum number of duplicate lines for normal priority warnings
+     * @param maximumTextLength
+     *            maximum number of characters of the source code text that will be stored for each fragment: use
+     *            {@link #ALL_TEXT} to store the complete text, {@link #NO_TEXT} to skip the text
+     */
+    public DupFinderParser(final int highThreshold, final int normalThreshold, final int maximumTextLength) {
         super(highThreshold, normalThreshold);
+        this.maximumTextLength = maximumTextLength;
     }
 
     @Override
-    protected String getMatchingPattern() {
-        return "*/DuplicatesReport";
+    protected String getRootElement() {
+        return "DuplicatesReport";
     }
 
     @Override
-    protected void configureParser(final SecureDigester digester) {
-        String duplicationXPath = "*/DuplicatesReport/Duplicates/Duplicate";
-        digester.addObjectCreate(duplicationXPath, Duplicate.class);
-        digester.addSetProperties(duplicationXPath, "Cost", "cost");
-        digester.addSetNext(duplicationXPath, "add");
-
-        String fragmentXPath = duplicationXPath + "/Fragment";
-        digester.addObjectCreate(fragmentXPath, Fragment.class);
-        digester.addBeanPropertySetter(fragmentXPath + "/FileName", "fileName");
-        digester.addBeanPropertySetter(fragmentXPath + "/Text", "text");
-        digester.addSetNext(fragmentXPath, "addFragment", Fragment.class.getName());
-
-        String lineRangeXPath = fragmentXPath + "/LineRange";
-        digester.addObjectCreate(lineRangeXPath, Range.class);
-        digester.addSetProperties(lineRangeXPath, "Start", "start");
-        digester.addSetProperties(lineRangeXPath, "End", "end");
-        digester.addSetNext(lineRangeXPath, "setLineRange", Range.class.getName());
-
-        String offsetRangeXPath = fragmentXPath + "/OffsetRange";
-        digester.addObjectCreate(offsetRangeXPath, Range.class);
-        digester.addSetProperties(offsetRangeXPath, "Start", "start");
-        digester.addSetProperties(offsetRangeXPath, "End", "end");
-        digester.addSetNext(offsetRangeXPath, "setOffsetRange", Range.class.getName());
+    protected String getDuplicationElement() {
+        return "Duplicate";
     }
 
     @Override
-    protected Collection<DuplicateCode> convertWarnings(final List<Duplicate> duplications, final String moduleName) {
-        List<DuplicateCode> annotations = new ArrayList<DuplicateCode>();
-
-        Random random = new Random();
-        int number = random.nextInt();
-        for (Duplicate duplication : duplications) {
-            List<DuplicateCode> codeBlocks = new ArrayList<DuplicateCode>();
-            Collection<Fragment> fragments = duplication.getFragments();
-            for (Fragment fragment : fragments) {
-                Range lineRange = fragment.getLineRange();
-                int count = lineRange.getEnd() - lineRange.getStart() + 1;
-                DuplicateCode annotation = new DuplicateCode(getPriority(count), lineRange.getStart(), count,
-                        fragment.getFileName());
-                String text = fragment.getText();
-                if (text != null) {
-                    annotation.setSourceCode(text);
-                }
-                annotation.setModuleName(moduleName);
-                codeBlocks.add(annotation);
+    protected List<DuplicateCode> readDuplication(final XMLStreamReader reader, final String moduleName)
+            throws XMLStreamException {
+        Duplicate duplication = new Duplicate();
+        while (nextChildElement(reader)) {
+            if ("Fragment".equals(reader.getLocalName())) {
+                duplication.addFragment(readFragment(reader));
+            }
+            else {
+                skipElement(reader);
+            }
+        }
+        return convertWarnings(duplication, moduleName);
+    }
+
+    private Fragment readFragment(final XMLStreamReader reader) throws XMLStreamException {
+        Fragment fragment = new Fragment();
+        while (nextChildElement(reader)) {
+            String name = reader.getLocalName();
+            if ("FileName".equals(name)) {
+                fragment.setFileName(reader.getElementText().trim());
+            }
+            else if ("LineRange".equals(name)) {
+                fragment.setLineRange(readRange(reader));
+            }
+            else if ("OffsetRange".equals(name)) {
+                fragment.setOffsetRange(readRange(reader));
+            }
+            else if ("Text".equals(name)) {
+                fragment.setText(readText(reader));
+            }
+            else {
+                skipElement(reader);
+            }
+        }
+        return fragment;
+    }
+
+    private Range readRange(final XMLStreamReader reader) throws XMLStreamException {
+        Range range = new Range();
+        range.setStart(getIntAttribute(reader, "Start"));
+        range.setEnd(getIntAttribute(reader, "End"));
+        skipElement(reader);
+        return range;
+    }
+
+    /**
+     * Reads the source code text of a fragment. Only the first characters of the text are copied, the remaining
+     * characters are skipped without creating a string of the whole text.
+     *
+     * @param reader
+     *            the reader, positioned at the start of the text element
+     * @return the trimmed text, might be {@code null} if the text should be skipped
+     * @throws XMLStreamException
+     *             if the text could not be read
+     */
+    private String readText(final XMLStreamReader reader) throws XMLStreamException {
+        if (maximumTextLength == NO_TEXT) {
+            skipElement(reader);
+            return null;
+        }
+
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
             }
-            for (DuplicateCode block : codeBlocks) {
-                block.linkTo(codeBlocks);
-                block.setNumber(number);
-                String packageName = PackageDetectors.detectPackageName(block.getFileName());
-                block.setPackageName(packageName);
+            else if (isText(event) && hasCapacity(text)) {
+                append(reader, text);
             }
-            annotations.addAll(codeBlocks);
-            number++;
         }
+        return StringUtils.stripEnd(text.toString(), null);
+    }
 
-        return annotations;
+    private boolean isText(final int event) {
+        return event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                || event == XMLStreamConstants.SPACE;
+    }
+
+    private boolean hasCapacity(final StringBuilder text) {
+        return maximumTextLength == ALL_TEXT || text.length() < maximumTextLength;
+    }
+
+    private void append(final XMLStreamReader reader, final StringBuilder text) {
+        char[] characters = reader.getTextCharacters();
+        int start = reader.getTextStart();
+        int end = start + reader.getTextLength();
+        if (text.length() == 0) { // skip leading white space
+            while (start < end && Character.isWhitespace(characters[start])) {
+                start++;
+            }
+        }
+        int length = end - start;
+        if (maximumTextLength != ALL_TEXT) {
+            length = Math.min(length, maximumTextLength - text.length());
+        }
+        text.append(characters, start, length);
+    }
+
+    private List<DuplicateCode> convertWarnings(final Duplicate duplication, final String moduleName) {
+        List<DuplicateCode> codeBlocks = new ArrayList<DuplicateCode>();
+        for (Fragment fragment : duplication.getFragments()) {
+            Range lineRange = fragment.getLineRange();
+            int count = lineRange.getEnd() - lineRange.getStart() + 1;
+            DuplicateCode annotation = new DuplicateCode(getPriority(count), lineRange.getStart(), count,
+                    fragment.getFileName());
+            String text = fragment.getText();
+            if (StringUtils.isNotEmpty(text)) {
+                annotation.setSourceCode(text);
+            }
+            annotation.setModuleName(moduleName);
+            codeBlocks.add(annotation);
+        }
+        return codeBlocks;
     }
 }
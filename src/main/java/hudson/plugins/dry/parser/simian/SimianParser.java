@@ -1,21 +1,22 @@
 package hudson.plugins.dry.parser.simian;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.Random;
 
-import hudson.plugins.analysis.util.PackageDetectors;
-import hudson.plugins.analysis.util.SecureDigester;
-import hudson.plugins.dry.parser.AbstractDigesterParser;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import hudson.plugins.dry.parser.AbstractStaxParser;
 import hudson.plugins.dry.parser.DuplicateCode;
 
 /**
- * A parser for Simian XML files.
+ * A parser for Simian XML files. The file is read using a StAX parser: each set is converted into duplicate code
+ * warnings as soon as it has been read, so the sets and blocks of the whole report are never held in
+ * memory at the same time.
  *
  * @author Ulli Hafner
  */
-public class SimianParser extends AbstractDigesterParser<Set> {
+public class SimianParser extends AbstractStaxParser {
     /** Unique ID of this class. */
     private static final long serialVersionUID = 6507147028628714706L;
 
@@ -32,45 +33,31 @@ public class SimianParser extends AbstractDigesterParser<Set> {
     }
 
     @Override
-    protected String getMatchingPattern() {
-        return "*/simian";
+    protected String getRootElement() {
+        return "simian";
     }
 
     @Override
-    protected void configureParser(final SecureDigester digester) {
-        String duplicationXPath = "*/simian/check/set";
-        digester.addObjectCreate(duplicationXPath, Set.class);
-        digester.addSetProperties(duplicationXPath);
-        digester.addSetNext(duplicationXPath, "add");
-
-        String fileXPath = duplicationXPath + "/block";
-        digester.addObjectCreate(fileXPath, Block.class);
-        digester.addSetProperties(fileXPath);
-        digester.addSetNext(fileXPath, "addBlock", Block.class.getName());
+    protected String getDuplicationElement() {
+        return "set";
     }
 
     @Override
-    protected Collection<DuplicateCode> convertWarnings(final List<Set> duplications, final String moduleName) {
-        List<DuplicateCode> annotations = new ArrayList<DuplicateCode>();
-
-        Random random = new Random();
-        int number = random.nextInt();
-        for (Set duplication : duplications) {
-            List<DuplicateCode> codeBlocks = new ArrayList<DuplicateCode>();
-            for (Block file : duplication.getBlocks()) {
-                DuplicateCode annotation = new DuplicateCode(getPriority(duplication.getLineCount()), file.getStartLineNumber(), duplication.getLineCount(), file.getSourceFile());
+    protected List<DuplicateCode> readDuplication(final XMLStreamReader reader, final String moduleName)
+            throws XMLStreamException {
+        int lineCount = getIntAttribute(reader, "lineCount");
+
+        List<DuplicateCode> codeBlocks = new ArrayList<DuplicateCode>();
+        while (nextChildElement(reader)) {
+            if ("block".equals(reader.getLocalName())) {
+                DuplicateCode annotation = new DuplicateCode(getPriority(lineCount),
+                        getIntAttribute(reader, "startLineNumber"), lineCount,
+                        reader.getAttributeValue(null, "sourceFile"));
                 annotation.setModuleName(moduleName);
                 codeBlocks.add(annotation);
             }
-            for (DuplicateCode block : codeBlocks) {
-                block.linkTo(codeBlocks);
-                block.setNumber(number);
-                String packageName = PackageDetectors.detectPackageName(block.getFileName());
-                block.setPackageName(packageName);
-            }
-            annotations.addAll(codeBlocks);
-            number++;
+            skipElement(reader);
         }
-        return annotations;
+        return codeBlocks;
     }
 }
@@ -0,0 +1,123 @@
+/*
+ * Loads the duplications of the DRY warnings table page by page.
+ */
+var dryDuplications = (function () {
+    var table, position, url, pageSize;
+    var start = 0, total = 0, sort = "file", order = "asc";
+
+    function createCell(row) {
+        var cell = document.createElement("td");
+        cell.className = "pane";
+        row.appendChild(cell);
+        return cell;
+    }
+
+    function createLink(block, href) {
+        var text = document.createTextNode(block.file + ":" + block.line);
+        if (!block.source) {
+            return text;
+        }
+        var link = document.createElement("a");
+        link.href = href + "/#" + block.line;
+        link.appendChild(text);
+        return link;
+    }
+
+    function wrap(element, tooltip) {
+        if (tooltip === null) {
+            return element;
+        }
+        var div = document.createElement("div");
+        div.setAttribute("tooltip", tooltip);
+        div.setAttribute("nodismiss", "");
+        div.appendChild(element);
+        return div;
+    }
+
+    function render(page) {
+        total = page.total;
+        start = page.start;
+        while (table.firstChild) {
+            table.removeChild(table.firstChild);
+        }
+        for (var i = 0; i < page.rows.length; i++) {
+            var duplication = page.rows[i];
+            var row = document.createElement("tr");
+            createCell(row).appendChild(wrap(createLink(duplication, "source." + duplication.key),
+                    duplication.tooltip));
+            createCell(row).appendChild(document.createTextNode(duplication.lines));
+            var links = createCell(row);
+            for (var j = 0; j < duplication.links.length; j++) {
+                var block = duplication.links[j];
+                if (j > 0 && duplication.tooltip === null) {
+                    links.appendChild(document.createElement("br"));
+                }
+                links.appendChild(wrap(createLink(block, "link." + duplication.key + "." + block.key),
+                        duplication.tooltip));
+            }
+            table.appendChild(row);
+        }
+        position.innerHTML = "";
+        position.appendChild(document.createTextNode(position.getAttribute("data-format")
+                .replace("{0}", total === 0 ? 0 : start + 1)
+                .replace("{1}", Math.min(start + pageSize, total))
+                .replace("{2}", total)));
+        Behaviour.applySubtree(table, true);
+    }
+
+    function load() {
+        new Ajax.Request(url + "?start=" + start + "&length=" + pageSize + "&sort=" + sort + "&order=" + order, {
+            method: "get",
+            onSuccess: function (response) {
+                render(response.responseText.evalJSON());
+            }
+        });
+    }
+
+    function onSort(event) {
+        var key = this.getAttribute("data-sort");
+        if (sort === key) {
+            order = order === "asc" ? "desc" : "asc";
+        }
+        else {
+            sort = key;
+            order = "asc";
+        }
+        start = 0;
+        load();
+        Event.stop(event);
+    }
+
+    function onPage(event) {
+        if (this.getAttribute("data-page") === "next") {
+            if (start + pageSize < total) {
+                start += pageSize;
+                load();
+            }
+        }
+        else if (start > 0) {
+            start = Math.max(0, start - pageSize);
+            load();
+        }
+        Event.stop(event);
+    }
+
+    return {
+        init: function () {
+            table = document.getElementById("dry-duplications");
+            position = document.getElementById("dry-position");
+            url = table.getAttribute("data-url");
+            pageSize = parseInt(table.getAttribute("data-page-size"), 10);
+
+            var sortLinks = document.getElementById("warnings").getElementsByTagName("a");
+            for (var i = 0; i < sortLinks.length; i++) {
+                Event.observe(sortLinks[i], "click", onSort);
+            }
+            var pageLinks = document.getElementById("dry-pager").getElementsByTagName("a");
+            for (var j = 0; j < pageLinks.length; j++) {
+                Event.observe(pageLinks[j], "click", onPage);
+            }
+            load();
+        }
+    };
+})();
@@ -0,0 +1,150 @@
+package hudson.plugins.dry;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import hudson.matrix.MatrixBuild;
+import hudson.matrix.MatrixRun;
+import hudson.model.Action;
+import hudson.plugins.analysis.core.HealthDescriptor;
+import hudson.plugins.analysis.core.ParserResult;
+import hudson.plugins.analysis.util.model.JavaProject;
+import hudson.plugins.analysis.util.model.Priority;
+import hudson.plugins.dry.parser.DuplicateCode;
+import hudson.plugins.dry.parser.DuplicationGroup;
+
+/**
+ * Tests the class {@link DryAnnotationsAggregator}.
+ *
+ * @author Ulli Hafner
+ */
+public class DryAnnotationsAggregatorTest {
+    private static final String FIRST_AXIS = "/var/jenkins/workspace/job/jdk/7/";
+    private static final String SECOND_AXIS = "/home/agent/workspace/job/jdk/8/";
+    private static final String FRAGMENT = "int a = 1;\n";
+
+    /**
+     * Verifies that the results of the runs are aggregated sequentially by default and that duplications that are
+     * reported by several runs are added only once.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldAggregateSequentiallyByDefault() throws Exception {
+        verifyAggregation(0);
+        verifyAggregation(1);
+    }
+
+    /**
+     * Verifies that the results of the runs that are loaded concurrently are merged like the sequential results.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldAggregateConcurrently() throws Exception {
+        verifyAggregation(2);
+        verifyAggregation(4);
+    }
+
+    private void verifyAggregation(final int numberOfThreads) throws IOException, InterruptedException {
+        MatrixRun first = mock(MatrixRun.class);
+        MatrixRun second = mock(MatrixRun.class);
+        MatrixRun empty = mock(MatrixRun.class);
+
+        TestAggregator aggregator = new TestAggregator(numberOfThreads);
+        aggregator.add(first, createDuplication(FIRST_AXIS, "a.java", "b.java", FRAGMENT),
+                createDuplication(FIRST_AXIS, "c.java", "d.java", FRAGMENT));
+        aggregator.add(second, createDuplication(SECOND_AXIS, "a.java", "b.java", FRAGMENT),
+                createDuplication(SECOND_AXIS, "e.java", "f.java", FRAGMENT));
+
+        aggregator.endRun(first);
+        aggregator.endRun(empty);
+        aggregator.endRun(second);
+        assertEquals("Wrong number of runs aggregated while the runs finish", numberOfThreads > 1 ? 0 : 6,
+                aggregator.getTotals().getNumberOfAnnotations());
+
+        aggregator.endBuild();
+        assertEquals("Wrong number of aggregated warnings", 6, aggregator.getTotals().getNumberOfAnnotations());
+    }
+
+    /**
+     * Verifies that duplications of different runs with the same locations but different source code fragments are
+     * both added.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldKeepDuplicationsWithDifferentFragments() throws Exception {
+        MatrixRun first = mock(MatrixRun.class);
+        MatrixRun second = mock(MatrixRun.class);
+
+        TestAggregator aggregator = new TestAggregator(1);
+        aggregator.add(first, createDuplication(FIRST_AXIS, "a.java", "b.java", FRAGMENT),
+                createDuplication(FIRST_AXIS, "c.java", "d.java", FRAGMENT));
+        aggregator.add(second, createDuplication(SECOND_AXIS, "a.java", "b.java", "int b = 2;\n"),
+                createDuplication(SECOND_AXIS, "c.java", "d.java", FRAGMENT));
+
+        aggregator.endRun(first);
+        aggregator.endRun(second);
+        aggregator.endBuild();
+        assertEquals("Wrong number of aggregated warnings", 6, aggregator.getTotals().getNumberOfAnnotations());
+    }
+
+    private List<DuplicateCode> createDuplication(final String workspace, final String firstFile,
+            final String secondFile, final String fragment) {
+        List<DuplicateCode> blocks = Arrays.asList(new DuplicateCode(Priority.NORMAL, 1, 10, workspace + firstFile),
+                new DuplicateCode(Priority.NORMAL, 1, 10, workspace + secondFile));
+        for (DuplicateCode block : blocks) {
+            block.setPathName(workspace);
+            block.setSourceCode(fragment);
+        }
+        DuplicationGroup.link(blocks);
+        return blocks;
+    }
+
+    /**
+     * Aggregator that reads the results of the runs from a map.
+     */
+    private static class TestAggregator extends DryAnnotationsAggregator {
+        private final Map<MatrixRun, JavaProject> results = new HashMap<MatrixRun, JavaProject>();
+
+        TestAggregator(final int numberOfThreads) {
+            super(mock(MatrixBuild.class), null, null, mock(HealthDescriptor.class), "UTF-8", false, false,
+                    numberOfThreads);
+        }
+
+        void add(final MatrixRun run, final List<DuplicateCode> first, final List<DuplicateCode> second) {
+            JavaProject project = new JavaProject();
+            project.addAnnotations(first);
+            project.addAnnotations(second);
+            results.put(run, project);
+        }
+
+        @Override
+        protected boolean hasResult(final MatrixRun run) {
+            return results.containsKey(run);
+        }
+
+        @Override
+        JavaProject getContainer(final MatrixRun run) {
+            return results.get(run);
+        }
+
+        @Override
+        protected Action createAction(final HealthDescriptor healthDescriptor, final String defaultEncoding,
+                final ParserResult aggregatedResult) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package hudson.plugins.dry;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the class {@link DryTrendStore}.
+ *
+ * @author Ulli Hafner
+ */
+public class DryTrendStoreTest {
+    private File folder;
+    private File file;
+
+    /**
+     * Creates the folder of the job.
+     *
+     * @throws IOException
+     *             if the folder could not be created
+     */
+    @Before
+    public void createFolder() throws IOException {
+        folder = File.createTempFile("dry", "trend");
+        FileUtils.forceDelete(folder);
+        FileUtils.forceMkdir(folder);
+        file = new File(folder, DryTrendStore.FILE_NAME);
+    }
+
+    /**
+     * Deletes the folder.
+     *
+     * @throws IOException
+     *             if the folder could not be deleted
+     */
+    @After
+    public void deleteFolder() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    /**
+     * Verifies that the summary is created with the first build of a job.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldCreateSummaryWithFirstBuild() throws IOException {
+        DryTrendStore.append(file, createEntry(1), createHistory());
+
+        assertTrue("Summary not created", file.isFile());
+        assertBuilds(DryTrendStore.read(file, createHistory(2)), 1);
+
+        DryTrendStore.append(file, createEntry(2), createHistory(1));
+        assertBuilds(DryTrendStore.read(file, createHistory()), 1, 2);
+    }
+
+    /**
+     * Verifies that a missing summary is rebuilt from all previous builds, either when it is read or when the next
+     * build is appended.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldRebuildMissingSummary() throws IOException {
+        DryTrendStore.append(file, createEntry(4), createHistory(1, 2, 3));
+        assertBuilds(DryTrendStore.read(file, createHistory()), 1, 2, 3, 4);
+
+        FileUtils.forceDelete(file);
+        assertBuilds(DryTrendStore.read(file, createHistory(1, 2, 3, 4, 5)), 1, 2, 3, 4, 5);
+        assertBuilds(DryTrendStore.read(file, createHistory()), 1, 2, 3, 4, 5);
+    }
+
+    /**
+     * Verifies that a rebuild keeps the builds that have been appended while the results have been collected.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldMergeBuildsAppendedDuringRebuild() throws IOException {
+        DryTrendStore.History history = new DryTrendStore.History() {
+            @Override
+            public Map<Integer, DryTrendStore.Entry> collect() {
+                try {
+                    DryTrendStore.append(file, createEntry(3), createHistory(1));
+                }
+                catch (IOException exception) {
+                    throw new AssertionError(exception);
+                }
+                return createHistory(1, 2).collect();
+            }
+        };
+
+        assertBuilds(DryTrendStore.read(file, history), 1, 2, 3);
+        assertBuilds(DryTrendStore.read(file, createHistory()), 1, 2, 3);
+    }
+
+    /**
+     * Verifies that the entry of a deleted build is removed.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldRemoveDeletedBuild() throws IOException {
+        DryTrendStore.read(file, createHistory(1, 2, 3));
+
+        DryTrendStore.remove(file, 2);
+        assertBuilds(DryTrendStore.read(file, createHistory()), 1, 3);
+
+        DryTrendStore.remove(file, 7);
+        assertBuilds(DryTrendStore.read(file, createHistory()), 1, 3);
+
+        DryTrendStore.Entry restored = DryTrendStore.read(file, createHistory()).iterator().next();
+        assertEquals("Wrong entry", createEntry(1).toString(), restored.toString());
+    }
+
+    private void assertBuilds(final Collection<DryTrendStore.Entry> entries, final int... builds) {
+        List<Integer> actual = new ArrayList<Integer>();
+        for (DryTrendStore.Entry entry : entries) {
+            actual.add(entry.getBuild());
+        }
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int build : builds) {
+            expected.add(build);
+        }
+        assertEquals("Wrong builds", expected, actual);
+    }
+
+    private DryTrendStore.History createHistory(final int... builds) {
+        return new DryTrendStore.History() {
+            @Override
+            public Map<Integer, DryTrendStore.Entry> collect() {
+                Map<Integer, DryTrendStore.Entry> entries = new TreeMap<Integer, DryTrendStore.Entry>();
+                for (int build : builds) {
+                    entries.put(build, createEntry(build));
+                }
+                return entries;
+            }
+        };
+    }
+
+    private DryTrendStore.Entry createEntry(final int build) {
+        return new DryTrendStore.Entry(new String[] {String.valueOf(build), String.valueOf(build * 10)});
+    }
+}
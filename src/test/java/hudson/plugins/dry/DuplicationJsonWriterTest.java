@@ -0,0 +1,87 @@
+package hudson.plugins.dry;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import hudson.plugins.analysis.util.model.Priority;
+import hudson.plugins.dry.parser.DuplicateCode;
+
+/**
+ * Tests the class {@link DuplicationJsonWriter}.
+ *
+ * @author Ulli Hafner
+ */
+public class DuplicationJsonWriterTest {
+    /**
+     * Verifies that special characters of strings are escaped.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldEscapeStrings() throws IOException {
+        assertEquals("Wrong JSON", "\"a\\\"b\\\\c\\nd\\u003c/script>\\u0001\"", write("a\"b\\c\nd</script>\u0001"));
+        assertEquals("Wrong JSON", "null", write(null));
+    }
+
+    /**
+     * Verifies that each duplication of an NDJSON export is written on a separate line.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldExportDuplicationsAsNdjson() throws IOException {
+        StringWriter writer = new StringWriter();
+        DuplicationJsonWriter json = new DuplicationJsonWriter(writer, null);
+
+        json.startExport(true);
+        json.writeDuplication(1, Arrays.asList(createBlock("/a.java", 1), createBlock("/b.java", 5)));
+        json.writeDuplication(2, Arrays.asList(createBlock("/c.java", 10)));
+        json.endExport();
+
+        String[] lines = writer.toString().split("\n");
+        assertEquals("Wrong number of lines", 2, lines.length);
+        assertEquals("Wrong JSON", "{\"id\":1,\"blocks\":[" + createJson("/a.java", 1) + ","
+                + createJson("/b.java", 5) + "]}", lines[0]);
+        assertTrue("Wrong JSON", lines[1].startsWith("{\"id\":2,\"blocks\":[{\"file\":\"/c.java\""));
+    }
+
+    /**
+     * Verifies that a JSON export is a single object.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldExportDuplicationsAsJson() throws IOException {
+        StringWriter writer = new StringWriter();
+        DuplicationJsonWriter json = new DuplicationJsonWriter(writer, null);
+
+        json.startExport(false);
+        json.endExport();
+        assertEquals("Wrong JSON", "{\"duplications\":[]}", writer.toString());
+    }
+
+    private String createJson(final String fileName, final int line) {
+        return "{\"file\":\"" + fileName + "\",\"line\":" + line
+                + ",\"lines\":10,\"module\":\"module\",\"package\":null,\"priority\":\"HIGH\"}";
+    }
+
+    private DuplicateCode createBlock(final String fileName, final int line) {
+        DuplicateCode block = new DuplicateCode(Priority.HIGH, line, 10, fileName);
+        block.setModuleName("module");
+        return block;
+    }
+
+    private String write(final String value) throws IOException {
+        StringWriter writer = new StringWriter();
+        new DuplicationJsonWriter(writer, null).writeString(value);
+        return writer.toString();
+    }
+}
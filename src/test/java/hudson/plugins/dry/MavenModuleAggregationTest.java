@@ -0,0 +1,71 @@
+package hudson.plugins.dry;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import hudson.plugins.analysis.core.ParserResult;
+import hudson.plugins.analysis.util.model.FileAnnotation;
+import hudson.plugins.analysis.util.model.JavaProject;
+import hudson.plugins.analysis.util.model.Priority;
+import hudson.plugins.dry.parser.DuplicateCode;
+
+/**
+ * Tests the class {@link MavenModuleAggregation}.
+ *
+ * @author Ulli Hafner
+ */
+public class MavenModuleAggregationTest {
+    /**
+     * Verifies that the results of several modules are aggregated and that the aggregated result, which is
+     * serialized by the action, is handed out only once.
+     */
+    @Test
+    public void shouldCreateAggregatedResultOnlyOnce() {
+        MavenModuleAggregation aggregation = new MavenModuleAggregation();
+
+        DryResult first = createResult(createBlock("core", "/core/A.java"), createBlock("core", "/core/B.java"));
+        aggregation.add(first);
+        DryResult second = createResult(createBlock("ui", "/ui/C.java"));
+        aggregation.add(second);
+        DryResult third = createResult(createBlock("web", "/web/D.java"), createBlock("web", "/web/E.java"));
+        aggregation.add(third);
+
+        ParserResult aggregated = aggregation.complete();
+        assertNotNull("No aggregated result", aggregated);
+        assertEquals("Wrong number of annotations", 5, aggregated.getNumberOfAnnotations());
+        assertEquals("Wrong modules", new HashSet<String>(Arrays.asList("core", "ui", "web")),
+                aggregated.getModules());
+        verify(first, times(1)).getAnnotations();
+        verify(second, times(1)).getAnnotations();
+        verify(third, times(1)).getAnnotations();
+
+        DryResult late = createResult(createBlock("late", "/late/F.java"));
+        aggregation.add(late);
+        assertNull("Aggregated result created twice", aggregation.complete());
+        assertEquals("Aggregated result changed", 5, aggregated.getNumberOfAnnotations());
+        verifyZeroInteractions(late);
+    }
+
+    private DryResult createResult(final FileAnnotation... annotations) {
+        List<FileAnnotation> all = Arrays.asList(annotations);
+        JavaProject project = new JavaProject();
+        project.addAnnotations(all);
+
+        DryResult result = mock(DryResult.class);
+        when(result.getAnnotations()).thenReturn(new HashSet<FileAnnotation>(all));
+        when(result.getContainer()).thenReturn(project);
+        return result;
+    }
+
+    private DuplicateCode createBlock(final String moduleName, final String fileName) {
+        DuplicateCode block = new DuplicateCode(Priority.NORMAL, 1, 10, fileName);
+        block.setModuleName(moduleName);
+        return block;
+    }
+}
@@ -0,0 +1,66 @@
+package hudson.plugins.dry;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.Test;
+
+import hudson.model.Job;
+import hudson.plugins.analysis.graph.GraphConfiguration;
+
+/**
+ * Tests the class {@link TrendGraphCache}.
+ *
+ * @author Ulli Hafner
+ */
+public class TrendGraphCacheTest {
+    private static final String GRAPH_ID = "DUPLINES";
+    private static final int WIDTH = 500;
+    private static final int HEIGHT = 200;
+
+    /**
+     * Verifies that images that are rendered for different graph configurations use different keys.
+     */
+    @Test
+    public void shouldSeparateImagesOfDifferentConfigurations() {
+        Job<?, ?> job = createJob();
+        GraphConfiguration configuration = createConfiguration(0, 0, false);
+
+        String key = TrendGraphCache.createKey(job, GRAPH_ID, 1, configuration, WIDTH, HEIGHT);
+
+        assertEquals("Same configuration should use the same key", key,
+                TrendGraphCache.createKey(job, GRAPH_ID, 1, createConfiguration(0, 0, false), WIDTH, HEIGHT));
+        assertFalse("Build count ignored", key.equals(
+                TrendGraphCache.createKey(job, GRAPH_ID, 1, createConfiguration(10, 0, false), WIDTH, HEIGHT)));
+        assertFalse("Day count ignored", key.equals(
+                TrendGraphCache.createKey(job, GRAPH_ID, 1, createConfiguration(0, 30, false), WIDTH, HEIGHT)));
+        assertFalse("Domain ignored", key.equals(
+                TrendGraphCache.createKey(job, GRAPH_ID, 1, createConfiguration(0, 0, true), WIDTH, HEIGHT)));
+
+        GraphConfiguration parameter = createConfiguration(0, 0, false);
+        when(parameter.getParameterName()).thenReturn("BRANCH");
+        when(parameter.getParameterValue()).thenReturn("master");
+        assertFalse("Build parameter ignored", key.equals(
+                TrendGraphCache.createKey(job, GRAPH_ID, 1, parameter, WIDTH, HEIGHT)));
+
+        assertFalse("Size ignored", key.equals(
+                TrendGraphCache.createKey(job, GRAPH_ID, 1, configuration, WIDTH, HEIGHT * 2)));
+        assertFalse("Build ignored", key.equals(
+                TrendGraphCache.createKey(job, GRAPH_ID, 2, configuration, WIDTH, HEIGHT)));
+    }
+
+    private Job<?, ?> createJob() {
+        Job<?, ?> job = mock(Job.class);
+        when(job.getFullName()).thenReturn("job");
+        return job;
+    }
+
+    private GraphConfiguration createConfiguration(final int buildCount, final int dayCount,
+            final boolean useBuildDate) {
+        GraphConfiguration configuration = mock(GraphConfiguration.class);
+        when(configuration.getBuildCount()).thenReturn(buildCount);
+        when(configuration.getDayCount()).thenReturn(dayCount);
+        when(configuration.useBuildDateAsDomain()).thenReturn(useBuildDate);
+        return configuration;
+    }
+}
@@ -0,0 +1,68 @@
+package hudson.plugins.dry.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+/**
+ * Tests the class {@link BatchContextHashCode}.
+ *
+ * @author Ulli Hafner
+ */
+public class BatchContextHashCodeTest {
+    private static final int NUMBER_OF_LINES = 20;
+
+    /**
+     * Verifies that the context of each line consists of the three lines before and the four lines after the line
+     * (if available).
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldComputeHashCodesOfAllLinesInOnePass() throws IOException {
+        File file = File.createTempFile("context", ".java");
+        try {
+            StringBuilder content = new StringBuilder();
+            for (int line = 0; line < NUMBER_OF_LINES; line++) {
+                content.append("line").append(line).append(line % 2 == 0 ? "\n" : "\r\n");
+            }
+            FileUtils.writeStringToFile(file, content.toString(), "UTF-8");
+
+            long[] hashCodes = new BatchContextHashCode().compute(file.getAbsolutePath(),
+                    new int[] {10, 0, 18, 10, 40}, "UTF-8");
+
+            assertEquals("Wrong hash code", createContext(7, 14), hashCodes[0]);
+            assertEquals("Wrong hash code", createContext(0, 4), hashCodes[1]);
+            assertEquals("Wrong hash code", createContext(15, NUMBER_OF_LINES - 1), hashCodes[2]);
+            assertEquals("Wrong hash code", hashCodes[0], hashCodes[3]);
+            assertEquals("Wrong hash code", "".hashCode(), hashCodes[4]);
+        }
+        finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    private long createContext(final int from, final int to) {
+        StringBuilder context = new StringBuilder();
+        for (int line = from; line <= to; line++) {
+            context.append("line").append(line);
+        }
+        return context.toString().hashCode();
+    }
+
+    /**
+     * Verifies that an exception is thrown if the file does not exist.
+     *
+     * @throws IOException
+     *             expected
+     */
+    @Test(expected = IOException.class)
+    public void shouldThrowExceptionIfFileDoesNotExist() throws IOException {
+        new BatchContextHashCode().compute("/does/not/exist.java", new int[] {1}, "UTF-8");
+    }
+}
@@ -0,0 +1,141 @@
+package hudson.plugins.dry.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the class {@link ContextHashCodeCache}.
+ *
+ * @author Ulli Hafner
+ */
+public class ContextHashCodeCacheTest {
+    private static final String ENCODING = "UTF-8";
+    private static final int[] LINES = {1, 5};
+    private static final long[] VALUES = {42, -42};
+
+    private File folder;
+    private File source;
+
+    /**
+     * Creates a folder with a source file.
+     *
+     * @throws IOException
+     *             if the folder could not be created
+     */
+    @Before
+    public void createFolder() throws IOException {
+        folder = File.createTempFile("dry", "cache");
+        FileUtils.forceDelete(folder);
+        source = new File(folder, "Source.java");
+        FileUtils.writeStringToFile(source, "public class Source {\n}\n", ENCODING);
+    }
+
+    /**
+     * Deletes the folder.
+     *
+     * @throws IOException
+     *             if the folder could not be deleted
+     */
+    @After
+    public void deleteFolder() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    /**
+     * Verifies that the hash codes are restored after the cache has been saved and loaded again.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldRestoreHashCodesOfPreviousBuild() throws IOException {
+        File storage = new File(folder + "@tmp", ContextHashCodeCache.FILE_NAME);
+        try {
+            ContextHashCodeCache cache = new ContextHashCodeCache(storage);
+            cache.load();
+            assertNull("Cache should be empty", cache.get(source.getPath(), LINES, ENCODING));
+
+            cache.put(source.getPath(), LINES, ENCODING, VALUES);
+            cache.save();
+
+            ContextHashCodeCache restored = new ContextHashCodeCache(storage);
+            restored.load();
+            assertArrayEquals(VALUES, restored.get(source.getPath(), LINES, ENCODING));
+            assertNull("Wrong encoding should not match", restored.get(source.getPath(), LINES, "ISO-8859-1"));
+            assertNull("Other lines should not match", restored.get(source.getPath(), new int[] {2}, ENCODING));
+        }
+        finally {
+            FileUtils.deleteDirectory(storage.getParentFile());
+        }
+    }
+
+    /**
+     * Verifies that the hash codes are keyed by file content: a modified file does not match, a copy of the file
+     * does.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldUseContentOfFileAsKey() throws IOException {
+        ContextHashCodeCache cache = new ContextHashCodeCache(new File(folder, ContextHashCodeCache.FILE_NAME));
+        cache.put(source.getPath(), LINES, ENCODING, VALUES);
+
+        File copy = new File(folder, "Copy.java");
+        FileUtils.copyFile(source, copy);
+        assertArrayEquals(VALUES, cache.get(copy.getPath(), LINES, ENCODING));
+
+        FileUtils.writeStringToFile(source, "public class Changed {\n}\n", ENCODING);
+        assertNull("Changed file should not match", cache.get(source.getPath(), LINES, ENCODING));
+    }
+
+    /**
+     * Verifies that the file is read only once to compute the digest and the hash codes, and that unchanged files
+     * are not read again.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldComputeDigestAndHashCodesInOnePass() throws IOException {
+        ContextHashCodeCache cache = new ContextHashCodeCache(new File(folder, ContextHashCodeCache.FILE_NAME));
+        CountingBatch batch = new CountingBatch();
+
+        long[] values = cache.compute(batch, source.getPath(), LINES, ENCODING);
+        assertEquals("Wrong number of reads", 1, batch.count);
+        assertArrayEquals(new BatchContextHashCode().compute(source.getPath(), LINES, ENCODING), values);
+
+        assertArrayEquals(values, cache.compute(batch, source.getPath(), LINES, ENCODING));
+        assertEquals("Unchanged file read again", 1, batch.count);
+
+        File copy = new File(folder, "Copy.java");
+        FileUtils.copyFile(source, copy);
+        assertArrayEquals("Digest differs from file digest", values, cache.get(copy.getPath(), LINES, ENCODING));
+
+        FileUtils.writeStringToFile(source, "public class Changed {\n}\n", ENCODING);
+        cache.compute(batch, source.getPath(), LINES, ENCODING);
+        assertEquals("Changed file not read", 2, batch.count);
+    }
+
+    /**
+     * Counts the number of computations.
+     */
+    private static class CountingBatch extends BatchContextHashCode {
+        private int count;
+
+        @Override
+        public long[] compute(final String fileName, final int[] lines, final String encoding,
+                final MessageDigest digest) throws IOException {
+            count++;
+            return super.compute(fileName, lines, encoding, digest);
+        }
+    }
+}
@@ -3,6 +3,18 @@ package hudson.plugins.dry.parser;
 import static org.junit.Assert.*;
 import hudson.plugins.analysis.util.model.Priority;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
 import org.junit.Test;
 
 /**
@@ -43,5 +55,116 @@ public class DuplicateCodeTest {
         assertEquals(WRONG_LINK_NAME, "Folder2/file.txt", dry.getLinkName());
         assertEquals(WRONG_PATH_NAME, "Folder2", dry.getPathName());
     }
-}
 
+    /**
+     * Verifies that all blocks of a duplication share the same group and source code fragment.
+     */
+    @Test
+    public void shouldShareGroupOfDuplication() {
+        DuplicateCode first = createBlock(1, "fragment");
+        DuplicateCode second = createBlock(2, "fragment");
+        DuplicateCode third = createBlock(3, "fragment");
+
+        DuplicationGroup group = DuplicationGroup.link(Arrays.asList(first, second, third));
+
+        assertSame("Wrong group", group, first.getGroup());
+        assertSame("Wrong group", group, third.getGroup());
+        assertEquals("Wrong number of members", 3, group.size());
+        assertEquals("Wrong fragment", "fragment", group.getSourceCode());
+        assertEquals("Wrong fragment", "fragment", second.getSourceCode());
+
+        assertEquals("Wrong links", Arrays.asList(second, third), first.getLinks());
+        assertEquals("Wrong links", Arrays.asList(first, second), third.getLinks());
+        assertSame("Wrong link", third, second.getLink(third.getKey()));
+    }
+
+    /**
+     * Verifies that the links of a duplication are resolved by their key.
+     */
+    @Test
+    public void shouldResolveLinksByKey() {
+        DuplicateCode first = createBlock(1, "fragment");
+        DuplicateCode second = createBlock(2, "fragment");
+        DuplicationGroup group = DuplicationGroup.link(Arrays.asList(first, second));
+
+        assertSame("Wrong member", first, group.getMember(first.getKey()));
+        assertSame("Wrong member", second, group.getMember(second.getKey()));
+        assertNull("Wrong member", group.getMember(createBlock(3, "fragment").getKey()));
+        assertSame("Wrong link", second, first.getLink(second.getKey()));
+    }
+
+    /**
+     * Verifies that a block is not a link of itself.
+     */
+    @Test(expected = NoSuchElementException.class)
+    public void shouldNotLinkToItself() {
+        DuplicateCode first = createBlock(1, "fragment");
+        DuplicationGroup.link(Arrays.asList(first, createBlock(2, "fragment")));
+
+        first.getLink(first.getKey());
+    }
+
+    /**
+     * Verifies that blocks with different fragments keep their own fragment.
+     */
+    @Test
+    public void shouldKeepDifferentFragments() {
+        DuplicateCode first = createBlock(1, "first");
+        DuplicateCode second = createBlock(2, "second");
+        DuplicateCode third = createBlock(3, null);
+
+        DuplicationGroup group = DuplicationGroup.link(Arrays.asList(first, second, third));
+
+        assertNull("Group should have no fragment", group.getSourceCode());
+        assertEquals("Wrong fragment", "first", first.getSourceCode());
+        assertEquals("Wrong fragment", "second", second.getSourceCode());
+        assertNull("Wrong fragment", third.getSourceCode());
+    }
+
+    /**
+     * Verifies that the link sets of previous releases are converted into a group.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void shouldConvertLinksOfPreviousReleases() throws Exception {
+        DuplicateCode first = createBlock(1, "fragment");
+        DuplicateCode second = createBlock(2, "fragment");
+        setLinks(first, second);
+        setLinks(second, first);
+
+        List<?> restored = (List<?>)copy(Arrays.asList(first, second));
+
+        DuplicateCode restoredFirst = (DuplicateCode)restored.get(0);
+        DuplicateCode restoredSecond = (DuplicateCode)restored.get(1);
+        assertNotNull("No group created", restoredFirst.getGroup());
+        assertSame("Wrong group", restoredFirst.getGroup(), restoredSecond.getGroup());
+        assertEquals("Wrong links", Arrays.asList(restoredSecond), restoredFirst.getLinks());
+        assertEquals("Wrong fragment", "fragment", restoredSecond.getSourceCode());
+    }
+
+    private DuplicateCode createBlock(final int line, final String fragment) {
+        DuplicateCode block = new DuplicateCode(Priority.NORMAL, line, 10, UNIX_FILE);
+        block.setSourceCode(fragment);
+        return block;
+    }
+
+    private void setLinks(final DuplicateCode block, final DuplicateCode link) throws Exception {
+        Field field = DuplicateCode.class.getDeclaredField("links");
+        field.setAccessible(true);
+        Set<DuplicateCode> links = new HashSet<DuplicateCode>();
+        links.add(link);
+        field.set(block, links);
+    }
+
+    private Object copy(final Object object) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(buffer);
+        output.writeObject(object);
+        output.close();
+
+        return new ObjectInputStream(new ByteArrayInputStream(buffer.toByteArray())).readObject();
+    }
+}
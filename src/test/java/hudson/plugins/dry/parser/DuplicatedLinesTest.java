@@ -0,0 +1,70 @@
+package hudson.plugins.dry.parser;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import hudson.plugins.analysis.util.model.FileAnnotation;
+import hudson.plugins.analysis.util.model.Priority;
+
+/**
+ * Tests the class {@link DuplicatedLines}.
+ *
+ * @author Ulli Hafner
+ */
+public class DuplicatedLinesTest {
+    private static final String FIRST_FILE = "/project/first.java";
+    private static final String SECOND_FILE = "/project/second.java";
+    private static final String THIRD_FILE = "/other/third.java";
+
+    /**
+     * Verifies that overlapping duplications in the same file count each line once.
+     */
+    @Test
+    public void shouldCountUnionOfLineRangesPerFile() {
+        List<FileAnnotation> annotations = new ArrayList<FileAnnotation>();
+        annotations.add(createDuplication(FIRST_FILE, "project", 10, 20)); // 10-29
+        annotations.add(createDuplication(FIRST_FILE, "project", 15, 10)); // 15-24, inside
+        annotations.add(createDuplication(FIRST_FILE, "project", 25, 10)); // 25-34, overlaps
+        annotations.add(createDuplication(FIRST_FILE, "project", 35, 5));  // 35-39, adjacent
+        annotations.add(createDuplication(FIRST_FILE, "project", 100, 1)); // 100
+        annotations.add(createDuplication(SECOND_FILE, "project", 1, 10));
+        annotations.add(createDuplication(SECOND_FILE, "project", 1, 10));
+        annotations.add(createDuplication(THIRD_FILE, "other", 5, 7));
+
+        DuplicatedLines lines = new DuplicatedLines(annotations);
+
+        assertEquals("Wrong number of lines", 31, lines.getFiles().get(FIRST_FILE).intValue());
+        assertEquals("Wrong number of lines", 10, lines.getFiles().get(SECOND_FILE).intValue());
+        assertEquals("Wrong number of lines", 7, lines.getFiles().get(THIRD_FILE).intValue());
+        assertEquals("Wrong number of lines", 41, lines.getModules().get("project").intValue());
+        assertEquals("Wrong number of lines", 7, lines.getModules().get("other").intValue());
+        assertEquals("Wrong number of lines", 48, lines.getTotal());
+    }
+
+    /**
+     * Verifies that the ranges of a file are merged correctly if the array of ranges needs to grow.
+     */
+    @Test
+    public void shouldMergeManyRanges() {
+        List<FileAnnotation> annotations = new ArrayList<FileAnnotation>();
+        for (int line = 1000; line > 0; line -= 10) {
+            annotations.add(createDuplication(FIRST_FILE, null, line, 5));
+        }
+
+        DuplicatedLines lines = new DuplicatedLines(annotations);
+
+        assertEquals("Wrong number of lines", 500, lines.getTotal());
+        assertEquals("Wrong number of lines", 500, lines.getModules().get("").intValue());
+    }
+
+    private DuplicateCode createDuplication(final String fileName, final String moduleName,
+            final int firstLine, final int numberOfLines) {
+        DuplicateCode duplication = new DuplicateCode(Priority.NORMAL, firstLine, numberOfLines, fileName);
+        duplication.setModuleName(moduleName);
+        return duplication;
+    }
+}
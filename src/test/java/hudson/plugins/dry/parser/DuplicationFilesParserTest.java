@@ -0,0 +1,114 @@
+package hudson.plugins.dry.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import hudson.plugins.analysis.core.ParserResult;
+import hudson.plugins.analysis.util.model.FileAnnotation;
+import hudson.plugins.analysis.util.model.Priority;
+
+/**
+ * Tests the class {@link DuplicationFilesParser}.
+ *
+ * @author Ulli Hafner
+ */
+public class DuplicationFilesParserTest {
+    private static final int NUMBER_OF_FILES = 20;
+    private static final String PATTERN = "**/cpd.xml";
+
+    private File workspace;
+
+    /**
+     * Creates a workspace with several report files and an empty report.
+     *
+     * @throws IOException
+     *             if the workspace could not be created
+     */
+    @Before
+    public void createWorkspace() throws IOException {
+        workspace = File.createTempFile("dry", "workspace");
+        FileUtils.forceDelete(workspace);
+        for (int module = 0; module < NUMBER_OF_FILES; module++) {
+            FileUtils.writeStringToFile(new File(workspace, String.format("module-%02d/cpd.xml", module)),
+                    String.valueOf(module));
+        }
+        FileUtils.touch(new File(workspace, "module-empty/cpd.xml"));
+    }
+
+    /**
+     * Deletes the workspace.
+     *
+     * @throws IOException
+     *             if the workspace could not be deleted
+     */
+    @After
+    public void deleteWorkspace() throws IOException {
+        FileUtils.deleteDirectory(workspace);
+    }
+
+    /**
+     * Verifies that the results of concurrently parsed files are merged in the order of the file names, even if
+     * the parsers of the first files finish last.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldMergeConcurrentResultsInFileOrder() throws Exception {
+        ParserResult sequential = new DuplicationFilesParser(PATTERN, new SlowParser(), false, false, 1)
+                .invoke(workspace, null);
+        ParserResult concurrent = new DuplicationFilesParser(PATTERN, new SlowParser(), false, false, 8)
+                .invoke(workspace, null);
+
+        assertEquals("Wrong number of warnings", NUMBER_OF_FILES, sequential.getNumberOfAnnotations());
+        assertEquals("Wrong number of warnings", NUMBER_OF_FILES, concurrent.getNumberOfAnnotations());
+        assertEquals("Wrong number of errors", 1, concurrent.getErrorMessages().size());
+        assertEquals("Wrong log", removeFirstLines(sequential.getLogMessages()),
+                removeFirstLines(concurrent.getLogMessages()));
+    }
+
+    private String removeFirstLines(final String log) {
+        String withoutPattern = log.substring(log.indexOf('\n') + 1);
+        return withoutPattern.substring(withoutPattern.indexOf('\n') + 1);
+    }
+
+    /**
+     * A parser that creates one warning per file. The smaller the number in the file, the longer the parser needs.
+     */
+    private static class SlowParser extends DuplicationParserRegistry {
+        private static final long serialVersionUID = 3294767823468113960L;
+
+        SlowParser() {
+            super(25, 50, "UTF-8");
+        }
+
+        @Override
+        public Collection<FileAnnotation> parse(final File file, final String moduleName)
+                throws InvocationTargetException {
+            try {
+                int number = Integer.parseInt(FileUtils.readFileToString(file));
+                Thread.sleep(5L * (NUMBER_OF_FILES - number));
+
+                DuplicateCode warning = new DuplicateCode(Priority.NORMAL, number + 1, 10, file.getPath());
+                warning.setModuleName(moduleName);
+                return Collections.<FileAnnotation>singleton(warning);
+            }
+            catch (IOException exception) {
+                throw new InvocationTargetException(exception);
+            }
+            catch (InterruptedException exception) {
+                throw new InvocationTargetException(exception);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package hudson.plugins.dry.parser;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import hudson.plugins.analysis.util.model.FileAnnotation;
+import hudson.plugins.analysis.util.model.Priority;
+
+/**
+ * Tests the class {@link DuplicationGroupDifferencer}.
+ *
+ * @author Ulli Hafner
+ */
+public class DuplicationGroupDifferencerTest {
+    /**
+     * Verifies that new, fixed, grown and shrunk duplications are detected.
+     */
+    @Test
+    public void shouldDetectChangedDuplications() {
+        List<FileAnnotation> reference = new ArrayList<FileAnnotation>();
+        link(reference, createBlock(1, 10), createBlock(2, 10));
+        link(reference, createBlock(3, 10), createBlock(4, 10));
+        link(reference, createBlock(5, 10), createBlock(6, 10), createBlock(7, 10));
+        link(reference, createBlock(8, 10), createBlock(9, 10));
+
+        List<FileAnnotation> current = new ArrayList<FileAnnotation>();
+        DuplicationGroup unchanged = link(current, createBlock(1, 10), createBlock(2, 10));
+        DuplicationGroup grown = link(current, createBlock(3, 10), createBlock(4, 10), createBlock(11, 10));
+        DuplicationGroup shrunk = link(current, createBlock(5, 10), createBlock(6, 10));
+        DuplicationGroup added = link(current, createBlock(8, 20), createBlock(9, 20));
+
+        DuplicationGroupDifferencer.Difference difference = new DuplicationGroupDifferencer(reference).compare(current);
+
+        assertEquals("Wrong new duplications", Arrays.asList(added), difference.getNewGroups());
+        assertEquals("Wrong grown duplications", Arrays.asList(grown), difference.getGrownGroups());
+        assertEquals("Wrong shrunk duplications", Arrays.asList(shrunk), difference.getShrunkGroups());
+        assertEquals("Wrong number of fixed duplications", 1, difference.getFixedGroups().size());
+        assertEquals("Wrong fixed duplication", 8,
+                difference.getFixedGroups().get(0).getMembers().get(0).getContextHashCode());
+        assertFalse("Unchanged duplication reported", difference.getNewGroups().contains(unchanged));
+    }
+
+    /**
+     * Verifies that a duplication of the reference build is matched only once.
+     */
+    @Test
+    public void shouldMatchReferenceOnlyOnce() {
+        List<FileAnnotation> reference = new ArrayList<FileAnnotation>();
+        link(reference, createBlock(1, 10), createBlock(2, 10));
+
+        List<FileAnnotation> current = new ArrayList<FileAnnotation>();
+        link(current, createBlock(1, 10), createBlock(3, 10));
+        DuplicationGroup split = link(current, createBlock(2, 10), createBlock(4, 10));
+
+        DuplicationGroupDifferencer.Difference difference = new DuplicationGroupDifferencer(reference).compare(current);
+
+        assertEquals("Wrong new duplications", Arrays.asList(split), difference.getNewGroups());
+        assertTrue("Wrong fixed duplications", difference.getFixedGroups().isEmpty());
+    }
+
+    /**
+     * Verifies that the blocks are identified by file name and line if there is no context hash code.
+     */
+    @Test
+    public void shouldUseLocationWithoutContextHashCode() {
+        List<FileAnnotation> reference = new ArrayList<FileAnnotation>();
+        link(reference, new DuplicateCode(Priority.NORMAL, 1, 10, "/a.java"),
+                new DuplicateCode(Priority.NORMAL, 1, 10, "/b.java"));
+
+        List<FileAnnotation> current = new ArrayList<FileAnnotation>();
+        link(current, new DuplicateCode(Priority.NORMAL, 1, 10, "/a.java"),
+                new DuplicateCode(Priority.NORMAL, 1, 10, "/b.java"));
+        DuplicationGroup moved = link(current, new DuplicateCode(Priority.NORMAL, 5, 10, "/a.java"),
+                new DuplicateCode(Priority.NORMAL, 5, 10, "/b.java"));
+
+        DuplicationGroupDifferencer.Difference difference = new DuplicationGroupDifferencer(reference).compare(current);
+
+        assertEquals("Wrong new duplications", Arrays.asList(moved), difference.getNewGroups());
+        assertTrue("Wrong fixed duplications", difference.getFixedGroups().isEmpty());
+    }
+
+    /**
+     * Verifies that large results with 200,000 duplications are compared.
+     */
+    @Test
+    public void shouldCompareLargeResults() {
+        int numberOfDuplications = 200000;
+        List<FileAnnotation> reference = new ArrayList<FileAnnotation>();
+        List<FileAnnotation> current = new ArrayList<FileAnnotation>();
+        for (int i = 0; i < numberOfDuplications; i++) {
+            link(reference, createBlock(3 * i, 10), createBlock(3 * i + 1, 10));
+            if (i % 2 == 0) {
+                link(current, createBlock(3 * i, 10), createBlock(3 * i + 1, 10), createBlock(3 * i + 2, 10));
+            }
+        }
+
+        DuplicationGroupDifferencer.Difference difference = new DuplicationGroupDifferencer(reference).compare(current);
+
+        assertEquals("Wrong grown duplications", numberOfDuplications / 2, difference.getGrownGroups().size());
+        assertEquals("Wrong fixed duplications", numberOfDuplications / 2, difference.getFixedGroups().size());
+    }
+
+    private DuplicationGroup link(final List<FileAnnotation> annotations, final DuplicateCode... blocks) {
+        annotations.addAll(Arrays.asList(blocks));
+        return DuplicationGroup.link(Arrays.asList(blocks));
+    }
+
+    private DuplicateCode createBlock(final long contextHashCode, final int numberOfLines) {
+        DuplicateCode block = new DuplicateCode(Priority.NORMAL, 1, numberOfLines, "/file" + contextHashCode + ".java");
+        block.setContextHashCode(contextHashCode);
+        return block;
+    }
+}
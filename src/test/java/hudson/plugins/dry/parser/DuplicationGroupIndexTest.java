@@ -0,0 +1,79 @@
+package hudson.plugins.dry.parser;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import hudson.plugins.analysis.util.model.FileAnnotation;
+import hudson.plugins.analysis.util.model.Priority;
+
+/**
+ * Tests the class {@link DuplicationGroupIndex}.
+ *
+ * @author Ulli Hafner
+ */
+public class DuplicationGroupIndexTest {
+    /**
+     * Verifies that the index contains one representative for each duplication.
+     */
+    @Test
+    public void shouldIndexOneWarningPerDuplication() {
+        SortedSet<FileAnnotation> annotations = new TreeSet<FileAnnotation>();
+        annotations.add(createBlock("/a.java", 0));
+        annotations.add(createBlock("/b.java", 0));
+        annotations.add(createBlock("/c.java", 1));
+        annotations.add(createBlock("/d.java", 1));
+        annotations.add(createBlock("/e.java", 2));
+
+        DuplicationGroupIndex index = new DuplicationGroupIndex(annotations);
+
+        assertEquals("Wrong number of duplications", 3, index.size());
+        assertEquals("Wrong representatives", DuplicateCode.filter(annotations), index.getRepresentatives());
+    }
+
+    /**
+     * Verifies that the pages of the duplications are sorted by the selected column.
+     */
+    @Test
+    public void shouldReturnSortedPages() {
+        SortedSet<FileAnnotation> annotations = new TreeSet<FileAnnotation>();
+        DuplicateCode large = createBlock("/a.java", 0, 30);
+        DuplicateCode small = createBlock("/b.java", 1, 5);
+        DuplicateCode medium = createBlock("/c.java", 2, 10);
+        DuplicationGroup.link(Arrays.asList(large, createBlock("/x.java", 0, 30)));
+        DuplicationGroup.link(Arrays.asList(small, createBlock("/y.java", 1, 5), createBlock("/z.java", 1, 5)));
+        annotations.add(large);
+        annotations.add(small);
+        annotations.add(medium);
+
+        DuplicationGroupIndex index = new DuplicationGroupIndex(annotations);
+
+        assertEquals("Wrong page", Arrays.asList(large, small),
+                index.getPage(0, 2, DuplicationGroupIndex.SORT_BY_FILE, true));
+        assertEquals("Wrong page", Arrays.asList(medium),
+                index.getPage(2, 2, DuplicationGroupIndex.SORT_BY_FILE, true));
+        assertEquals("Wrong page", Arrays.asList(small, medium, large),
+                index.getPage(0, 10, DuplicationGroupIndex.SORT_BY_LINES, true));
+        assertEquals("Wrong page", Arrays.asList(large, medium),
+                index.getPage(0, 2, DuplicationGroupIndex.SORT_BY_LINES, false));
+        assertEquals("Wrong page", Arrays.asList(small, large),
+                index.getPage(0, 2, DuplicationGroupIndex.SORT_BY_LINKS, false));
+        assertEquals("Wrong page", Arrays.asList(small),
+                index.getPage(1, 1, "unknown", true));
+        assertTrue("Page should be empty", index.getPage(10, 5, DuplicationGroupIndex.SORT_BY_FILE, true).isEmpty());
+    }
+
+    private DuplicateCode createBlock(final String fileName, final int number, final int numberOfLines) {
+        DuplicateCode block = new DuplicateCode(Priority.NORMAL, 1, numberOfLines, fileName);
+        block.setNumber(number);
+        return block;
+    }
+
+    private DuplicateCode createBlock(final String fileName, final int number) {
+        return createBlock(fileName, number, 10);
+    }
+}
@@ -0,0 +1,118 @@
+package hudson.plugins.dry.parser;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import hudson.plugins.analysis.util.model.FileAnnotation;
+import hudson.plugins.analysis.util.model.Priority;
+
+/**
+ * Tests the class {@link DuplicationNumbering}.
+ *
+ * @author Ulli Hafner
+ */
+public class DuplicationNumberingTest {
+    private static final String FRAGMENT = "int a = 1;\n";
+
+    /**
+     * Verifies that the number depends on the content of the duplication only.
+     */
+    @Test
+    public void shouldComputeStableNumbers() {
+        int number = DuplicationNumbering.computeNumber(createDuplication("/a.java", "/b.java", 1, FRAGMENT));
+
+        assertEquals("Number not stable", number,
+                DuplicationNumbering.computeNumber(createDuplication("/a.java", "/b.java", 1, FRAGMENT)));
+        assertEquals("Number depends on order of blocks", number,
+                DuplicationNumbering.computeNumber(createDuplication("/b.java", "/a.java", 1, FRAGMENT)));
+        assertFalse("Number does not depend on line", number
+                == DuplicationNumbering.computeNumber(createDuplication("/a.java", "/b.java", 2, FRAGMENT)));
+        assertFalse("Number does not depend on fragment", number
+                == DuplicationNumbering.computeNumber(createDuplication("/a.java", "/b.java", 1, "other")));
+    }
+
+    /**
+     * Verifies that the number of a duplication does not depend on the workspace of the build.
+     */
+    @Test
+    public void shouldIgnoreWorkspace() {
+        List<DuplicateCode> linux = createDuplication("/var/jenkins/workspace/job/src/a.java",
+                "/var/jenkins/workspace/job/src/b.java", 1, FRAGMENT);
+        List<DuplicateCode> windows = createDuplication("C:\\agent\\workspace\\job-axis\\src\\a.java",
+                "C:\\agent\\workspace\\job-axis\\src\\b.java", 1, FRAGMENT);
+        DuplicationGroup.link(linux);
+        DuplicationGroup.link(windows);
+        for (DuplicateCode block : linux) {
+            block.setPathName("/var/jenkins/workspace/job/");
+        }
+        for (DuplicateCode block : windows) {
+            block.setPathName("C:\\agent\\workspace\\job-axis");
+        }
+
+        List<DuplicateCode> blocks = new ArrayList<DuplicateCode>(linux);
+        blocks.addAll(windows);
+        DuplicationNumbering.reassign(blocks);
+
+        assertEquals("Number depends on workspace", linux.get(0).getNumber(), windows.get(0).getNumber());
+        assertEquals("Wrong number", linux.get(0).getNumber(), windows.get(1).getNumber());
+        List<DuplicateCode> relative = createDuplication("src/a.java", "src/b.java", 1, FRAGMENT);
+        DuplicationNumbering.assign(relative);
+        assertEquals("Wrong number", relative.get(0).getNumber(), linux.get(1).getNumber());
+        assertEquals("Wrong relative file name", "src/a.java",
+                DuplicationNumbering.getRelativeFileName(windows.get(0)));
+    }
+
+    /**
+     * Verifies that equal duplications get the same number, no matter how many duplications have been numbered
+     * before.
+     */
+    @Test
+    public void shouldAssignNumberToAllBlocks() {
+        List<DuplicateCode> first = createDuplication("/a.java", "/b.java", 1, FRAGMENT);
+        List<DuplicateCode> second = createDuplication("/a.java", "/b.java", 1, FRAGMENT);
+
+        int number = DuplicationNumbering.assign(first);
+
+        assertEquals("Wrong number", number, DuplicationNumbering.computeNumber(first));
+        assertEquals("Number depends on previous duplications", number, DuplicationNumbering.assign(second));
+        assertEquals("Wrong number", first.get(0).getNumber(), first.get(1).getNumber());
+        assertEquals("Wrong number", first.get(0).getNumber(), second.get(0).getNumber());
+    }
+
+    /**
+     * Verifies that different duplications with the same number are not filtered.
+     */
+    @Test
+    public void shouldKeepDifferentDuplicationsWithSameNumber() {
+        List<DuplicateCode> first = createDuplication("/a.java", "/b.java", 1, FRAGMENT);
+        List<DuplicateCode> second = createDuplication("/c.java", "/d.java", 1, FRAGMENT);
+        DuplicationGroup.link(first);
+        DuplicationGroup.link(second);
+        for (DuplicateCode block : second) {
+            block.setNumber(first.get(0).getNumber() - 1);
+        }
+
+        Set<FileAnnotation> annotations = new HashSet<FileAnnotation>();
+        annotations.addAll(first);
+        annotations.addAll(second);
+
+        assertEquals("Wrong number of duplications", 2, DuplicateCode.filter(annotations).size());
+    }
+
+    private List<DuplicateCode> createDuplication(final String firstFile, final String secondFile, final int line,
+            final String fragment) {
+        List<DuplicateCode> blocks = Arrays.asList(new DuplicateCode(Priority.NORMAL, line, 5, firstFile),
+                new DuplicateCode(Priority.NORMAL, line, 5, secondFile));
+        for (DuplicateCode block : blocks) {
+            block.setSourceCode(fragment);
+        }
+        return blocks;
+    }
+}
@@ -27,6 +27,7 @@ public class DuplicationSerializeModelTest extends AbstractSerializeModelTest {
 
     static {
         XSTREAM.alias("dry", DuplicateCode.class);
+        XSTREAM.alias("dry-group", DuplicationGroup.class);
     }
 
     /**
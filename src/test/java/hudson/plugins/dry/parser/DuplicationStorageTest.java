@@ -0,0 +1,178 @@
+package hudson.plugins.dry.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import hudson.plugins.analysis.util.model.FileAnnotation;
+import hudson.plugins.analysis.util.model.Priority;
+
+/**
+ * Tests the class {@link DuplicationStorage}.
+ *
+ * @author Ulli Hafner
+ */
+public class DuplicationStorageTest {
+    private static final String FRAGMENT = "int a = 1;\nint b = 2;\n";
+
+    private File file;
+
+    /**
+     * Creates the storage file.
+     *
+     * @throws IOException
+     *             if the file could not be created
+     */
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("dry-warnings", ".bin");
+    }
+
+    /**
+     * Deletes the storage file.
+     */
+    @After
+    public void deleteFile() {
+        FileUtils.deleteQuietly(file);
+    }
+
+    /**
+     * Verifies that all properties of the duplications and their groups are restored.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldRestoreDuplications() throws IOException {
+        DuplicateCode first = createBlock("/src/First.java", 10, FRAGMENT);
+        first.setModuleName("module");
+        first.setPackageName("edu.hm");
+        first.setPathName("/src");
+        first.setContextHashCode(4711L);
+        first.setAuthorName("author");
+        DuplicateCode second = createBlock("/src/Second.java", 20, FRAGMENT);
+        DuplicateCode other = createBlock("/src/Other.java", 30, null);
+        DuplicateCode different = createBlock("/src/Different.java", 40, "different");
+        DuplicateCode unlinked = createBlock("/src/First.java", 50, "unlinked");
+        DuplicationGroup.link(Arrays.asList(first, second, other));
+        DuplicationGroup.link(Arrays.asList(different, createBlock("/src/Filtered.java", 1, "filtered")));
+
+        List<FileAnnotation> annotations = new ArrayList<FileAnnotation>();
+        annotations.add(first);
+        annotations.add(second);
+        annotations.add(other);
+        annotations.add(different);
+        annotations.add(unlinked);
+
+        DuplicationStorage storage = new DuplicationStorage(file);
+        storage.write(annotations);
+        List<FileAnnotation> restored = storage.read();
+
+        assertEquals("Wrong number of annotations", annotations.size(), restored.size());
+        for (int i = 0; i < annotations.size(); i++) {
+            assertEquals("Wrong annotation", annotations.get(i), restored.get(i));
+            assertEquals("Wrong number", ((DuplicateCode)annotations.get(i)).getNumber(),
+                    ((DuplicateCode)restored.get(i)).getNumber());
+        }
+
+        DuplicateCode restoredFirst = (DuplicateCode)restored.get(0);
+        assertEquals("Wrong module", "module", restoredFirst.getModuleName());
+        assertEquals("Wrong package", "edu.hm", restoredFirst.getPackageName());
+        assertEquals("Wrong path", "/src", restoredFirst.getPathName());
+        assertEquals("Wrong context hash code", 4711L, restoredFirst.getContextHashCode());
+        assertEquals("Wrong author", "author", restoredFirst.getAuthorName());
+        assertNull("Wrong module", restored.get(2).getModuleName());
+
+        assertSame("Wrong group", restoredFirst.getGroup(), ((DuplicateCode)restored.get(1)).getGroup());
+        assertNull("Wrong fragment", restoredFirst.getGroup().getSourceCode());
+        assertNull("Wrong fragment", ((DuplicateCode)restored.get(2)).getSourceCode());
+        assertEquals("Wrong links", 2, restoredFirst.getLinks().size());
+        assertEquals("Wrong links", 1, ((DuplicateCode)restored.get(3)).getLinks().size());
+        assertNull("Wrong group", ((DuplicateCode)restored.get(4)).getGroup());
+        assertEquals("Wrong fragment", "unlinked", ((DuplicateCode)restored.get(4)).getSourceCode());
+    }
+
+    /**
+     * Verifies that the visitor receives the duplications in the order they have been written.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldVisitDuplications() throws IOException {
+        DuplicateCode first = createBlock("/src/First.java", 1, FRAGMENT);
+        DuplicateCode second = createBlock("/src/Second.java", 1, FRAGMENT);
+        DuplicateCode single = createBlock("/src/Single.java", 1, "single");
+        DuplicationGroup.link(Arrays.asList(first, second));
+        DuplicationStorage storage = new DuplicationStorage(file);
+        storage.write(new ArrayList<FileAnnotation>(Arrays.asList(first, second, single)));
+
+        final List<List<DuplicateCode>> visited = new ArrayList<List<DuplicateCode>>();
+        storage.accept(new DuplicationStorage.Visitor() {
+            @Override
+            public void visit(final List<DuplicateCode> blocks) {
+                visited.add(blocks);
+            }
+        });
+
+        assertEquals("Wrong number of duplications", 2, visited.size());
+        assertEquals("Wrong blocks", Arrays.asList(first, second), visited.get(0));
+        assertEquals("Wrong blocks", Arrays.asList(single), visited.get(1));
+    }
+
+    /**
+     * Verifies that the similarity of a group of similar blocks is restored.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldRestoreSimilarity() throws IOException {
+        DuplicateCode first = createBlock("/src/First.java", 1, FRAGMENT);
+        DuplicateCode second = createBlock("/src/Second.java", 1, "similar");
+        DuplicationGroup.link(Arrays.asList(first, second), 0.85);
+        DuplicateCode exact = createBlock("/src/Exact.java", 1, FRAGMENT);
+        DuplicationGroup.link(Arrays.asList(exact, createBlock("/src/Copy.java", 1, FRAGMENT)));
+        DuplicationStorage storage = new DuplicationStorage(file);
+        storage.write(new ArrayList<FileAnnotation>(Arrays.asList(first, second, exact)));
+
+        List<FileAnnotation> restored = storage.read();
+
+        DuplicationGroup similar = ((DuplicateCode)restored.get(0)).getGroup();
+        assertEquals("Wrong similarity", 0.85, similar.getSimilarity(), 0.0001);
+        assertTrue("Not similar", similar.isSimilar());
+        assertFalse("Similar", ((DuplicateCode)restored.get(2)).getGroup().isSimilar());
+    }
+
+    /**
+     * Verifies that an incomplete file is rejected.
+     *
+     * @throws IOException
+     *             expected
+     */
+    @Test(expected = IOException.class)
+    public void shouldRejectIncompleteFile() throws IOException {
+        DuplicationStorage storage = new DuplicationStorage(file);
+        storage.write(new ArrayList<FileAnnotation>(Arrays.asList(createBlock("/src/First.java", 1, FRAGMENT))));
+        byte[] content = FileUtils.readFileToByteArray(file);
+        FileUtils.writeByteArrayToFile(file, Arrays.copyOf(content, content.length - 1));
+
+        storage.read();
+    }
+
+    private DuplicateCode createBlock(final String fileName, final int line, final String fragment) {
+        DuplicateCode block = new DuplicateCode(Priority.NORMAL, line, 10, fileName);
+        block.setSourceCode(fragment);
+        block.setNumber(line);
+        return block;
+    }
+}
@@ -0,0 +1,89 @@
+package hudson.plugins.dry.parser;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+import hudson.plugins.analysis.util.model.Priority;
+
+/**
+ * Tests the class {@link FragmentFormatter}.
+ *
+ * @author Ulli Hafner
+ */
+public class FragmentFormatterTest {
+    private static final String FRAGMENT = "public class Test {\n    int value;\n}\n";
+
+    /**
+     * Clears the cache of formatted fragments.
+     */
+    @After
+    public void clearCache() {
+        FragmentFormatter.clear();
+    }
+
+    /**
+     * Verifies that all blocks of a duplication share the same formatted fragment.
+     */
+    @Test
+    public void shouldFormatFragmentOfDuplicationOnce() {
+        DuplicateCode first = createBlock(1, 10);
+        DuplicateCode second = createBlock(20, 10);
+        DuplicationGroup.link(Arrays.asList(first, second));
+
+        String html = first.getFormattedSourceCode();
+
+        assertSame("Fragment formatted twice", html, second.getFormattedSourceCode());
+        assertSame("Fragment formatted twice", html, first.getFormattedSourceCode());
+        assertEquals("Wrong number of cached fragments", 1, FragmentFormatter.size());
+    }
+
+    /**
+     * Verifies that only duplications that are shown as tooltip are formatted in advance.
+     */
+    @Test
+    public void shouldPreloadSmallDuplications() {
+        DuplicateCode small = createBlock(1, FragmentFormatter.MAXIMUM_TOOLTIP_LINES - 1);
+        DuplicateCode large = createBlock(1, FragmentFormatter.MAXIMUM_TOOLTIP_LINES);
+        large.setSourceCode(FRAGMENT + FRAGMENT);
+        DuplicateCode empty = createBlock(1, 10);
+        empty.setSourceCode(null);
+
+        FragmentFormatter.preload(Arrays.asList(small, large, empty));
+
+        assertEquals("Wrong number of cached fragments", 1, FragmentFormatter.size());
+        assertEquals("Wrong formatted fragment", "", empty.getFormattedSourceCode());
+    }
+
+    /**
+     * Verifies that the cache is limited by the number of characters and evicts the least recently used fragments.
+     */
+    @Test
+    public void shouldLimitCacheByCharacters() {
+        FragmentFormatter.HtmlCache cache = new FragmentFormatter.HtmlCache(10);
+
+        cache.put("a", "1234");
+        cache.put("b", "1234");
+        assertEquals("Wrong number of characters", 8, cache.getCharacters());
+        assertNotNull("Fragment evicted", cache.get("a"));
+
+        cache.put("c", "1234");
+        assertEquals("Wrong number of characters", 8, cache.getCharacters());
+        assertNull("Least recently used fragment not evicted", cache.get("b"));
+        assertNotNull("Fragment evicted", cache.get("a"));
+        assertNotNull("Fragment evicted", cache.get("c"));
+
+        cache.put("d", "12345678901");
+        assertNull("Too large fragment cached", cache.get("d"));
+        assertEquals("Wrong number of fragments", 2, cache.size());
+    }
+
+    private DuplicateCode createBlock(final int line, final int numberOfLines) {
+        DuplicateCode block = new DuplicateCode(Priority.NORMAL, line, numberOfLines, "/Test.java");
+        block.setSourceCode(FRAGMENT);
+        return block;
+    }
+}
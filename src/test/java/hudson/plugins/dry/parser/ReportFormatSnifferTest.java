@@ -0,0 +1,85 @@
+package hudson.plugins.dry.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * Tests the class {@link ReportFormatSniffer}.
+ */
+public class ReportFormatSnifferTest {
+    private static final String WRONG_ROOT_ELEMENT = "Wrong root element detected";
+
+    /**
+     * Verifies that the root elements of all supported formats are detected.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldDetectRootElementOfAllFormats() throws IOException {
+        assertEquals(WRONG_ROOT_ELEMENT, "pmd-cpd", sniff("cpd/cpd.xml"));
+        assertEquals(WRONG_ROOT_ELEMENT, "pmd-cpd", sniff("cpd/pmd-cpd.xml"));
+        assertEquals(WRONG_ROOT_ELEMENT, "pmd-cpd", sniff("cpd/issue12516.xml"));
+        assertEquals(WRONG_ROOT_ELEMENT, "simian", sniff("simian/fourfile.xml"));
+        assertEquals(WRONG_ROOT_ELEMENT, "DuplicatesReport", sniff("dupfinder/sorucecode.xml"));
+        assertEquals(WRONG_ROOT_ELEMENT, "SomeThing", sniff("cpd/otherfile.xml"));
+    }
+
+    /**
+     * Verifies that the stream is reset so that the report can be parsed afterwards.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldResetStream() throws IOException {
+        InputStream stream = open("cpd/issue22356.xml");
+        try {
+            ReportFormatSniffer.sniffRootElement(stream);
+
+            String content = IOUtils.toString(stream, "ISO-8859-1");
+            assertTrue("Stream has not been reset", content.startsWith("<?xml"));
+            assertTrue("Stream is not complete", content.trim().endsWith("</pmd-cpd>"));
+        }
+        finally {
+            IOUtils.closeQuietly(stream);
+        }
+    }
+
+    /**
+     * Verifies that files without a well-formed root element are not detected.
+     *
+     * @throws IOException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldNotDetectRootElementOfInvalidFiles() throws IOException {
+        assertNull(WRONG_ROOT_ELEMENT, sniff(new ByteArrayInputStream("no xml".getBytes("UTF-8"))));
+        assertNull(WRONG_ROOT_ELEMENT, sniff(new ByteArrayInputStream(new byte[0])));
+    }
+
+    private String sniff(final String fileName) throws IOException {
+        return sniff(ReportFormatSnifferTest.class.getResourceAsStream(fileName));
+    }
+
+    private String sniff(final InputStream inputStream) throws IOException {
+        InputStream stream = new BufferedInputStream(inputStream);
+        try {
+            return ReportFormatSniffer.sniffRootElement(stream);
+        }
+        finally {
+            IOUtils.closeQuietly(stream);
+        }
+    }
+
+    private InputStream open(final String fileName) {
+        return new BufferedInputStream(ReportFormatSnifferTest.class.getResourceAsStream(fileName));
+    }
+}
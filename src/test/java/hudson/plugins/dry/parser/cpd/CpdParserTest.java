@@ -2,14 +2,17 @@ package hudson.plugins.dry.parser.cpd;
 
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import org.junit.Test;
 
 import static org.junit.Assert.*;
 
 import hudson.plugins.dry.parser.DuplicateCode;
+import hudson.plugins.dry.parser.DuplicationHandler;
 
 /**
  *  Tests the extraction of PMD's CPD analysis results.
@@ -159,6 +162,54 @@ public class CpdParserTest {
         assertTrue("Wrong duplicate code fragment", duplication.getSourceCode().startsWith("public HealthAwarePublisher(final String threshold, final String healthy, final String unHealthy"));
     }
 
+    /**
+     * Checks whether each duplication is reported separately while the file is read.
+     *
+     * @throws InvocationTargetException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldReportEachDuplicationWhenRead() throws InvocationTargetException {
+        final List<List<DuplicateCode>> duplications = new ArrayList<List<DuplicateCode>>();
+        new CpdParser(50, 25).parse(getResource("cpd.xml"), "module", new DuplicationHandler() {
+            @Override
+            public void handle(final List<DuplicateCode> codeBlocks) {
+                duplications.add(codeBlocks);
+            }
+        });
+
+        assertEquals(ERROR_MESSAGE, 2, duplications.size());
+        for (List<DuplicateCode> codeBlocks : duplications) {
+            assertEquals(ERROR_MESSAGE, 2, codeBlocks.size());
+            DuplicateCode first = codeBlocks.get(0);
+            DuplicateCode second = codeBlocks.get(1);
+            assertEquals("Wrong duplication number", first.getNumber(), second.getNumber());
+            assertSame("Wrong link", second, first.getLinks().iterator().next());
+            assertSame("Wrong link", first, second.getLinks().iterator().next());
+        }
+        assertFalse("Wrong duplication number",
+                duplications.get(0).get(0).getNumber() == duplications.get(1).get(0).getNumber());
+    }
+
+    /**
+     * Checks whether the duplication numbers do not change if the same report is parsed again.
+     *
+     * @throws InvocationTargetException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldAssignStableDuplicationNumbers() throws InvocationTargetException {
+        List<DuplicateCode> first = new ArrayList<DuplicateCode>(
+                new CpdParser(50, 25).parse(getResource("cpd.xml"), "module"));
+        List<DuplicateCode> second = new ArrayList<DuplicateCode>(
+                new CpdParser(50, 25).parse(getResource("cpd.xml"), "module"));
+
+        assertEquals(ERROR_MESSAGE, first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals("Wrong duplication number", first.get(i).getNumber(), second.get(i).getNumber());
+        }
+    }
+
     /**
      * Checks whether we don't accept a file of the wrong type.
      */
@@ -0,0 +1,118 @@
+package hudson.plugins.dry.parser.detector;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the implementations of {@link CloneDetector}.
+ *
+ * @author Ulli Hafner
+ */
+public abstract class AbstractCloneDetectorTest {
+    private static final String METHOD = "public int compute(int value) {\n"
+            + "    int result = 0;\n"
+            + "    for (int i = 0; i < value; i++) {\n"
+            + "        result += i * value;\n"
+            + "    }\n"
+            + "    return result;\n"
+            + "}\n";
+    private static final int METHOD_TOKENS = 41;
+
+    /**
+     * Creates the detector under test.
+     *
+     * @return the detector
+     */
+    protected abstract CloneDetector createDetector();
+
+    /**
+     * Verifies that a method that is copied to another file is found with the correct lines.
+     */
+    @Test
+    public void shouldFindCloneInTwoFiles() {
+        List<TokenizedFile> files = tokenize("class A {\n int x;\n" + METHOD + "}\n",
+                "class B {\n\n\n String name;\n" + METHOD + " void run() {}\n}\n");
+
+        List<Clone> clones = createDetector().detect(files, 20);
+
+        assertEquals("Wrong number of clones", 1, clones.size());
+        Clone clone = clones.get(0);
+        assertEquals("Wrong number of occurrences", 2, clone.size());
+        assertEquals("Wrong number of tokens", METHOD_TOKENS + 1, getLength(clone.getOccurrences().get(0)));
+        verifyLines(files, clone, 0, 2, 9);
+        verifyLines(files, clone, 1, 4, 11);
+    }
+
+    /**
+     * Verifies that a method that is copied three times within the same file is reported with all occurrences.
+     */
+    @Test
+    public void shouldFindClonesInSameFile() {
+        List<TokenizedFile> files = tokenize("class A {\n" + METHOD + "int a;\n" + METHOD + "int b;\n" + METHOD
+                + "}\n");
+
+        List<Clone> clones = createDetector().detect(files, 20);
+
+        Clone clone = null;
+        for (Clone candidate : clones) {
+            if (candidate.size() == 3) {
+                clone = candidate;
+            }
+        }
+        assertNotNull("No clone with three occurrences", clone);
+        for (Clone.Occurrence occurrence : clone.getOccurrences()) {
+            assertTrue("Clone too short", getLength(occurrence) >= METHOD_TOKENS);
+        }
+    }
+
+    /**
+     * Verifies that comments, white space, imports, and blocks shorter than the minimum are ignored.
+     */
+    @Test
+    public void shouldIgnoreShortBlocksAndComments() {
+        List<TokenizedFile> files = tokenize("import java.util.List;\nclass A {\n" + METHOD + "}\n",
+                "import java.util.List;\n// comment\nclass B {\n /* block\n comment */" + METHOD.replace("\n", "\n\n")
+                        + "}\n");
+
+        assertEquals("Short block found", 0, createDetector().detect(files, 100).size());
+
+        List<Clone> clones = createDetector().detect(files, 20);
+        assertEquals("Wrong number of clones", 1, clones.size());
+        verifyLines(files, clones.get(0), 1, 3, 19);
+    }
+
+    /**
+     * Verifies that a file that contains no duplications is not reported.
+     */
+    @Test
+    public void shouldNotReportUniqueCode() {
+        List<TokenizedFile> files = tokenize("class A {\n" + METHOD + "}\n", "class B { int a = 1; }\n");
+
+        assertTrue("Clones found", createDetector().detect(files, 10).isEmpty());
+    }
+
+    private int getLength(final Clone.Occurrence occurrence) {
+        return occurrence.getEnd() - occurrence.getStart();
+    }
+
+    private void verifyLines(final List<TokenizedFile> files, final Clone clone, final int index,
+            final int firstLine, final int lastLine) {
+        Clone.Occurrence occurrence = clone.getOccurrences().get(index);
+        TokenizedFile file = files.get(occurrence.getFile());
+        assertEquals("Wrong first line", firstLine, file.getLine(occurrence.getStart()));
+        assertEquals("Wrong last line", lastLine, file.getLine(occurrence.getEnd() - 1));
+    }
+
+    private List<TokenizedFile> tokenize(final String... contents) {
+        TokenDictionary dictionary = new TokenDictionary();
+        List<TokenizedFile> files = new ArrayList<TokenizedFile>();
+        for (int i = 0; i < contents.length; i++) {
+            files.add(new Tokenizer(dictionary).tokenize("/file" + i + ".java", contents[i]));
+        }
+        return files;
+    }
+}
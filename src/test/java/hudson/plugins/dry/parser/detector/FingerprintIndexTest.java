@@ -0,0 +1,217 @@
+package hudson.plugins.dry.parser.detector;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import hudson.plugins.dry.parser.DuplicateCode;
+
+/**
+ * Tests the class {@link FingerprintIndex}.
+ *
+ * @author Ulli Hafner
+ */
+public class FingerprintIndexTest {
+    private static final String ENCODING = "UTF-8";
+    private static final String METHOD = "public int compute(int value) {\n"
+            + "    int result = 0;\n"
+            + "    for (int i = 0; i < value; i++) {\n"
+            + "        result += i * value;\n"
+            + "    }\n"
+            + "    return result;\n"
+            + "}\n";
+    private static final String OTHER_METHOD = "public void print(String[] names) {\n"
+            + "    for (String name : names) {\n"
+            + "        System.out.println(name.trim());\n"
+            + "    }\n"
+            + "    System.out.flush();\n"
+            + "}\n";
+
+    private File folder;
+    private File storage;
+    private List<File> files;
+
+    /**
+     * Creates a folder with source files.
+     *
+     * @throws IOException
+     *             if the folder could not be created
+     */
+    @Before
+    public void createFolder() throws IOException {
+        folder = File.createTempFile("dry", "index");
+        FileUtils.forceDelete(folder);
+        storage = FingerprintIndex.getStorage(folder.getAbsolutePath());
+        files = new ArrayList<File>();
+        write("A.java", "class A {\n int x;\n" + METHOD + "}\n");
+        write("B.java", "class B {\n\n String name;\n" + METHOD + "}\n");
+        write("C.java", "class C {\n" + OTHER_METHOD + "}\n");
+        write("D.java", "class D {\n int y;\n}\n");
+    }
+
+    /**
+     * Deletes the folder.
+     *
+     * @throws IOException
+     *             if the folder could not be deleted
+     */
+    @After
+    public void deleteFolder() throws IOException {
+        FileUtils.deleteDirectory(folder);
+        FileUtils.deleteDirectory(storage.getParentFile());
+    }
+
+    /**
+     * Verifies that unchanged files are neither tokenized nor compared again, and that the incremental detection
+     * finds the same duplications as the detection of all files.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldAnalyzeChangedFilesOnly() throws Exception {
+        SourceCodeDetector detector = createDetector();
+        verifyDetection(detector, 4, 4);
+        assertTrue("Index not saved", storage.isFile());
+
+        verifyDetection(detector, 0, 0);
+
+        write("D.java", "class D {\n int y;\n" + OTHER_METHOD + "}\n");
+        verifyDetection(detector, 1, 2);
+
+        write("E.java", "class E {\n" + METHOD + "}\n");
+        verifyDetection(detector, 1, 3);
+
+        FileUtils.forceDelete(files.remove(0));
+        verifyDetection(detector, 0, 2);
+
+        write("B.java", "class B {\n}\n");
+        verifyDetection(detector, 1, 2);
+    }
+
+    /**
+     * Verifies that an index that has been created with another minimum number of tokens is discarded.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldDiscardIndexWithOtherSettings() throws Exception {
+        verifyDetection(createDetector(), 4, 4);
+
+        SourceCodeDetector detector = new SourceCodeDetector(50, 25, 25, ENCODING);
+        verifyDetection(detector, 4, 4);
+        verifyDetection(detector, 0, 0);
+    }
+
+    /**
+     * Verifies that the duplications of unchanged files are created from the index without reading these files.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldNotReadUnchangedFiles() throws Exception {
+        SourceCodeDetector detector = createDetector();
+        verifyDetection(detector, 4, 4);
+
+        File file = files.get(0);
+        long lastModified = file.lastModified();
+        String content = FileUtils.readFileToString(file, ENCODING);
+        FileUtils.writeStringToFile(file, content.replace("result", "RESULT"), ENCODING);
+        assertTrue("Modification time not restored", file.setLastModified(lastModified));
+
+        FingerprintIndex index = detector.loadFingerprintIndex(storage);
+        Collection<DuplicateCode> duplications = detector.detect(files, Collections.nCopies(files.size(), ""), 1,
+                index);
+
+        assertEquals("Wrong number of analyzed files", 0, detector.getNumberOfAnalyzedFiles());
+        assertFalse("No duplications", duplications.isEmpty());
+        for (DuplicateCode duplication : duplications) {
+            assertTrue("Unchanged file read again", duplication.getSourceCode().contains("result"));
+        }
+    }
+
+    /**
+     * Verifies that saving an index whose storage has been truncated fails instead of copying the tokens forever.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test(expected = IOException.class)
+    public void shouldRejectTruncatedStorage() throws Exception {
+        SourceCodeDetector detector = createDetector();
+        verifyDetection(detector, 4, 4);
+
+        FingerprintIndex index = detector.loadFingerprintIndex(storage);
+        detector.detect(files, Collections.nCopies(files.size(), ""), 1, index);
+        byte[] content = FileUtils.readFileToByteArray(storage);
+        FileUtils.writeByteArrayToFile(storage, Arrays.copyOf(content, 32));
+
+        index.save();
+    }
+
+    /**
+     * Verifies that tokens whose encoded length exceeds the 64 KB limit of {@code writeUTF} are stored and read
+     * again.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldStoreLongTokens() throws Exception {
+        write("F.java", "class F {\n String text = \"" + StringUtils.repeat("\u00e4", 40000) + "\";\n}\n");
+
+        SourceCodeDetector detector = createDetector();
+        verifyDetection(detector, 5, 5);
+        verifyDetection(detector, 0, 0);
+    }
+
+    private SourceCodeDetector createDetector() {
+        return new SourceCodeDetector(50, 25, 20, ENCODING);
+    }
+
+    private void verifyDetection(final SourceCodeDetector detector, final int changedFiles, final int analyzedFiles)
+            throws Exception {
+        List<String> modules = Collections.nCopies(files.size(), "");
+
+        FingerprintIndex index = detector.loadFingerprintIndex(storage);
+        Collection<DuplicateCode> incremental = detector.detect(files, modules, 1, index);
+        index.save();
+        assertEquals("Wrong number of changed files", changedFiles, detector.getNumberOfChangedFiles());
+        assertEquals("Wrong number of analyzed files", analyzedFiles, detector.getNumberOfAnalyzedFiles());
+
+        assertEquals("Wrong duplications", describe(detector.detect(files, modules, 1)), describe(incremental));
+    }
+
+    private List<String> describe(final Collection<DuplicateCode> duplications) {
+        List<String> blocks = new ArrayList<String>();
+        for (DuplicateCode duplication : duplications) {
+            blocks.add(new File(duplication.getFileName()).getName() + ":" + duplication.getPrimaryLineNumber()
+                    + "-" + duplication.getNumberOfLines() + ":" + duplication.size() + ":"
+                    + duplication.getContextHashCode() + ":" + duplication.getSourceCode());
+        }
+        Collections.sort(blocks);
+        return blocks;
+    }
+
+    private void write(final String fileName, final String content) throws IOException {
+        File file = new File(folder, fileName);
+        FileUtils.writeStringToFile(file, content, ENCODING);
+        if (!files.contains(file)) {
+            files.add(file);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package hudson.plugins.dry.parser.detector;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the class {@link NearMissDetector}.
+ *
+ * @author Ulli Hafner
+ */
+public class NearMissDetectorTest {
+    private static final String METHOD = "public int compute(int value) {\n"
+            + "    int result = 0;\n"
+            + "    for (int i = 0; i < value; i++) {\n"
+            + "        result += i * value;\n"
+            + "        if (result > 100) {\n"
+            + "            result = result / 2;\n"
+            + "        }\n"
+            + "    }\n"
+            + "    return result;\n"
+            + "}\n";
+    private static final String EDITED_METHOD = "public int sum(int count) {\n"
+            + "    int total = 1;\n"
+            + "    for (int j = 0; j < count; j++) {\n"
+            + "        total += j * count;\n"
+            + "        if (total > 200) {\n"
+            + "            total = total / 3;\n"
+            + "        }\n"
+            + "    }\n"
+            + "    log(total);\n"
+            + "    return total;\n"
+            + "}\n";
+    private static final String OTHER_METHOD = "public void print(String[] names) {\n"
+            + "    for (String name : names) {\n"
+            + "        System.out.println(name.trim());\n"
+            + "    }\n"
+            + "    System.out.flush();\n"
+            + "    return;\n"
+            + "}\n";
+
+    /**
+     * Verifies that a copied and edited method is found with its similarity.
+     */
+    @Test
+    public void shouldFindEditedCopy() {
+        TokenDictionary dictionary = new TokenDictionary();
+        List<TokenizedFile> files = tokenize(dictionary, "class A {\n" + METHOD + OTHER_METHOD + "}\n",
+                "class B {\n int x;\n" + EDITED_METHOD + "}\n");
+
+        List<Clone> clones = new NearMissDetector(dictionary, 0.7).detect(files, 20);
+
+        assertEquals("Wrong number of clones", 1, clones.size());
+        Clone clone = clones.get(0);
+        assertEquals("Wrong number of occurrences", 2, clone.size());
+        assertTrue("Wrong similarity: " + clone.getSimilarity(), clone.getSimilarity() >= 0.7
+                && clone.getSimilarity() < 1.0);
+        Clone.Occurrence occurrence = clone.getOccurrences().get(1);
+        assertEquals("Wrong file", 1, occurrence.getFile());
+        assertEquals("Wrong first line", 3, files.get(1).getLine(occurrence.getStart()));
+        assertEquals("Wrong last line", 13, files.get(1).getLine(occurrence.getEnd() - 1));
+    }
+
+    /**
+     * Verifies that blocks below the threshold and identical blocks are not reported.
+     */
+    @Test
+    public void shouldSkipDissimilarAndIdenticalBlocks() {
+        TokenDictionary dictionary = new TokenDictionary();
+        List<TokenizedFile> files = tokenize(dictionary, "class A {\n" + METHOD + "}\n",
+                "class B {\n" + OTHER_METHOD + "}\n", "class A {\n" + METHOD + "}\n");
+
+        List<Clone> clones = new NearMissDetector(dictionary, 0.7).detect(files, 20);
+
+        assertTrue("Clones found: " + clones.size(), clones.isEmpty());
+    }
+
+    private List<TokenizedFile> tokenize(final TokenDictionary dictionary, final String... contents) {
+        List<TokenizedFile> files = new ArrayList<TokenizedFile>();
+        for (int i = 0; i < contents.length; i++) {
+            files.add(new Tokenizer(dictionary).tokenize("/file" + i + ".java", contents[i]));
+        }
+        return files;
+    }
+}
@@ -0,0 +1,13 @@
+package hudson.plugins.dry.parser.detector;
+
+/**
+ * Tests the class {@link RollingHashDetector}.
+ *
+ * @author Ulli Hafner
+ */
+public class RollingHashDetectorTest extends AbstractCloneDetectorTest {
+    @Override
+    protected CloneDetector createDetector() {
+        return new RollingHashDetector();
+    }
+}
@@ -0,0 +1,205 @@
+package hudson.plugins.dry.parser.detector;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import hudson.plugins.analysis.util.PackageDetectors;
+import hudson.plugins.analysis.util.model.Priority;
+import hudson.plugins.dry.parser.BatchContextHashCode;
+import hudson.plugins.dry.parser.DuplicateCode;
+
+/**
+ * Tests the class {@link SourceCodeDetector}.
+ *
+ * @author Ulli Hafner
+ */
+public class SourceCodeDetectorTest {
+    private static final String ENCODING = "UTF-8";
+    private static final String METHOD = "public int compute(int value) {\n"
+            + "    int result = 0;\n"
+            + "    for (int i = 0; i < value; i++) {\n"
+            + "        result += i * value;\n"
+            + "    }\n"
+            + "    return result;\n"
+            + "}\n";
+
+    private File folder;
+
+    /**
+     * Creates the folder for the source files.
+     *
+     * @throws IOException
+     *             if the folder could not be created
+     */
+    @Before
+    public void createFolder() throws IOException {
+        folder = File.createTempFile("dry", "sources");
+        FileUtils.forceDelete(folder);
+        FileUtils.forceMkdir(folder);
+    }
+
+    /**
+     * Deletes the folder.
+     *
+     * @throws IOException
+     *             if the folder could not be deleted
+     */
+    @After
+    public void deleteFolder() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    /**
+     * Verifies that the lines, source code fragments, context hash codes and modules of the duplications are read
+     * from the source files.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldCreateDuplicationsOfClones() throws Exception {
+        File first = write("A.java", "class A {\n int x;\n" + METHOD + "}\n");
+        File second = write("B.java", "class B {\n\n\n String name;\n" + METHOD + " void run() {}\n}\n");
+
+        List<DuplicateCode> duplications = detect(new SourceCodeDetector(50, 25, 20, ENCODING), 1, first, second);
+
+        assertEquals("Wrong number of duplications", 2, duplications.size());
+        DuplicateCode a = find(duplications, first);
+        DuplicateCode b = find(duplications, second);
+        verifyBlock(a, 2, " int x;\n" + METHOD);
+        verifyBlock(b, 4, " String name;\n" + METHOD);
+        assertEquals("Wrong module", "module-A.java", a.getModuleName());
+        assertSame("Blocks not linked", a.getGroup(), b.getGroup());
+        assertEquals("Wrong number", a.getNumber(), b.getNumber());
+    }
+
+    /**
+     * Verifies that the package names of the duplications are detected from the lines of the source files.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldDetectPackageNames() throws Exception {
+        File first = write("A.java", "package edu.hm;\n\nclass A {\n" + METHOD + "}\n");
+        File second = write("B.java", "class B {\n" + METHOD + "}\n");
+
+        List<DuplicateCode> duplications = detect(new SourceCodeDetector(50, 25, 20, ENCODING), 1, first, second);
+
+        assertEquals("Wrong package", "edu.hm", find(duplications, first).getPackageName());
+        assertEquals("Wrong package", PackageDetectors.UNDEFINED_PACKAGE,
+                SourceCodeDetector.detectPackageName(second.getPath(), Arrays.asList("class B {", "}")));
+        assertEquals("Wrong namespace", "Edu.Hm", SourceCodeDetector.detectPackageName("A.cs",
+                Arrays.asList("using System;", "namespace Edu.Hm {", "}")));
+        assertEquals("Wrong package", PackageDetectors.UNDEFINED_PACKAGE,
+                SourceCodeDetector.detectPackageName("a.txt", Arrays.asList("package edu.hm;")));
+    }
+
+    /**
+     * Verifies that the priority is derived from the number of duplicate lines.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldDerivePriorityFromLines() throws Exception {
+        File first = write("A.java", "class A {\n int x;\n" + METHOD + "}\n");
+        File second = write("B.java", "class B {\n\n\n String name;\n" + METHOD + " void run() {}\n}\n");
+
+        verifyPriority(new SourceCodeDetector(8, 4, 20, ENCODING), Priority.HIGH, first, second);
+        verifyPriority(new SourceCodeDetector(9, 8, 20, ENCODING), Priority.NORMAL, first, second);
+        verifyPriority(new SourceCodeDetector(50, 25, 20, ENCODING), Priority.LOW, first, second);
+    }
+
+    /**
+     * Verifies that the files that are tokenized concurrently give the same duplications as the files that are
+     * tokenized one after another.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldTokenizeConcurrently() throws Exception {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < 40; i++) {
+            StringBuilder content = new StringBuilder("class C" + i + " {\n");
+            for (int j = 0; j < i % 3; j++) {
+                content.append(" int field").append(j).append(" = ").append(i).append(";\n");
+            }
+            content.append(i % 4 == 0 ? METHOD : METHOD.replace("result", "sum" + i % 4));
+            files.add(write("C" + i + ".java", content.append("}\n").toString()));
+        }
+        File[] all = files.toArray(new File[files.size()]);
+
+        List<String> sequential = describe(detect(new SourceCodeDetector(50, 25, 20, ENCODING), 1, all));
+        List<String> concurrent = describe(detect(new SourceCodeDetector(50, 25, 20, ENCODING), 8, all));
+
+        assertFalse("No duplications found", sequential.isEmpty());
+        assertEquals("Wrong duplications", sequential, concurrent);
+    }
+
+    private void verifyBlock(final DuplicateCode block, final int line, final String fragment) throws IOException {
+        int lines = fragment.split("\n").length;
+        assertEquals("Wrong line", line, block.getPrimaryLineNumber());
+        assertEquals("Wrong number of lines", lines, block.getNumberOfLines());
+        assertEquals("Wrong fragment", fragment, block.getSourceCode());
+        long context = new BatchContextHashCode().compute(block.getFileName(), new int[] {line}, ENCODING)[0];
+        assertEquals("Wrong context hash code", context * 31 + lines, block.getContextHashCode());
+    }
+
+    private void verifyPriority(final SourceCodeDetector detector, final Priority priority, final File... files)
+            throws IOException, InterruptedException {
+        for (DuplicateCode duplication : detect(detector, 1, files)) {
+            assertEquals("Wrong priority", priority, duplication.getPriority());
+        }
+    }
+
+    private DuplicateCode find(final List<DuplicateCode> duplications, final File file) {
+        for (DuplicateCode duplication : duplications) {
+            if (duplication.getFileName().equals(file.getAbsolutePath())) {
+                return duplication;
+            }
+        }
+        throw new AssertionError("No duplication in " + file);
+    }
+
+    private List<String> describe(final Collection<DuplicateCode> duplications) {
+        List<String> descriptions = new ArrayList<String>();
+        for (DuplicateCode duplication : duplications) {
+            descriptions.add(duplication.getFileName() + ":" + duplication.getPrimaryLineNumber() + ":"
+                    + duplication.getNumberOfLines() + ":" + duplication.getNumber() + ":"
+                    + duplication.getContextHashCode());
+        }
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+
+    private List<DuplicateCode> detect(final SourceCodeDetector detector, final int numberOfThreads,
+            final File... files) throws IOException, InterruptedException {
+        List<File> sources = new ArrayList<File>();
+        List<String> modules = new ArrayList<String>();
+        for (File file : files) {
+            sources.add(file);
+            modules.add("module-" + file.getName());
+        }
+        return new ArrayList<DuplicateCode>(detector.detect(sources, modules, numberOfThreads));
+    }
+
+    private File write(final String fileName, final String content) throws IOException {
+        File file = new File(folder, fileName);
+        FileUtils.writeStringToFile(file, content, ENCODING);
+        return file;
+    }
+}
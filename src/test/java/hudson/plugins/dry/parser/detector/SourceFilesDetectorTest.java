@@ -0,0 +1,105 @@
+package hudson.plugins.dry.parser.detector;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import hudson.plugins.analysis.core.ParserResult;
+import hudson.plugins.analysis.util.model.FileAnnotation;
+
+/**
+ * Tests the class {@link SourceFilesDetector}.
+ *
+ * @author Ulli Hafner
+ */
+public class SourceFilesDetectorTest {
+    private static final String ENCODING = "UTF-8";
+    private static final String METHOD = "public int compute(int value) {\n"
+            + "    int result = 0;\n"
+            + "    for (int i = 0; i < value; i++) {\n"
+            + "        result += i * value;\n"
+            + "    }\n"
+            + "    return result;\n"
+            + "}\n";
+
+    private File workspace;
+
+    /**
+     * Creates the workspace with the source files.
+     *
+     * @throws IOException
+     *             if the workspace could not be created
+     */
+    @Before
+    public void createWorkspace() throws IOException {
+        workspace = File.createTempFile("dry", "workspace");
+        FileUtils.forceDelete(workspace);
+        FileUtils.writeStringToFile(new File(workspace, "src/A.java"), "class A {\n int x;\n" + METHOD + "}\n",
+                ENCODING);
+        FileUtils.writeStringToFile(new File(workspace, "src/B.java"), "class B {\n String name;\n" + METHOD
+                + " void run() {}\n}\n", ENCODING);
+        FileUtils.writeStringToFile(new File(workspace, "README.txt"), METHOD, ENCODING);
+    }
+
+    /**
+     * Deletes the workspace and the fingerprint index.
+     *
+     * @throws IOException
+     *             if the workspace could not be deleted
+     */
+    @After
+    public void deleteWorkspace() throws IOException {
+        FileUtils.deleteDirectory(workspace);
+        FileUtils.deleteDirectory(FingerprintIndex.getStorage(workspace.getAbsolutePath()).getParentFile());
+    }
+
+    /**
+     * Verifies that the duplications of the source files that match the pattern are found and that the unchanged
+     * files are not tokenized again by the next detection.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldDetectDuplicationsOfMatchingFiles() throws Exception {
+        ParserResult result = detect("**/*.java");
+
+        assertEquals("Wrong number of duplications", 2, result.getNumberOfAnnotations());
+        for (FileAnnotation annotation : result.getAnnotations()) {
+            assertEquals("Wrong path", workspace.getAbsolutePath(), annotation.getPathName());
+            assertTrue("Wrong file", annotation.getFileName().endsWith(".java"));
+        }
+        assertTrue("Wrong log", result.getLogMessages().contains("in 2 files"));
+        assertTrue("Wrong log", result.getLogMessages().contains("tokenized 2 changed files"));
+        assertTrue("Index not saved", FingerprintIndex.getStorage(workspace.getAbsolutePath()).isFile());
+
+        result = detect("**/*.java");
+        assertEquals("Wrong number of duplications", 2, result.getNumberOfAnnotations());
+        assertTrue("Wrong log", result.getLogMessages().contains("tokenized 0 changed files"));
+    }
+
+    /**
+     * Verifies that an error is reported if no source file matches the pattern.
+     *
+     * @throws Exception
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldReportMissingFiles() throws Exception {
+        ParserResult result = detect("**/*.cs");
+
+        assertEquals("Wrong number of duplications", 0, result.getNumberOfAnnotations());
+        assertEquals("Wrong number of errors", 1, result.getErrorMessages().size());
+    }
+
+    private ParserResult detect(final String pattern) throws IOException, InterruptedException {
+        return new SourceFilesDetector(pattern, new SourceCodeDetector(50, 25, 20, ENCODING), false, 2)
+                .invoke(workspace, null);
+    }
+}
@@ -0,0 +1,72 @@
+package hudson.plugins.dry.parser.detector;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the class {@link SuffixArrayDetector}.
+ *
+ * @author Ulli Hafner
+ */
+public class SuffixArrayDetectorTest extends AbstractCloneDetectorTest {
+    @Override
+    protected CloneDetector createDetector() {
+        return new SuffixArrayDetector();
+    }
+
+    /**
+     * Verifies that a longer duplication of a subset of the occurrences is reported as well.
+     */
+    @Test
+    public void shouldFindNestedMaximalRepeats() {
+        List<TokenizedFile> files = Arrays.asList(
+                createFile(1, 10, 11, 12, 13, 14, 15, 16, 2),
+                createFile(3, 10, 11, 12, 13, 14, 15, 16, 4),
+                createFile(5, 10, 11, 12, 13, 6, 7, 8));
+
+        List<Clone> clones = createDetector().detect(files, 3);
+
+        assertEquals("Wrong number of clones", 2, clones.size());
+        for (Clone clone : clones) {
+            int length = clone.getOccurrences().get(0).getEnd() - clone.getOccurrences().get(0).getStart();
+            if (clone.size() == 3) {
+                assertEquals("Wrong length of short clone", 4, length);
+            }
+            else {
+                assertEquals("Wrong number of occurrences", 2, clone.size());
+                assertEquals("Wrong length of long clone", 7, length);
+            }
+            assertEquals("Wrong start", 1, clone.getOccurrences().get(0).getStart());
+        }
+    }
+
+    /**
+     * Verifies that no duplication spans the end of a file and the start of the next file.
+     */
+    @Test
+    public void shouldNotMatchAcrossFiles() {
+        List<TokenizedFile> files = Arrays.asList(createFile(1, 2, 3), createFile(4, 5, 6), createFile(1, 2, 3, 4,
+                5, 6));
+
+        List<Clone> clones = createDetector().detect(files, 3);
+
+        assertEquals("Wrong number of clones", 2, clones.size());
+        for (Clone clone : clones) {
+            for (Clone.Occurrence occurrence : clone.getOccurrences()) {
+                assertEquals("Wrong length", 3, occurrence.getEnd() - occurrence.getStart());
+            }
+        }
+    }
+
+    private TokenizedFile createFile(final int... tokens) {
+        int[] lines = new int[tokens.length];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = i + 1;
+        }
+        return new TokenizedFile("/file.java", tokens, lines, new byte[tokens.length]);
+    }
+}
@@ -0,0 +1,70 @@
+package hudson.plugins.dry.parser.detector;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the class {@link Tokenizer}.
+ *
+ * @author Ulli Hafner
+ */
+public class TokenizerTest {
+    /**
+     * Verifies that white space, comments, package and import statements are skipped and that the kind and line of
+     * each token are recorded.
+     */
+    @Test
+    public void shouldSkipCommentsAndImports() {
+        TokenizedFile file = new Tokenizer(new TokenDictionary()).tokenize("/A.java", "package edu.hm;\n"
+                + "import java.util.List;\n"
+                + "// comment\n"
+                + "class A { /* block\n"
+                + " comment */ int value = 42;\n"
+                + "String text = \"a; // b\"; }\n");
+
+        assertEquals("Wrong file", "/A.java", file.getFileName());
+        assertEquals("Wrong number of tokens", 14, file.size());
+        verifyToken(file, 0, TokenizedFile.KEYWORD, 4);
+        verifyToken(file, 1, TokenizedFile.IDENTIFIER, 4);
+        verifyToken(file, 2, TokenizedFile.OPERATOR, 4);
+        verifyToken(file, 3, TokenizedFile.KEYWORD, 5);
+        verifyToken(file, 6, TokenizedFile.LITERAL, 5);
+        verifyToken(file, 11, TokenizedFile.LITERAL, 6);
+        verifyToken(file, 13, TokenizedFile.OPERATOR, 6);
+    }
+
+    /**
+     * Verifies that all line separators are counted.
+     */
+    @Test
+    public void shouldCountLineSeparators() {
+        TokenizedFile file = new Tokenizer(new TokenDictionary()).tokenize("/A.java", "int a;\r\nint b;\rint c;\n"
+                + "/* one\r\n two\r three\n */ int d;");
+
+        assertEquals("Wrong number of tokens", 12, file.size());
+        assertEquals("Wrong line", 1, file.getLine(0));
+        assertEquals("Wrong line", 2, file.getLine(3));
+        assertEquals("Wrong line", 3, file.getLine(6));
+        assertEquals("Wrong line", 7, file.getLine(9));
+    }
+
+    /**
+     * Verifies that equal tokens of different files get the same number if the files share the dictionary.
+     */
+    @Test
+    public void shouldShareDictionary() {
+        TokenDictionary dictionary = new TokenDictionary();
+        TokenizedFile first = new Tokenizer(dictionary).tokenize("/A.java", "int a = 1;");
+        TokenizedFile second = new Tokenizer(dictionary).tokenize("/B.java", "int b = 1;");
+
+        assertEquals("Different numbers of equal tokens", first.getToken(0), second.getToken(0));
+        assertFalse("Same number of different tokens", first.getToken(1) == second.getToken(1));
+        assertEquals("Different numbers of equal tokens", first.getToken(3), second.getToken(3));
+    }
+
+    private void verifyToken(final TokenizedFile file, final int index, final byte kind, final int line) {
+        assertEquals("Wrong kind of token " + index, kind, file.getKind(index));
+        assertEquals("Wrong line of token " + index, line, file.getLine(index));
+    }
+}
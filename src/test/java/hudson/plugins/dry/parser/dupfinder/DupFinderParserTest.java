@@ -120,6 +120,43 @@ public class DupFinderParserTest {
         }
     }
 
+    /**
+     * Checks whether the source code text is skipped if requested, while the line ranges are still read.
+     *
+     * @throws InvocationTargetException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldSkipSourceCode() throws InvocationTargetException {
+        Collection<DuplicateCode> annotations = new DupFinderParser(50, 25, DupFinderParser.NO_TEXT).parse(
+                getResource("sorucecode.xml"), "module");
+
+        assertEquals(ERROR_MESSAGE, 2, annotations.size());
+        for (DuplicateCode annotation : annotations) {
+            assertNull(WRONG_WARNING_PROPERTY, annotation.getSourceCode());
+            assertEquals(WRONG_WARNING_PROPERTY, 12, annotation.getNumberOfLines());
+        }
+    }
+
+    /**
+     * Checks whether the source code text is truncated to the specified length.
+     *
+     * @throws InvocationTargetException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldTruncateSourceCode() throws InvocationTargetException {
+        int length = 12;
+        Collection<DuplicateCode> annotations = new DupFinderParser(50, 25, length).parse(
+                getResource("sorucecode.xml"), "module");
+
+        assertEquals(ERROR_MESSAGE, 2, annotations.size());
+        for (DuplicateCode annotation : annotations) {
+            assertEquals(WRONG_WARNING_PROPERTY, SOURCECODE.substring(0, length), annotation.getSourceCode());
+            assertEquals(WRONG_WARNING_PROPERTY, 12, annotation.getNumberOfLines());
+        }
+    }
+
     /**
      * Checks if the specified file is a DupFinder file.
      *
@@ -2,14 +2,18 @@ package hudson.plugins.dry.parser.simian;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import org.junit.Test;
 
 import hudson.plugins.dry.parser.DuplicateCode;
+import hudson.plugins.dry.parser.DuplicationHandler;
 
 /**
  *  Tests the extraction of Simian's analysis results.
@@ -22,6 +26,13 @@ public class SimianParserTest  {
     private static final String ERROR_MESSAGE = "Wrong number of warnings detected.";
     private static final String VALID_SIMIAN_FILE = "Parser does not accept valid Simian file.";
 
+    /** Size of the generated report: much more than the heap would need to hold all duplications. */
+    private static final long GENERATED_REPORT_SIZE = 300L * 1024 * 1024;
+    /** Maximum amount of memory that might be retained while reading the generated report. */
+    private static final long MEMORY_CEILING = 32L * 1024 * 1024;
+    /** Number of duplications between two memory measurements. */
+    private static final int MEASUREMENT_INTERVAL = 100000;
+
     /**
      * Parses the specified file.
      *
@@ -167,6 +178,135 @@ public class SimianParserTest  {
         assertEquals(ERROR_MESSAGE, 132, annotations.size());
     }
 
+    /**
+     * Reads a generated report of several hundred megabytes and verifies that the memory retained by the parser
+     * does not grow with the size of the report, i.e. the duplications are not kept in memory.
+     *
+     * @throws InvocationTargetException
+     *             Signals a test failure
+     */
+    @Test
+    public void shouldReadHugeReportWithBoundedMemory() throws InvocationTargetException {
+        final long baseline = getUsedMemory();
+        final long[] maximum = new long[1];
+        final int[] count = new int[1];
+
+        GeneratedSimianReport report = new GeneratedSimianReport(GENERATED_REPORT_SIZE);
+        new SimianParser(50, 25).parse(report, "module", new DuplicationHandler() {
+            @Override
+            public void handle(final List<DuplicateCode> codeBlocks) {
+                assertEquals(ERROR_MESSAGE, 2, codeBlocks.size());
+
+                count[0]++;
+                if (count[0] % MEASUREMENT_INTERVAL == 0) {
+                    maximum[0] = Math.max(maximum[0], getUsedMemory() - baseline);
+                }
+            }
+        });
+
+        assertEquals("Wrong number of duplications", report.getNumberOfSets(), count[0]);
+        assertTrue("Not enough measurements", count[0] >= 2 * MEASUREMENT_INTERVAL);
+        assertTrue("Retained memory exceeds ceiling: " + maximum[0], maximum[0] < MEMORY_CEILING);
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * A Simian report that is generated on the fly, so that a huge report neither needs to be stored in memory nor
+     * on disk.
+     */
+    private static class GeneratedSimianReport extends InputStream {
+        private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<simian version=\"2.3.31\">\n"
+                + "    <check failOnDuplication=\"true\" threshold=\"6\">\n";
+        private static final String FOOTER = "        <summary duplicateFileCount=\"0\"/>\n"
+                + "    </check>\n"
+                + "</simian>\n";
+
+        private final long size;
+        private long position;
+        private int numberOfSets;
+        private byte[] buffer;
+        private int offset;
+        private boolean finished;
+
+        GeneratedSimianReport(final long size) {
+            this.size = size;
+            buffer = toBytes(HEADER);
+        }
+
+        int getNumberOfSets() {
+            return numberOfSets;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return buffer[offset++] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int start, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.length - offset);
+            System.arraycopy(buffer, offset, bytes, start, count);
+            offset += count;
+            return count;
+        }
+
+        private boolean fill() {
+            while (offset == buffer.length) {
+                if (finished) {
+                    return false;
+                }
+                position += buffer.length;
+                offset = 0;
+                if (position < size) {
+                    buffer = toBytes(createSet(numberOfSets++));
+                }
+                else {
+                    buffer = toBytes(FOOTER);
+                    finished = true;
+                }
+            }
+            return true;
+        }
+
+        private String createSet(final int index) {
+            int lineCount = 6 + index % 60;
+            return "        <set lineCount=\"" + lineCount + "\">\n"
+                    + createBlock(index, 1 + index % 500, lineCount)
+                    + createBlock(index + 1, 1 + index % 700, lineCount)
+                    + "        </set>\n";
+        }
+
+        private String createBlock(final int file, final int start, final int lineCount) {
+            return "            <block sourceFile=\"c:\\generated\\module" + file % 100 + "\\File" + file
+                    + ".txt\" startLineNumber=\"" + start + "\" endLineNumber=\"" + (start + lineCount - 1)
+                    + "\"/>\n";
+        }
+
+        private byte[] toBytes(final String value) {
+            try {
+                return value.getBytes("UTF-8");
+            }
+            catch (UnsupportedEncodingException exception) {
+                throw new IllegalStateException(exception);
+            }
+        }
+    }
+
     /**
      * Asserts that all properties of the duplication have the expected
      * properties.